@@ -0,0 +1,104 @@
+package gravsim;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link ConcurrentLinkedCollection} against {@link ConcurrentLinkedQueue}, with
+ * threads working on one collection at the same time:
+ * <ul>
+ * <li>{@code trail}: one thread appends a point and evicts the oldest once there are
+ * {@code capacity}, as the physics thread does to a trail, while another walks
+ * the whole trail, as the event dispatch thread does to draw it;</li>
+ * <li>{@code queue}: two threads append and two evict.</li>
+ * </ul>
+ * The stress test of correctness under the same kind of load is
+ * {@code ConcurrentLinkedCollectionTest}.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentCollectionBenchmark {
+    @Param({"linked", "queue"})
+    String collection;
+
+    @Param({"1000"})
+    int capacity;
+
+    private ConcurrentLinkedCollection<Point> linked;
+    private ConcurrentLinkedQueue<Point> queue;
+    private final Point point = new Point(1, 2);
+    private int length; // touched by the single trail writer only
+
+    @Setup
+    public void setUp() {
+        linked = new ConcurrentLinkedCollection<>();
+        queue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < capacity; ++i) {
+            linked.add(point);
+            queue.add(point);
+        }
+        length = capacity;
+    }
+
+    @Benchmark
+    @Group("trail")
+    @GroupThreads(1)
+    public void trailAppend() {
+        if (collection.equals("linked")) {
+            linked.add(point);
+            if (++length > capacity) {
+                linked.poll();
+                --length;
+            }
+        } else {
+            queue.add(point);
+            if (++length > capacity) {
+                queue.poll();
+                --length;
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("trail")
+    @GroupThreads(1)
+    public double trailDraw() {
+        double sum = 0;
+        for (Point p : collection.equals("linked") ? linked : queue) {
+            sum += p.x();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(2)
+    public boolean queueAppend() {
+        return collection.equals("linked") ? linked.add(point) : queue.add(point);
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(2)
+    public Point queueEvict() {
+        return collection.equals("linked") ? linked.poll() : queue.poll();
+    }
+}
@@ -0,0 +1,64 @@
+package gravsim;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One full acceleration computation by each force solver.
+ * The direct solvers are quadratic, so narrow the sizes for them with {@code -p n=...}.
+ * {@code vector} is the direct sum on the Vector API (see {@link VectorKernelBenchmark});
+ * {@code symmetric} visits each pair once ({@link SymmetricForceSolver});
+ * {@code pm} solves on an isolated grid of 256 by 256 points ({@link ParticleMeshSolver}).  With
+ * {@code -p threads=K} the solvers run on K threads: the symmetric and particle-mesh ones
+ * with per-thread buffers, the others split by body through {@link ParallelForceSolver}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class ForceKernelBenchmark {
+    @Param({"5", "100", "1000", "10000", "100000"})
+    int n;
+
+    @Param({"direct", "vector", "symmetric", "barnes-hut", "pm"})
+    String solver;
+
+    @Param({"1"})
+    int threads;
+
+    private BodyStore bodies;
+    private ForceSolver forceSolver;
+
+    @Setup
+    public void setUp() {
+        bodies = ForceSolverBenchmark.randomDisk(n, 351);
+        forceSolver = BatchRun.solverFor(solver, 0.5, 0, threads, 64);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (forceSolver instanceof ParallelForceSolver) ((ParallelForceSolver) forceSolver).shutdown();
+        if (forceSolver instanceof SymmetricForceSolver) ((SymmetricForceSolver) forceSolver).shutdown();
+        if (forceSolver instanceof ParticleMeshSolver) ((ParticleMeshSolver) forceSolver).shutdown();
+    }
+
+    @Benchmark
+    public double computeAccelerations() {
+        forceSolver.computeAccelerations(bodies);
+        return bodies.ax[n - 1];
+    }
+}
@@ -0,0 +1,74 @@
+package gravsim;
+
+import java.util.SplittableRandom;
+
+/**
+ * Time the direct and Barnes&ndash;Hut solvers over a range of body counts to
+ * find where the tree starts paying for itself, and report the error of the
+ * tree's accelerations against the exact direct sum.  Errors are given as a
+ * fraction of the RMS acceleration, since bodies whose pulls nearly cancel
+ * would make a per-body relative error meaningless.
+ * Usage: {@code java gravsim.ForceSolverBenchmark [theta]}
+ */
+public class ForceSolverBenchmark {
+    private static final int[] SIZES = {100, 300, 1000, 3000, 10000, 30000};
+
+    public static void main(String[] args) {
+        double theta = args.length > 0 ? Double.parseDouble(args[0]) : 0.5;
+        ForceSolver direct = new DirectForceSolver();
+        ForceSolver tree = new BarnesHutSolver(theta);
+        System.out.printf("%8s %14s %14s %12s %12s%n", "N", "direct ms", "tree ms", "rms err", "max err");
+        int crossover = -1;
+        for (int n : SIZES) {
+            BodyStore bodies = randomDisk(n, 351);
+            double directMs = time(direct, bodies);
+            double[] exactX = bodies.ax.clone(), exactY = bodies.ay.clone();
+            double treeMs = time(tree, bodies);
+            double sumError = 0, sumExact = 0, max = 0;
+            for (int i = 0; i < n; ++i) {
+                double ex = bodies.ax[i] - exactX[i], ey = bodies.ay[i] - exactY[i];
+                double err = ex*ex + ey*ey;
+                sumError += err;
+                sumExact += exactX[i]*exactX[i] + exactY[i]*exactY[i];
+                max = Math.max(max, err);
+            }
+            double rms = Math.sqrt(sumExact / n);
+            System.out.printf("%8d %14.3f %14.3f %12.2e %12.2e%n", n, directMs, treeMs,
+                    Math.sqrt(sumError / n) / rms, Math.sqrt(max) / rms);
+            if (crossover < 0 && treeMs < directMs) crossover = n;
+        }
+        if (crossover < 0) System.out.println("Barnes-Hut was never faster for theta " + theta);
+        else System.out.println("Barnes-Hut is faster from N = " + crossover + " for theta " + theta);
+    }
+
+    /**
+     * Return the average time in milliseconds of one full acceleration computation,
+     * after a warm up.  Leaves the last result in the store.
+     */
+    static double time(ForceSolver solver, BodyStore bodies) {
+        for (int i = 0; i < 3; ++i) solver.computeAccelerations(bodies);
+        int reps = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            solver.computeAccelerations(bodies);
+            ++reps;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < 500_000_000L);
+        return elapsed / 1e6 / reps;
+    }
+
+    /**
+     * Create bodies scattered uniformly over a disk of radius 500 centred at (500,500).
+     */
+    static BodyStore randomDisk(int n, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        BodyStore bodies = new BodyStore(n);
+        for (int i = 0; i < n; ++i) {
+            double r = 500 * Math.sqrt(random.nextDouble());
+            double a = 2 * Math.PI * random.nextDouble();
+            bodies.add(500 + r * Math.cos(a), 500 + r * Math.sin(a), 0, 0, 0.5 + random.nextDouble());
+        }
+        return bodies;
+    }
+}
@@ -0,0 +1,53 @@
+package gravsim;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One {@link Simulation#step()} with each integrator, that is the force
+ * evaluations an integrator needs plus its own position and velocity updates.
+ * The bodies are reset before every iteration so that the system does not
+ * collapse over a long run and change the cost of the tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntegratorStepBenchmark {
+    @Param({"5", "100", "1000", "10000", "100000"})
+    int n;
+
+    @Param({"euler", "verlet", "yoshida", "block"})
+    String integrator;
+
+    @Param({"barnes-hut"})
+    String solver;
+
+    private Simulation simulation;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        simulation = new Simulation(ForceSolverBenchmark.randomDisk(n, 351),
+                BatchRun.solverFor(solver, 0.5, 0, 1, 64), BatchRun.integratorFor(integrator, 0.02), 1.0);
+    }
+
+    @Benchmark
+    public double step() {
+        simulation.step();
+        return simulation.getBodies().x[n - 1];
+    }
+}
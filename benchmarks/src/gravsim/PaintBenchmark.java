@@ -0,0 +1,82 @@
+package gravsim;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Paint one frame of {@link ParticleSimulation} into an offscreen
+ * {@link BufferedImage}, which works on a headless machine.
+ * With {@code views = planets} every body is a {@link Planet} with a trail of the
+ * given number of points; with {@code views = none} the bodies are a scene without
+ * planets, drawn as points or a density map, and the trail length does not matter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PaintBenchmark {
+    @Param({"5", "100", "1000", "10000", "100000"})
+    int n;
+
+    @Param({"0", "100"})
+    int trailPoints;
+
+    @Param({"planets", "none"})
+    String views;
+
+    private ParticleSimulation panel;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setUp() {
+        BodyStore bodies = ForceSolverBenchmark.randomDisk(n, 351);
+        image = new BufferedImage(1000, 1000, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+        if (views.equals("none")) {
+            panel = new ParticleSimulation(new Simulation(bodies), null);
+            panel.setSize(1000, 1000);
+            panel.setBackground(Color.black);
+            return;
+        }
+        Planet[] planets = new Planet[n];
+        for (int i = 0; i < n; ++i) {
+            planets[i] = new Planet("", bodies.position(i), bodies.velocity(i), bodies.mass(i), Color.white, 2);
+            planets[i].trail = new TrailBuffer(Math.max(1, trailPoints), 0);
+            for (int k = 0; k < trailPoints; ++k) {
+                planets[i].trail.add(bodies.x[i] - k, bodies.y[i]);
+            }
+        }
+        panel = new ParticleSimulation(planets);
+        panel.setSize(1000, 1000);
+        panel.setBackground(Color.black);
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        panel.paint(graphics);
+        return image;
+    }
+}
@@ -0,0 +1,31 @@
+package gravsim;
+
+import java.util.Arrays;
+
+/**
+ * Measure how the direct solver scales with the number of worker threads,
+ * and check that every parallel result is bit-identical to the serial one.
+ * Usage: {@code java gravsim.ParallelForceBenchmark [N [chunkSize]]}
+ */
+public class ParallelForceBenchmark {
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int chunkSize = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        BodyStore bodies = ForceSolverBenchmark.randomDisk(n, 351);
+        double serialMs = ForceSolverBenchmark.time(new DirectForceSolver(), bodies);
+        double[] serialX = bodies.ax.clone(), serialY = bodies.ay.clone();
+        System.out.printf("N = %d, chunk size %d%n", n, chunkSize);
+        System.out.printf("%8s %12s %10s %10s%n", "threads", "ms/step", "speedup", "identical");
+        System.out.printf("%8s %12.3f %10.2f %10s%n", "serial", serialMs, 1.0, true);
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+            ParallelForceSolver solver = new ParallelForceSolver(new DirectForceSolver(), threads, chunkSize);
+            double ms = ForceSolverBenchmark.time(solver, bodies);
+            solver.shutdown();
+            boolean identical = Arrays.equals(serialX, 0, n, bodies.ax, 0, n)
+                    && Arrays.equals(serialY, 0, n, bodies.ay, 0, n);
+            System.out.printf("%8d %12.3f %10.2f %10s%n", threads, ms, serialMs / ms, identical);
+            if (threads == cores) break;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package gravsim;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One frame of trail maintenance: every body's full trail gets a new point and
+ * loses its oldest one, as a {@link LinkedCollection} of points (the old way)
+ * and as a {@link TrailBuffer}.  Full trails cost memory per body, so the
+ * body counts here stop at 10000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrailBenchmark {
+    @Param({"5", "100", "1000", "10000"})
+    int n;
+
+    @Param({"5000"})
+    int capacity;
+
+    private LinkedCollection<Point>[] lists;
+    private TrailBuffer[] buffers;
+    private double t;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setUp() {
+        lists = new LinkedCollection[n];
+        buffers = new TrailBuffer[n];
+        for (int i = 0; i < n; ++i) {
+            lists[i] = new LinkedCollection<>();
+            buffers[i] = new TrailBuffer(capacity, 0);
+            for (int k = 0; k < capacity; ++k) {
+                lists[i].add(new Point(k, i));
+                buffers[i].add(k, i);
+            }
+        }
+    }
+
+    @Benchmark
+    public int linkedCollection() {
+        t += 1;
+        for (int i = 0; i < n; ++i) {
+            lists[i].add(new Point(t, i));
+            Iterator<Point> it = lists[i].iterator();
+            it.next();
+            it.remove();
+        }
+        return lists[n - 1].size();
+    }
+
+    @Benchmark
+    public int trailBuffer() {
+        t += 1;
+        for (int i = 0; i < n; ++i) {
+            buffers[i].add(t, i);
+        }
+        return buffers[n - 1].size();
+    }
+}
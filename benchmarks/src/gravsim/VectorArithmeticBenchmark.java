@@ -0,0 +1,68 @@
+package gravsim;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The original object-based step, built from {@link Planet#gravForceOn} and
+ * {@link Vector} arithmetic, against the same step on a {@link BodyStore}.
+ * Run with {@code -prof gc} (the default of the jmh task) to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class VectorArithmeticBenchmark {
+    @Param({"5", "100", "1000", "10000", "100000"})
+    int n;
+
+    private Planet[] planets;
+    private Simulation simulation;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        BodyStore bodies = ForceSolverBenchmark.randomDisk(n, 351);
+        planets = new Planet[n];
+        for (int i = 0; i < n; ++i) {
+            planets[i] = new Planet("", bodies.position(i), bodies.velocity(i), bodies.mass(i), Color.white, 1);
+        }
+        simulation = new Simulation(bodies);
+    }
+
+    @Benchmark
+    public Point objectStep() {
+        for (Planet p : planets) {
+            Vector force = new Vector();
+            for (Planet other : planets) {
+                if (other == p) continue;
+                force = force.add(other.gravForceOn(p));
+            }
+            p.applyForce(force);
+        }
+        for (Planet p : planets) {
+            p.move();
+        }
+        return planets[n - 1].getPosition();
+    }
+
+    @Benchmark
+    public double storeStep() {
+        simulation.step();
+        return simulation.getBodies().x[n - 1];
+    }
+}
@@ -0,0 +1,40 @@
+package gravsim;
+
+/**
+ * Time the Vector API direct sum against the scalar one on larger systems than
+ * VectorDirectForceSolverTest checks.  The two must agree to the last bit; any
+ * difference is reported, and makes the program exit with status 1.  Run with
+ * {@code java --add-modules jdk.incubator.vector gravsim.VectorKernelBenchmark [softening]}.
+ */
+public class VectorKernelBenchmark {
+    private static final int[] SIZES = {5, 100, 1000, 3000, 10000, 30000};
+
+    public static void main(String[] args) {
+        double softening = args.length > 0 ? Double.parseDouble(args[0]) : 0;
+        if (!DirectForceSolver.isVectorAvailable()) {
+            System.out.println("jdk.incubator.vector is not loaded; run with --add-modules jdk.incubator.vector");
+            System.exit(1);
+        }
+        ForceSolver scalar = new DirectForceSolver(softening);
+        ForceSolver vector = DirectForceSolver.vectorized(softening);
+        System.out.printf("%d lanes, softening %s%n", VectorDirectForceSolver.lanes(), softening);
+        System.out.printf("%8s %14s %14s %10s %12s%n", "N", "scalar ms", "vector ms", "speedup", "mismatches");
+        boolean agree = true;
+        for (int n : SIZES) {
+            BodyStore bodies = ForceSolverBenchmark.randomDisk(n, 351);
+            double scalarMs = ForceSolverBenchmark.time(scalar, bodies);
+            double[] expectX = bodies.ax.clone(), expectY = bodies.ay.clone();
+            double vectorMs = ForceSolverBenchmark.time(vector, bodies);
+            int mismatches = 0;
+            for (int i = 0; i < n; ++i) {
+                if (Double.doubleToLongBits(bodies.ax[i]) != Double.doubleToLongBits(expectX[i])
+                        || Double.doubleToLongBits(bodies.ay[i]) != Double.doubleToLongBits(expectY[i])) {
+                    ++mismatches;
+                }
+            }
+            agree &= mismatches == 0;
+            System.out.printf("%8d %14.3f %14.3f %9.2fx %12d%n", n, scalarMs, vectorMs, scalarMs / vectorMs, mismatches);
+        }
+        if (!agree) System.exit(1);
+    }
+}
@@ -0,0 +1,262 @@
+package gravsim;
+
+import java.util.Arrays;
+
+/**
+ * Approximate O(n log n) solver using a Barnes&ndash;Hut quadtree.
+ * A cell of width s whose centre of mass is at distance d from a body is
+ * treated as a single point mass when s/d &lt; &theta; (the opening angle)
+ * and the body lies outside the cell; otherwise the cell is opened.
+ * <p>
+ * Error bound: because the expansion is about the centre of mass, the dipole
+ * term vanishes and each accepted cell contributes a relative error of at most
+ * about 1.5&nbsp;&theta;&sup2; of its own pull (the quadrupole term).
+ * Errors from different cells largely cancel: on a uniform disk with
+ * &theta; = 0.5 the RMS error against the {@link Planet#gravForceOn} result is
+ * below 0.05% of the RMS acceleration and no body is off by more than 1% of it
+ * (see ForceSolverBenchmark in the benchmarks module).
+ * With &theta; = 0 every cell is opened and the result is the exact direct sum.
+ * An optional Plummer softening length is applied to bodies and cells alike,
+ * as in {@link DirectForceSolver}.
+ * <p>
+ * The tree is kept as parallel primitive arrays that are reused from one
+ * step to the next, and only grow when a step needs more nodes than before.
+ */
+public class BarnesHutSolver implements ForceSolver {
+    private static final int EMPTY = -1;
+    private static final int MAX_DEPTH = 48; // deeper than this, bodies share a leaf
+
+    private final double theta;
+    private final double softening2;
+
+    // node pool: the four children of a node are allocated together
+    private double[] centerX, centerY, half; // the square cell
+    private double[] nodeMass, comX, comY; // total mass and centre of mass
+    private int[] firstChild; // EMPTY for a leaf
+    private int[] firstBody; // head of the list of bodies in a leaf
+    private int nodeCount;
+    private int[] nextBody = new int[0]; // per body: next body in the same leaf
+
+    /**
+     * Create a solver with the usual opening angle of 0.5.
+     */
+    public BarnesHutSolver() {
+        this(0.5);
+    }
+
+    /**
+     * Create a solver with the given opening angle.
+     * @param theta opening angle, must not be negative; 0 gives the exact result
+     * @throws IllegalArgumentException if theta is negative
+     */
+    public BarnesHutSolver(double theta) {
+        this(theta, 0);
+    }
+
+    /**
+     * Create a solver with the given opening angle and Plummer softening.
+     * @param theta opening angle, must not be negative; 0 gives the exact result
+     * @param softening softening length, must not be negative; 0 gives the exact kernel
+     * @throws IllegalArgumentException if theta or softening is negative
+     */
+    public BarnesHutSolver(double theta, double softening) {
+        if (theta < 0 || Double.isNaN(theta)) throw new IllegalArgumentException("Opening angle cannot be negative");
+        if (!(softening >= 0)) throw new IllegalArgumentException("Softening cannot be negative");
+        this.theta = theta;
+        this.softening2 = softening * softening;
+        allocate(64);
+    }
+
+    public double getTheta() {
+        return theta;
+    }
+
+    /**
+     * @return softening length
+     */
+    public double getSoftening() {
+        return Math.sqrt(softening2);
+    }
+
+    private void allocate(int capacity) {
+        centerX = new double[capacity];
+        centerY = new double[capacity];
+        half = new double[capacity];
+        nodeMass = new double[capacity];
+        comX = new double[capacity];
+        comY = new double[capacity];
+        firstChild = new int[capacity];
+        firstBody = new int[capacity];
+    }
+
+    private void grow() {
+        int capacity = centerX.length * 2;
+        centerX = Arrays.copyOf(centerX, capacity);
+        centerY = Arrays.copyOf(centerY, capacity);
+        half = Arrays.copyOf(half, capacity);
+        nodeMass = Arrays.copyOf(nodeMass, capacity);
+        comX = Arrays.copyOf(comX, capacity);
+        comY = Arrays.copyOf(comY, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        firstBody = Arrays.copyOf(firstBody, capacity);
+    }
+
+    private int newNode(double cx, double cy, double h) {
+        if (nodeCount == centerX.length) grow();
+        int k = nodeCount++;
+        centerX[k] = cx;
+        centerY[k] = cy;
+        half[k] = h;
+        firstChild[k] = EMPTY;
+        firstBody[k] = EMPTY;
+        return k;
+    }
+
+    private int quadrant(int node, double px, double py) {
+        return (px < centerX[node] ? 0 : 1) + (py < centerY[node] ? 0 : 2);
+    }
+
+    /**
+     * Build the tree for the current positions and compute the mass and
+     * centre of mass of every cell.
+     */
+    @Override //implementation
+    public void prepare(BodyStore bodies) {
+        double[] x = bodies.x, y = bodies.y, mass = bodies.mass;
+        int n = bodies.size();
+        if (nextBody.length < n) nextBody = new int[x.length];
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; ++i) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        nodeCount = 0;
+        if (n == 0) return;
+        // pad slightly so that bodies on the far edge still fall inside the root
+        double h = Math.max(Math.max(maxX - minX, maxY - minY) / 2, 1e-9) * (1 + 1e-9);
+        newNode((minX + maxX) / 2, (minY + maxY) / 2, h);
+        for (int i = 0; i < n; ++i) {
+            insert(i, x, y);
+        }
+        // children are always allocated after their parent, so a reverse sweep is bottom-up
+        for (int k = nodeCount - 1; k >= 0; --k) {
+            double m = 0, mx = 0, my = 0;
+            if (firstChild[k] == EMPTY) {
+                for (int b = firstBody[k]; b != EMPTY; b = nextBody[b]) {
+                    m += mass[b];
+                    mx += mass[b] * x[b];
+                    my += mass[b] * y[b];
+                }
+            } else {
+                for (int c = firstChild[k]; c < firstChild[k] + 4; ++c) {
+                    m += nodeMass[c];
+                    mx += nodeMass[c] * comX[c];
+                    my += nodeMass[c] * comY[c];
+                }
+            }
+            nodeMass[k] = m;
+            comX[k] = m == 0 ? centerX[k] : mx / m;
+            comY[k] = m == 0 ? centerY[k] : my / m;
+        }
+    }
+
+    private void insert(int i, double[] x, double[] y) {
+        int node = 0;
+        int depth = 0;
+        nextBody[i] = EMPTY;
+        while (true) {
+            if (firstChild[node] != EMPTY) {
+                node = firstChild[node] + quadrant(node, x[i], y[i]);
+                ++depth;
+                continue;
+            }
+            int j = firstBody[node];
+            if (j == EMPTY || depth >= MAX_DEPTH) {
+                nextBody[i] = j;
+                firstBody[node] = i;
+                return;
+            }
+            // split the leaf and push its body down a level, then try again
+            double h = half[node] / 2;
+            int c = newNode(centerX[node] - h, centerY[node] - h, h);
+            newNode(centerX[node] + h, centerY[node] - h, h);
+            newNode(centerX[node] - h, centerY[node] + h, h);
+            newNode(centerX[node] + h, centerY[node] + h, h);
+            firstChild[node] = c;
+            firstBody[node] = EMPTY;
+            int child = c + quadrant(node, x[j], y[j]);
+            nextBody[j] = firstBody[child];
+            firstBody[child] = j;
+        }
+    }
+
+    @Override //required
+    public void accelerate(BodyStore bodies, int from, int to) {
+        int[] stack = new int[3 * MAX_DEPTH + 4];
+        for (int i = from; i < to; ++i) {
+            accelerate(bodies, i, stack);
+        }
+    }
+
+    /**
+     * Walk the tree once per listed body with a single stack, rather than one
+     * stack per body as the default would.
+     */
+    @Override //implementation
+    public void accelerate(BodyStore bodies, int[] targets, int from, int to) {
+        int[] stack = new int[3 * MAX_DEPTH + 4];
+        for (int k = from; k < to; ++k) {
+            accelerate(bodies, targets[k], stack);
+        }
+    }
+
+    /**
+     * Compute the acceleration of one body.
+     * @param stack scratch space for the nodes still to visit, owned by the caller
+     */
+    private void accelerate(BodyStore bodies, int i, int[] stack) {
+        double[] x = bodies.x, y = bodies.y, mass = bodies.mass;
+        double theta2 = theta * theta;
+        double e2 = softening2;
+        double px = x[i], py = y[i];
+        double ax = 0, ay = 0;
+        int top = 0;
+        if (nodeCount > 0) stack[top++] = 0;
+        while (top > 0) {
+            int k = stack[--top];
+            if (nodeMass[k] == 0) continue;
+            if (firstChild[k] == EMPTY) {
+                for (int b = firstBody[k]; b != EMPTY; b = nextBody[b]) {
+                    if (b == i) continue; // no force from particle on itself
+                    double dx = x[b] - px;
+                    double dy = y[b] - py;
+                    double r2 = dx*dx + dy*dy + e2;
+                    double s = Planet.G * mass[b] / (r2 * Math.sqrt(r2));
+                    ax += dx * s;
+                    ay += dy * s;
+                }
+                continue;
+            }
+            double dx = comX[k] - px;
+            double dy = comY[k] - py;
+            double r2 = dx*dx + dy*dy;
+            double size = 2 * half[k];
+            boolean outside = Math.abs(px - centerX[k]) > half[k] || Math.abs(py - centerY[k]) > half[k];
+            if (outside && size * size < theta2 * r2) {
+                r2 += e2;
+                double s = Planet.G * nodeMass[k] / (r2 * Math.sqrt(r2));
+                ax += dx * s;
+                ay += dy * s;
+            } else {
+                for (int c = firstChild[k]; c < firstChild[k] + 4; ++c) {
+                    stack[top++] = c;
+                }
+            }
+        }
+        bodies.ax[i] = ax;
+        bodies.ay[i] = ay;
+    }
+}
@@ -0,0 +1,266 @@
+package gravsim;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Headless entry point: run a simulation for a number of steps as fast as possible,
+ * then print the step rate and the final state of every body.
+ * Nothing here loads AWT or Swing, so no display (real or virtual) is needed.
+ * <pre>
+ * java BatchRun [--steps N] [--scene FILE] [--solver direct|vector|symmetric|barnes-hut|pm] [--theta T]
+ *               [--grid G] [--periodic WIDTH] [--threads K] [--chunk C] [--softening EPS]
+ *               [--collisions merge|bounce [--restitution E]]
+ *               [--integrator euler|verlet|yoshida|block] [--dt DT] [--eta ETA]
+ *               [--report EVERY] [--restore FILE] [--checkpoint FILE --checkpoint-every K]
+ *               [--record FILE [--record-every K]] [--metrics FILE]
+ * </pre>
+ * {@code --scene} starts from the bodies of a scene file (see {@link SceneLoader})
+ * instead of the solar system.
+ * {@code vector} is the direct sum with SIMD instructions, if the JVM runs with
+ * {@code --add-modules jdk.incubator.vector} (as {@code gradle batchRun} does).
+ * {@code symmetric} visits each pair of bodies once (see {@link SymmetricForceSolver});
+ * it cannot be combined with {@code block}.
+ * {@code pm} solves for the potential on a grid of G by G points (see {@link ParticleMeshSolver}),
+ * fitted around the bodies, or repeating every WIDTH from the origin with {@code --periodic}.
+ * {@code --threads} above 1 runs the chosen solver on a fork/join pool.
+ * {@code --softening} gives the solver a Plummer softening length.
+ * {@code --collisions} merges or bounces bodies with a radius that touch
+ * (see {@link CollisionHandler}); {@code --restitution} sets how elastic bounces are.
+ * {@code --report} samples the energy and angular momentum every so many steps
+ * and prints how far they drifted, to compare integrators and step sizes.
+ * {@code block} uses per-body block time steps no longer than {@code --dt},
+ * with {@code --eta} setting their accuracy.
+ * {@code --restore} continues from a checkpoint (with its own dt) for N more steps;
+ * {@code --checkpoint} keeps a checkpoint of every K-th step in the given file.
+ * {@code --record} writes every K-th step to a trajectory file (see {@link TrajectoryRecorder}).
+ * {@code --metrics} times the phases of every step, writes the figures to the file
+ * each second (see {@link MetricsExporter}) and prints them at the end.
+ */
+public class BatchRun {
+    private static final int PRINTED_BODIES = 20;
+    private static final String USAGE =
+            "usage: java BatchRun [--steps N] [--scene FILE] [--solver direct|vector|symmetric|barnes-hut|pm] [--theta T]\n"
+            + "                     [--grid G] [--periodic WIDTH] [--threads K] [--chunk C]\n"
+            + "                     [--softening EPS] [--collisions merge|bounce [--restitution E]]\n"
+            + "                     [--integrator euler|verlet|yoshida|block] [--dt DT] [--eta ETA] [--report EVERY]\n"
+            + "                     [--restore FILE] [--checkpoint FILE --checkpoint-every K]\n"
+            + "                     [--record FILE [--record-every K]] [--metrics FILE]";
+
+    public static void main(String[] args) throws IOException {
+        long steps = 10000;
+        String solverName = "direct";
+        double theta = 0.5;
+        int grid = 256;
+        double periodic = 0;
+        int threads = 1;
+        int chunk = 64;
+        double softening = 0;
+        String collisionName = null;
+        double restitution = 1;
+        String integratorName = "euler";
+        double dt = 1.0;
+        double eta = 0.02;
+        long reportEvery = 0;
+        Path scene = null;
+        Path restore = null;
+        Path checkpointFile = null;
+        long checkpointEvery = 1000;
+        Path recordFile = null;
+        long recordEvery = 10;
+        Path metricsFile = null;
+        StepMetrics metrics = null;
+        ForceSolver solver;
+        Simulation simulation;
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--steps": steps = Long.parseLong(args[++i]); break;
+                    case "--scene": scene = Paths.get(args[++i]); break;
+                    case "--solver": solverName = args[++i]; break;
+                    case "--theta": theta = Double.parseDouble(args[++i]); break;
+                    case "--grid": grid = Integer.parseInt(args[++i]); break;
+                    case "--periodic": periodic = Double.parseDouble(args[++i]); break;
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    case "--chunk": chunk = Integer.parseInt(args[++i]); break;
+                    case "--softening": softening = Double.parseDouble(args[++i]); break;
+                    case "--collisions": collisionName = args[++i]; break;
+                    case "--restitution": restitution = Double.parseDouble(args[++i]); break;
+                    case "--integrator": integratorName = args[++i]; break;
+                    case "--dt": dt = Double.parseDouble(args[++i]); break;
+                    case "--eta": eta = Double.parseDouble(args[++i]); break;
+                    case "--report": reportEvery = Long.parseLong(args[++i]); break;
+                    case "--restore": restore = Paths.get(args[++i]); break;
+                    case "--checkpoint": checkpointFile = Paths.get(args[++i]); break;
+                    case "--checkpoint-every": checkpointEvery = Long.parseLong(args[++i]); break;
+                    case "--record": recordFile = Paths.get(args[++i]); break;
+                    case "--record-every": recordEvery = Long.parseLong(args[++i]); break;
+                    case "--metrics": metricsFile = Paths.get(args[++i]); break;
+                    default: throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+            // the symmetric solver does every pair in prepare, so each sub-step would cost a full step
+            if (solverName.equals("symmetric") && integratorName.equals("block")) {
+                throw new IllegalArgumentException("the symmetric solver cannot be used with block time steps");
+            }
+            solver = solverFor(solverName, theta, softening, threads, chunk, grid, periodic);
+            Integrator integrator = integratorFor(integratorName, eta);
+            if (metricsFile != null) metrics = new StepMetrics();
+            ForceSolver timed = metrics != null ? metrics.time(solver) : solver;
+            if (restore != null) simulation = Checkpoint.read(restore).restore(timed, integrator);
+            else if (scene != null) simulation = new Simulation(SceneLoader.load(scene), timed, integrator, dt);
+            else simulation = new Simulation(SolarSystem.create(), timed, integrator, dt);
+            if (collisionName != null) simulation.setCollisions(collisionsFor(collisionName, restitution));
+        } catch (RuntimeException e) { // bad number, missing value or unknown option
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        ConservationReport report = reportEvery > 0 ? new ConservationReport(simulation.getBodies(), softening) : null;
+        CheckpointWriter checkpoints = checkpointFile != null ? new CheckpointWriter(checkpointFile, checkpointEvery) : null;
+        TrajectoryRecorder recorder = recordFile != null ? new TrajectoryRecorder(recordFile, recordEvery, 256, 64) : null;
+        MetricsExporter exporter = metrics != null ? new MetricsExporter(metrics, metricsFile, 1000) : null;
+        long start = System.nanoTime();
+        for (long s = 1; s <= steps; ++s) {
+            if (metrics != null) metrics.stepStarted();
+            simulation.step();
+            if (metrics != null) metrics.stepFinished();
+            if (report != null && (s % reportEvery == 0 || s == steps)) report.sample(simulation.getBodies());
+            if (checkpoints != null) checkpoints.afterStep(simulation);
+            if (recorder != null) recorder.afterStep(simulation);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (exporter != null) exporter.close();
+        if (checkpoints != null) {
+            checkpoints.close();
+            System.out.printf("%d checkpoints written to %s, %d skipped while a write was in progress%n",
+                    checkpoints.getWritten(), checkpointFile, checkpoints.getSkipped());
+        }
+        if (recorder != null) {
+            recorder.close();
+            System.out.printf("%d frames recorded to %s, step loop waited %d times for %.3f s%n",
+                    recorder.getSamples(), recordFile, recorder.getWaits(), recorder.getWaitNanos() / 1e9);
+        }
+        System.out.printf("%d steps of %d bodies in %.3f s: %.1f steps/s%n",
+                steps, simulation.getBodies().size(), seconds, steps / seconds);
+        printState(simulation, System.out);
+        CollisionHandler collisions = simulation.getCollisions();
+        if (collisions != null) {
+            System.out.printf("collisions: %d merged, %d bounced%n", collisions.getMerges(), collisions.getBounces());
+        }
+        if (report != null) report.print(System.out);
+        if (metrics != null) {
+            for (String line : metrics.summary()) {
+                System.out.println(line);
+            }
+            System.out.printf("mean allocation per step: %.1f bytes%n", metrics.getMeanBytesPerStep());
+        }
+        if (simulation.getIntegrator() instanceof BlockTimestepIntegrator) {
+            BlockTimestepIntegrator block = (BlockTimestepIntegrator) simulation.getIntegrator();
+            System.out.printf("force evaluations: %d (global steps would need %d, %.1fx more)%n",
+                    block.getForceEvaluations(), block.getGlobalStepEvaluations(),
+                    (double) block.getGlobalStepEvaluations() / block.getForceEvaluations());
+            System.out.println("bodies per level: " + Arrays.toString(block.getLevelHistogram(simulation.getBodies())));
+        }
+        if (solver instanceof ParallelForceSolver) ((ParallelForceSolver) solver).shutdown();
+        if (solver instanceof SymmetricForceSolver) ((SymmetricForceSolver) solver).shutdown();
+        if (solver instanceof ParticleMeshSolver) ((ParticleMeshSolver) solver).shutdown();
+    }
+
+    /**
+     * Create a force solver from command-line settings, with an isolated grid of 256
+     * by 256 points for the particle-mesh solver.
+     * @see #solverFor(String, double, double, int, int, int, double)
+     */
+    static ForceSolver solverFor(String name, double theta, double softening, int threads, int chunk) {
+        return solverFor(name, theta, softening, threads, chunk, 256, 0);
+    }
+
+    /**
+     * Create a force solver from command-line settings.
+     * @param name "direct", "vector", "symmetric", "barnes-hut" or "pm"
+     * @param theta opening angle for Barnes-Hut
+     * @param softening Plummer softening length, 0 for none
+     * @param threads number of threads; more than one wraps the solver in a {@link ParallelForceSolver},
+     *     except for the symmetric and particle-mesh solvers, which have threads of their own
+     * @param chunk chunk size for the parallel solver
+     * @param grid grid points along each side for the particle-mesh solver
+     * @param periodic width of the repeating square for the particle-mesh solver, 0 for an isolated system
+     * @return new solver
+     * @throws IllegalArgumentException if the name is unknown or a setting is out of range
+     */
+    static ForceSolver solverFor(String name, double theta, double softening, int threads, int chunk,
+            int grid, double periodic) {
+        ForceSolver solver;
+        switch (name) {
+            case "direct": solver = new DirectForceSolver(softening); break;
+            case "vector":
+                solver = DirectForceSolver.vectorized(softening);
+                if (solver instanceof DirectForceSolver) {
+                    System.err.println("jdk.incubator.vector is not loaded, using the scalar kernel");
+                }
+                break;
+            case "symmetric": return new SymmetricForceSolver(softening, threads);
+            case "barnes-hut": solver = new BarnesHutSolver(theta, softening); break;
+            case "pm":
+                if (periodic > 0) return new ParticleMeshSolver(grid, 0, 0, periodic, softening, threads);
+                return new ParticleMeshSolver(grid, softening, threads);
+            default: throw new IllegalArgumentException("unknown solver " + name);
+        }
+        if (threads > 1) solver = new ParallelForceSolver(solver, threads, chunk);
+        return solver;
+    }
+
+    /**
+     * Create an integrator from its command-line name.
+     * @param name "euler", "verlet", "yoshida" or "block"
+     * @param eta accuracy parameter for block time steps
+     * @return new integrator
+     * @throws IllegalArgumentException if the name is unknown or eta is not positive
+     */
+    static Integrator integratorFor(String name, double eta) {
+        switch (name) {
+            case "euler": return new SemiImplicitEuler();
+            case "verlet": return new VelocityVerlet();
+            case "yoshida": return new Yoshida4();
+            case "block": return new BlockTimestepIntegrator(eta, 1.0);
+            default: throw new IllegalArgumentException("unknown integrator " + name);
+        }
+    }
+
+    /**
+     * Create a collision handler from its command-line name.
+     * @param name "merge" or "bounce"
+     * @param restitution coefficient of restitution for bounces
+     * @return new handler
+     * @throws IllegalArgumentException if the name is unknown or restitution is out of range
+     */
+    static CollisionHandler collisionsFor(String name, double restitution) {
+        switch (name) {
+            case "merge": return new CollisionHandler(CollisionHandler.Response.MERGE);
+            case "bounce": return new CollisionHandler(CollisionHandler.Response.BOUNCE, restitution);
+            default: throw new IllegalArgumentException("unknown collision response " + name);
+        }
+    }
+
+    /**
+     * Print the time and the position, velocity and mass of every body,
+     * or of the first {@value #PRINTED_BODIES} of a large scene.
+     */
+    static void printState(Simulation simulation, PrintStream out) {
+        BodyStore bodies = simulation.getBodies();
+        out.printf("Days: %.3f%n", simulation.getDays());
+        out.printf("%6s %14s %14s %14s %14s %14s%n", "body", "x", "y", "vx", "vy", "mass");
+        int shown = Math.min(bodies.size(), PRINTED_BODIES);
+        for (int i = 0; i < shown; ++i) {
+            out.printf("%6d %14.6f %14.6f %14.6f %14.6f %14.6g%n",
+                    bodies.id(i), bodies.x[i], bodies.y[i], bodies.vx[i], bodies.vy[i], bodies.mass[i]);
+        }
+        if (shown < bodies.size()) out.printf("(%d more bodies)%n", bodies.size() - shown);
+    }
+}
@@ -0,0 +1,203 @@
+package gravsim;
+
+import java.util.Arrays;
+
+/**
+ * Kick-drift-kick leapfrog with hierarchical power-of-two block time steps.
+ * Each body gets its own step dt/2<sup>k</sup>, where the level k is chosen so that the
+ * step is no longer than {@code eta} times the body's timescale |v|/|a|
+ * (or sqrt(L/|a|) for a length scale L, whichever is longer, so that bodies at rest
+ * do not stall the run).  The step is also kept below {@code eta} times |a|/|da/dt|,
+ * estimated from the change of acceleration over the body's previous step, so that a
+ * slow body pulled by fast ones (the sun by Mercury) still follows its pull.
+ * Within one call of {@link #step}, positions of all bodies drift on the finest level
+ * in use, but only bodies whose own step ends at a sub-step ("active" bodies) have
+ * their acceleration computed and are kicked.
+ * A body's level may get finer at the end of any of its steps, and coarser only
+ * where that coarser step would have ended too, so the hierarchy stays nested.
+ * <p>
+ * Every step ends at a synchronization point where all bodies are at the same
+ * time, so positions, velocities and the day counter are consistent between calls.
+ * The accelerations then computed for every body start the next step, so the total
+ * number of force evaluations per step is the sum of 2<sup>k</sup> over all bodies
+ * rather than the number of bodies times 2<sup>max k</sup>.
+ * Note the force solver is still prepared (e.g. its tree rebuilt) on every sub-step.
+ */
+public class BlockTimestepIntegrator implements Integrator {
+    public static final int MAX_LEVEL = 20;
+
+    private final double eta;
+    private final double length;
+    private BodyStore primed; // store whose ax/ay match its current positions
+    private boolean restored; // jerkTime came from a checkpoint rather than being unknown
+    private int[] level = new int[0];
+    private int[] active = new int[0];
+    private double[] startAx = new double[0], startAy = new double[0]; // acceleration at the start of each body's step
+    private double[] jerkTime = new double[0]; // estimated |a|/|da/dt|, infinite if unknown
+    private long evaluations;
+    private long globalEvaluations;
+
+    /**
+     * Create an integrator with accuracy parameter 0.02 and a length scale of one pixel.
+     */
+    public BlockTimestepIntegrator() {
+        this(0.02, 1.0);
+    }
+
+    /**
+     * Create a block time step integrator.
+     * @param eta fraction of a body's timescale to use as its step, must be positive
+     * @param length length scale L for the acceleration-only timescale sqrt(L/|a|), must be positive
+     * @throws IllegalArgumentException if eta or length is not positive
+     */
+    public BlockTimestepIntegrator(double eta, double length) {
+        if (!(eta > 0)) throw new IllegalArgumentException("eta must be positive");
+        if (!(length > 0)) throw new IllegalArgumentException("Length scale must be positive");
+        this.eta = eta;
+        this.length = length;
+    }
+
+    @Override //required
+    public void step(BodyStore bodies, ForceSolver solver, double dt) {
+        double[] x = bodies.x, y = bodies.y, vx = bodies.vx, vy = bodies.vy;
+        double[] ax = bodies.ax, ay = bodies.ay;
+        int n = bodies.size();
+        if (level.length < n) allocate(bodies.x.length);
+        if (primed != bodies) {
+            solver.computeAccelerations(bodies);
+            evaluations += n;
+            if (!restored) Arrays.fill(jerkTime, Double.POSITIVE_INFINITY);
+            restored = false;
+            primed = bodies;
+        }
+        int maxLevel = 0;
+        for (int i = 0; i < n; ++i) {
+            level[i] = levelFor(bodies, i, dt, MAX_LEVEL);
+            maxLevel = Math.max(maxLevel, level[i]);
+        }
+        int ticks = 1 << maxLevel;
+        double tick = dt / ticks;
+        globalEvaluations += (long) n * ticks;
+
+        for (int i = 0; i < n; ++i) { // opening half kicks
+            double h = dt / (1 << level[i]) / 2;
+            startAx[i] = ax[i];
+            startAy[i] = ay[i];
+            vx[i] += ax[i] * h;
+            vy[i] += ay[i] * h;
+        }
+        for (int t = 1; t <= ticks; ++t) {
+            for (int i = 0; i < n; ++i) {
+                x[i] += vx[i] * tick;
+                y[i] += vy[i] * tick;
+            }
+            int count = 0;
+            for (int i = 0; i < n; ++i) {
+                if ((t & ((1 << (maxLevel - level[i])) - 1)) == 0) active[count++] = i;
+            }
+            solver.prepare(bodies);
+            solver.accelerate(bodies, active, count);
+            evaluations += count;
+            for (int k = 0; k < count; ++k) {
+                int i = active[k];
+                double h = dt / (1 << level[i]) / 2;
+                vx[i] += ax[i] * h; // closing half kick
+                vy[i] += ay[i] * h;
+                double change = Math.hypot(ax[i] - startAx[i], ay[i] - startAy[i]);
+                jerkTime[i] = change == 0 ? Double.POSITIVE_INFINITY : Math.hypot(ax[i], ay[i]) * 2 * h / change;
+                if (t == ticks) continue; // everyone is synchronized at the end
+                int wanted = levelFor(bodies, i, dt, maxLevel);
+                // coarser levels only where their step boundaries line up with this tick
+                int next = level[i];
+                while (next > wanted && (t & ((1 << (maxLevel - next + 1)) - 1)) == 0) --next;
+                if (wanted > next) next = wanted;
+                level[i] = next;
+                startAx[i] = ax[i];
+                startAy[i] = ay[i];
+                h = dt / (1 << next) / 2;
+                vx[i] += ax[i] * h; // opening half kick of the next step
+                vy[i] += ay[i] * h;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        level = new int[capacity];
+        active = new int[capacity];
+        startAx = new double[capacity];
+        startAy = new double[capacity];
+        jerkTime = new double[capacity];
+        primed = null;
+    }
+
+    /**
+     * Return the level whose step dt/2<sup>k</sup> fits the timescale of a body.
+     */
+    private int levelFor(BodyStore bodies, int i, double dt, int maxLevel) {
+        double a = Math.hypot(bodies.ax[i], bodies.ay[i]);
+        if (a == 0) return 0;
+        double v = Math.hypot(bodies.vx[i], bodies.vy[i]);
+        double wanted = eta * Math.min(Math.max(v / a, Math.sqrt(length / a)), jerkTime[i]);
+        if (wanted >= dt) return 0;
+        int k = (int) Math.ceil(Math.log(dt / wanted) / Math.log(2));
+        return Math.min(k, maxLevel);
+    }
+
+    /**
+     * @return number of single-body acceleration computations so far
+     */
+    public long getForceEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return number of single-body acceleration computations that stepping every body
+     * on the finest level in use would have needed for the same steps
+     */
+    public long getGlobalStepEvaluations() {
+        return globalEvaluations;
+    }
+
+    /**
+     * Return how many bodies were on each level during the last step.
+     * @param bodies bodies last stepped, must not be null
+     * @return counts indexed by level
+     */
+    public int[] getLevelHistogram(BodyStore bodies) {
+        int[] counts = new int[MAX_LEVEL + 1];
+        for (int i = 0; i < bodies.size() && i < level.length; ++i) {
+            ++counts[level[i]];
+        }
+        int top = MAX_LEVEL;
+        while (top > 0 && counts[top] == 0) --top;
+        return Arrays.copyOf(counts, top + 1);
+    }
+
+    @Override //implementation
+    public void reset() {
+        primed = null;
+    }
+
+    /**
+     * The step chosen for each body depends on the change of its acceleration
+     * over its previous step, so that estimate is carried.
+     */
+    @Override //implementation
+    public double[][] saveState(BodyStore bodies) {
+        double[] carried = new double[bodies.size()];
+        if (primed == bodies) System.arraycopy(jerkTime, 0, carried, 0, carried.length);
+        else Arrays.fill(carried, Double.POSITIVE_INFINITY);
+        return new double[][] {carried};
+    }
+
+    @Override //implementation
+    public void restoreState(BodyStore bodies, double[][] columns) {
+        if (columns.length != 1 || columns[0].length != bodies.size()) {
+            throw new IllegalArgumentException("State was not saved by a block time step integrator");
+        }
+        if (level.length < bodies.size()) allocate(bodies.x.length);
+        System.arraycopy(columns[0], 0, jerkTime, 0, bodies.size());
+        primed = null;
+        restored = true;
+    }
+}
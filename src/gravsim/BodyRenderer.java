@@ -0,0 +1,205 @@
+package gravsim;
+
+import java.awt.Graphics;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.util.Arrays;
+
+import javax.swing.JComponent;
+
+/**
+ * Draws bodies, trails and planets through a {@link Viewport}, for the live and replay panels.
+ * <p>
+ * Only what is on screen is drawn.  Bodies without a {@link Planet} are splatted into a
+ * {@link DensityRaster}: as 2 by 2 points while there are few of them, and as one
+ * pixel each, shaded by density, once there are too many to tell apart.  When the
+ * positions are new, one pass over them with a bounds check is the cheapest way to
+ * find the visible ones.  When the same positions are drawn again (panning or
+ * zooming a paused picture) the visible ones are looked up in a {@link UniformGrid}
+ * built for those positions, so a close-up of a large scene touches only its part.  Trails
+ * are kept from one frame to the next in a {@link TrailLayer}, so a frame only draws the
+ * newest point of each; they are drawn again in full only when the view is panned,
+ * zoomed or resized.  Planets on screen are drawn on top with {@link Planet#draw(Graphics, Point)}.
+ */
+public class BodyRenderer {
+    /**
+     * Largest number of visible bodies drawn as points; more are drawn as a density map.
+     */
+    public static final int POINT_LIMIT = 20000;
+
+    private final Viewport viewport = new Viewport();
+    private final UniformGrid grid = new UniformGrid();
+    private final DensityRaster raster = new DensityRaster(0xFFFFFF);
+    private final TrailLayer trails = new TrailLayer(0xFFFFFF);
+    private int[] planetAt = new int[0]; // per planet: index of its body in the frame, or -1 if it is gone
+    private int visible;
+    private boolean gridValid; // whether the grid holds the positions being drawn
+
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    /**
+     * @return number of bodies without a planet that were drawn in the last frame
+     */
+    public int getVisible() {
+        return visible;
+    }
+
+    /**
+     * Draw one frame.
+     * @param g graphics context, must not be null
+     * @param x x coordinates of the bodies, must not be null
+     * @param y y coordinates of the bodies, must not be null
+     * @param ids id of each body, or null if body i is the one with id i; the body with
+     *     id k is drawn as planet k
+     * @param count number of bodies
+     * @param planets appearance of the bodies with the lowest ids, must not be null;
+     *     their trails are extended
+     * @param advanced whether the positions differ from the last frame drawn, so trails
+     *     grow; must be true whenever they do
+     * @param width width of the area to draw in, in pixels
+     * @param height height of the area to draw in, in pixels
+     * @param metrics where to record the time spent on trails, or null
+     */
+    public void paint(Graphics g, double[] x, double[] y, int[] ids, int count, Planet[] planets, boolean advanced,
+            int width, int height, StepMetrics metrics) {
+        int named = planets.length;
+        int present = findPlanets(ids, count, named);
+        long trailStart = metrics == null ? 0 : System.nanoTime();
+        boolean redraw = trails.prepare(width, height, viewport);
+        if (advanced) trails.advance();
+        for (int k = 0; k < named; ++k) {
+            TrailBuffer trail = planets[k].trail;
+            int i = planetAt[k];
+            boolean added = advanced && i >= 0 && trail.add(x[i], y[i]);
+            if (redraw) {
+                trails.redraw(trail, viewport);
+            } else if (added) {
+                int last = trail.size() - 1;
+                trails.plot(viewport.screenX(trail.x(last)), viewport.screenY(trail.y(last)));
+            }
+        }
+        raster.clear(width, height, trails.getPixels());
+        if (metrics != null) metrics.recordNanos(StepMetrics.Phase.TRAILS, System.nanoTime() - trailStart);
+
+        visible = 0;
+        if (count > present) {
+            if (advanced) gridValid = false;
+            else if (!gridValid) {
+                grid.build(x, y, count);
+                gridValid = true;
+            }
+            double x0 = viewport.worldX(0);
+            double y0 = viewport.worldY(0);
+            double x1 = viewport.worldX(width);
+            double y1 = viewport.worldY(height);
+            if (!gridValid || grid.within(x0, y0, x1, y1)) {
+                for (int i = 0; i < count; ++i) {
+                    if (!isPlanet(ids, i, named) && raster.splat(viewport.screenX(x[i]), viewport.screenY(y[i]))) ++visible;
+                }
+            } else {
+                int found = grid.query(x0, y0, x1, y1);
+                int[] results = grid.getResults();
+                for (int k = 0; k < found; ++k) {
+                    int i = results[k];
+                    if (!isPlanet(ids, i, named) && raster.splat(viewport.screenX(x[i]), viewport.screenY(y[i]))) ++visible;
+                }
+            }
+        }
+        raster.draw(g, visible <= POINT_LIMIT);
+
+        for (int k = 0; k < named; ++k) {
+            Planet p = planets[k];
+            int i = planetAt[k];
+            if (i < 0) continue; // merged into another body
+            double sx = viewport.screenX(x[i]);
+            double sy = viewport.screenY(y[i]);
+            int r = p.getRadius() + 100; // room for the name
+            if (sx < -r || sy < -r || sx > width + r || sy > height + r) continue;
+            p.draw(g, new Point(sx, sy));
+        }
+    }
+
+    /**
+     * Fill in where each planet's body is in the frame.
+     * @return number of planets whose body is there
+     */
+    private int findPlanets(int[] ids, int count, int named) {
+        if (planetAt.length < named) planetAt = new int[named];
+        if (ids == null) {
+            for (int k = 0; k < named; ++k) {
+                planetAt[k] = k < count ? k : -1;
+            }
+            return Math.min(named, count);
+        }
+        Arrays.fill(planetAt, 0, named, -1);
+        if (named == 0) return 0;
+        int present = 0;
+        for (int i = 0; i < count; ++i) {
+            if (ids[i] < named) {
+                planetAt[ids[i]] = i;
+                ++present;
+            }
+        }
+        return present;
+    }
+
+    /**
+     * Empty the trails of the given planets and forget what was drawn of them.
+     * @param planets planets whose trails to clear, must not be null
+     */
+    public void clearTrails(Planet[] planets) {
+        for (Planet p : planets) {
+            p.trail.clear();
+        }
+        trails.invalidate();
+    }
+
+    private static boolean isPlanet(int[] ids, int i, int named) {
+        return named > 0 && (ids == null ? i : ids[i]) < named;
+    }
+
+    /**
+     * Let the user pan the view of a component by dragging, zoom with the mouse wheel
+     * and go back to the initial view with a double click.
+     * @param component component drawn by this renderer, must not be null
+     */
+    public void attach(JComponent component) {
+        MouseAdapter mouse = new MouseAdapter() {
+            private int lastX;
+            private int lastY;
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                lastX = e.getX();
+                lastY = e.getY();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                viewport.pan(e.getX() - lastX, e.getY() - lastY);
+                lastX = e.getX();
+                lastY = e.getY();
+                component.repaint();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                viewport.zoom(Math.pow(1.1, -e.getPreciseWheelRotation()), e.getX(), e.getY());
+                component.repaint();
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() != 2) return;
+                viewport.reset();
+                component.repaint();
+            }
+        };
+        component.addMouseListener(mouse);
+        component.addMouseMotionListener(mouse);
+        component.addMouseWheelListener(mouse);
+    }
+}
@@ -0,0 +1,252 @@
+package gravsim;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays storage for the bodies of a simulation.
+ * Positions, velocities and masses live in parallel primitive arrays so that
+ * the force loop can step every body without allocating any objects.
+ * {@link Planet} objects may be bound to an entry to act as a view on it.
+ * <p>
+ * Bodies can be removed in O(1) by moving the last body into the hole, so indices
+ * are not stable; each body also has an id that never changes, and
+ * {@link #indexOf(int)} finds its current index.  Ids are given out in order from 0,
+ * so until something is removed a body's id is its index.
+ */
+public class BodyStore {
+    double[] x;
+    double[] y;
+    double[] vx;
+    double[] vy;
+    double[] mass;
+    double[] ax; // acceleration computed by the last ForceSolver call
+    double[] ay;
+    double[] radius; // collision radius, 0 for a point mass that never collides
+    int[] id;
+    private int[] slot = new int[0]; // per id: current index, or -1 once removed
+    private int nextId;
+    private int count;
+
+    /**
+     * Create an empty store with room for the given number of bodies.
+     * @param capacity initial capacity, must not be negative
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public BodyStore(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Capacity cannot be negative");
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        mass = new double[capacity];
+        ax = new double[capacity];
+        ay = new double[capacity];
+        radius = new double[capacity];
+        id = new int[capacity];
+    }
+
+    /**
+     * Append a body to the store, growing the arrays if needed.
+     * @param px x coordinate of the position
+     * @param py y coordinate of the position
+     * @param pvx x component of the velocity
+     * @param pvy y component of the velocity
+     * @param m mass of the body, must be positive
+     * @return index of the new body
+     * @throws IllegalArgumentException if mass is not positive
+     */
+    public int add(double px, double py, double pvx, double pvy, double m) {
+        return add(px, py, pvx, pvy, m, 0);
+    }
+
+    /**
+     * Append a body that can collide with others, growing the arrays if needed.
+     * @param px x coordinate of the position
+     * @param py y coordinate of the position
+     * @param pvx x component of the velocity
+     * @param pvy y component of the velocity
+     * @param m mass of the body, must be positive
+     * @param r collision radius, must not be negative; 0 for none
+     * @return index of the new body
+     * @throws IllegalArgumentException if mass is not positive or the radius is negative
+     */
+    public int add(double px, double py, double pvx, double pvy, double m, double r) {
+        if (!(m > 0)) throw new IllegalArgumentException("Mass must be positive");
+        if (!(r >= 0)) throw new IllegalArgumentException("Radius cannot be negative");
+        if (count == x.length) grow(count + 1);
+        x[count] = px;
+        y[count] = py;
+        vx[count] = pvx;
+        vy[count] = pvy;
+        mass[count] = m;
+        radius[count] = r;
+        assignId(count);
+        return count++;
+    }
+
+    private void assignId(int i) {
+        if (nextId == slot.length) slot = Arrays.copyOf(slot, Math.max(4, 2 * slot.length));
+        id[i] = nextId;
+        slot[nextId++] = i;
+    }
+
+    /**
+     * Remove a body in constant time by moving the last body into its place,
+     * together with its acceleration.  The moved body keeps its id.
+     * @param i index of the body to remove
+     * @throws IndexOutOfBoundsException if there is no body at that index
+     */
+    public void remove(int i) {
+        if (i < 0 || i >= count) throw new IndexOutOfBoundsException("No body at index " + i);
+        int last = --count;
+        slot[id[i]] = -1;
+        if (i == last) return;
+        x[i] = x[last];
+        y[i] = y[last];
+        vx[i] = vx[last];
+        vy[i] = vy[last];
+        mass[i] = mass[last];
+        ax[i] = ax[last];
+        ay[i] = ay[last];
+        radius[i] = radius[last];
+        id[i] = id[last];
+        slot[id[i]] = i;
+    }
+
+    /**
+     * @param i index of a body
+     * @return id of the body, which stays the same when other bodies are removed
+     */
+    public int id(int i) {
+        return id[i];
+    }
+
+    /**
+     * Find the current index of a body.
+     * @param bodyId id of the body
+     * @return index of the body, or -1 if it was removed or never existed
+     */
+    public int indexOf(int bodyId) {
+        return bodyId >= 0 && bodyId < nextId ? slot[bodyId] : -1;
+    }
+
+    /**
+     * Make this store a copy of another one, ids included, growing the arrays if needed.
+     * Accelerations are not copied.
+     * @param other store to copy, must not be null
+     */
+    void copyFrom(BodyStore other) {
+        ensureCapacity(other.count);
+        System.arraycopy(other.x, 0, x, 0, other.count);
+        System.arraycopy(other.y, 0, y, 0, other.count);
+        System.arraycopy(other.vx, 0, vx, 0, other.count);
+        System.arraycopy(other.vy, 0, vy, 0, other.count);
+        System.arraycopy(other.mass, 0, mass, 0, other.count);
+        System.arraycopy(other.radius, 0, radius, 0, other.count);
+        System.arraycopy(other.id, 0, id, 0, other.count);
+        if (slot.length < other.nextId) slot = new int[other.slot.length];
+        System.arraycopy(other.slot, 0, slot, 0, other.nextId);
+        nextId = other.nextId;
+        count = other.count;
+    }
+
+    /**
+     * Set the number of bodies, for code that fills the arrays directly.
+     * Entries between the old and new size must be filled in by the caller;
+     * they are given new ids and a radius of 0.
+     * @param n new number of bodies, must not be negative
+     */
+    void setSize(int n) {
+        if (n < 0) throw new IllegalArgumentException("Size cannot be negative");
+        ensureCapacity(n);
+        for (int i = n; i < count; ++i) {
+            slot[id[i]] = -1;
+        }
+        for (int i = count; i < n; ++i) {
+            radius[i] = 0;
+            assignId(i);
+        }
+        count = n;
+    }
+
+    /**
+     * Rebuild the index of ids after the caller has filled in the id column directly,
+     * as when reading a checkpoint.  Ids must be distinct and not negative.
+     * @throws IllegalArgumentException if an id is negative or repeated
+     */
+    void reindex() {
+        int end = 0;
+        for (int i = 0; i < count; ++i) {
+            if (id[i] < 0) throw new IllegalArgumentException("Negative body id " + id[i]);
+            end = Math.max(end, id[i] + 1);
+        }
+        slot = new int[Math.max(4, end)];
+        Arrays.fill(slot, -1);
+        for (int i = 0; i < count; ++i) {
+            if (slot[id[i]] >= 0) throw new IllegalArgumentException("Repeated body id " + id[i]);
+            slot[id[i]] = i;
+        }
+        nextId = end;
+    }
+
+    /**
+     * Make room for at least the given number of bodies, for code about to add many.
+     */
+    void ensureCapacity(int capacity) {
+        if (x.length < capacity) grow(capacity);
+    }
+
+    private void grow(int atLeast) {
+        int capacity = Math.max(atLeast, Math.max(4, x.length * 2));
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        mass = Arrays.copyOf(mass, capacity);
+        ax = Arrays.copyOf(ax, capacity);
+        ay = Arrays.copyOf(ay, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        id = Arrays.copyOf(id, capacity);
+    }
+
+    /**
+     * @return number of bodies in the store
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Return the position of a body as a new point.
+     * @param i index of the body
+     * @return position, never null
+     */
+    public Point position(int i) {
+        return new Point(x[i], y[i]);
+    }
+
+    /**
+     * Return the velocity of a body as a new vector.
+     * @param i index of the body
+     * @return velocity, never null
+     */
+    public Vector velocity(int i) {
+        return new Vector(vx[i], vy[i]);
+    }
+
+    /**
+     * @param i index of the body
+     * @return mass of the body
+     */
+    public double mass(int i) {
+        return mass[i];
+    }
+
+    /**
+     * @param i index of the body
+     * @return collision radius of the body, 0 if it never collides
+     */
+    public double radius(int i) {
+        return radius[i];
+    }
+}
@@ -0,0 +1,201 @@
+package gravsim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Complete state of a simulation at a step boundary, and its binary file format.
+ * Files are written and read through memory-mapped {@link FileChannel} regions
+ * with bulk copies of whole columns, so a million bodies take a few tens of milliseconds.
+ * <p>
+ * Format (little-endian): the magic number, the format version (int), the number
+ * of bodies n (int), days (double), steps (long), dt (double), then the columns x, y,
+ * vx, vy, mass and radius of n doubles each and the body ids as n ints, then the number
+ * of integrator state columns (int) followed by those columns of n doubles each.
+ * Version 1 files, which have no radius or id columns, can still be read; their
+ * bodies have radius 0 and ids in index order.
+ * Restoring a checkpoint with the same solver and integrator continues along
+ * exactly the same trajectory, bit for bit, as the run that wrote it.
+ */
+public class Checkpoint {
+    public static final long MAGIC = 0x54504b434d495347L; // "GSIMCKPT"
+    public static final int VERSION = 2;
+    private static final int HEADER = 8 + 4 + 4 + 8 + 8 + 8;
+
+    BodyStore bodies;
+    double days;
+    long steps;
+    double dt;
+    double[][] integratorState = new double[0][];
+
+    Checkpoint() {}
+
+    /**
+     * Capture the current state of a simulation.  The copy is independent
+     * of the simulation, which may go on stepping.
+     * @param simulation simulation to copy, must not be null
+     * @return new checkpoint
+     */
+    public static Checkpoint of(Simulation simulation) {
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.copyFrom(simulation);
+        return checkpoint;
+    }
+
+    /**
+     * Overwrite this checkpoint with the state of a simulation, reusing its arrays where possible.
+     */
+    void copyFrom(Simulation simulation) {
+        BodyStore source = simulation.getBodies();
+        int n = source.size();
+        if (bodies == null || bodies.x.length < n) bodies = new BodyStore(n);
+        bodies.copyFrom(source);
+        days = simulation.getDays();
+        steps = simulation.getSteps();
+        dt = simulation.getTimeStep();
+        integratorState = simulation.getIntegrator().saveState(source);
+    }
+
+    /**
+     * Create a simulation that continues from this checkpoint.
+     * The bodies are copied, so the checkpoint can be restored again.
+     * @param solver force solver, must not be null; must be the one the saved run used
+     *     to continue its trajectory exactly
+     * @param integrator integrator, must not be null; likewise
+     * @return new simulation at the saved step
+     */
+    public Simulation restore(ForceSolver solver, Integrator integrator) {
+        BodyStore copy = new BodyStore(bodies.size());
+        copy.copyFrom(bodies);
+        Simulation simulation = new Simulation(copy, solver, integrator, dt);
+        simulation.setClock(days, steps);
+        if (integratorState.length > 0) integrator.restoreState(copy, integratorState);
+        return simulation;
+    }
+
+    public BodyStore getBodies() {
+        return bodies;
+    }
+
+    public double getDays() {
+        return days;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public double getTimeStep() {
+        return dt;
+    }
+
+    /**
+     * Write this checkpoint to a file.  The data goes to a temporary file that is then
+     * renamed over the target, so a crash part way through never leaves a broken checkpoint.
+     * @param file file to write, must not be null
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        int n = bodies.size();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER);
+            header.putLong(MAGIC).putInt(VERSION).putInt(n).putDouble(days).putLong(steps).putDouble(dt);
+            header.force();
+            long position = HEADER;
+            for (double[] column : new double[][] {bodies.x, bodies.y, bodies.vx, bodies.vy, bodies.mass, bodies.radius}) {
+                position = writeColumn(channel, position, column, n);
+            }
+            MappedByteBuffer ids = map(channel, FileChannel.MapMode.READ_WRITE, position, 4L * n);
+            ids.asIntBuffer().put(bodies.id, 0, n);
+            ids.force();
+            position += 4L * n;
+            MappedByteBuffer count = map(channel, FileChannel.MapMode.READ_WRITE, position, 4);
+            count.putInt(integratorState.length);
+            count.force();
+            position += 4;
+            for (double[] column : integratorState) {
+                position = writeColumn(channel, position, column, n);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long writeColumn(FileChannel channel, long position, double[] column, int n) throws IOException {
+        MappedByteBuffer buffer = map(channel, FileChannel.MapMode.READ_WRITE, position, 8L * n);
+        buffer.asDoubleBuffer().put(column, 0, n);
+        buffer.force();
+        return position + 8L * n;
+    }
+
+    /**
+     * Read a checkpoint from a file.
+     * @param file file to read, must not be null
+     * @return checkpoint read
+     * @throws IOException if the file cannot be read or is not a checkpoint of a known version
+     */
+    public static Checkpoint read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER) throw new IOException(file + " is too short to be a checkpoint");
+            ByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            if (header.getLong() != MAGIC) throw new IOException(file + " is not a checkpoint");
+            int version = header.getInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException(file + " has unsupported checkpoint version " + version);
+            }
+            int n = header.getInt();
+            Checkpoint checkpoint = new Checkpoint();
+            checkpoint.days = header.getDouble();
+            checkpoint.steps = header.getLong();
+            checkpoint.dt = header.getDouble();
+            long columnBytes = version == 1 ? 5 * 8L : 6 * 8L + 4;
+            if (n < 0 || size < HEADER + columnBytes * n + 4) throw new IOException(file + " is truncated");
+            BodyStore bodies = new BodyStore(n);
+            bodies.setSize(n);
+            long position = HEADER;
+            double[][] columns = {bodies.x, bodies.y, bodies.vx, bodies.vy, bodies.mass, bodies.radius};
+            for (int c = 0; c < (version == 1 ? 5 : 6); ++c) {
+                position = readColumn(channel, position, columns[c], n);
+            }
+            if (version > 1) {
+                map(channel, FileChannel.MapMode.READ_ONLY, position, 4L * n).asIntBuffer().get(bodies.id, 0, n);
+                position += 4L * n;
+                try {
+                    bodies.reindex();
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(file + " is corrupt: " + e.getMessage(), e);
+                }
+            }
+            int stateColumns = map(channel, FileChannel.MapMode.READ_ONLY, position, 4).getInt();
+            position += 4;
+            if (stateColumns < 0 || size < position + stateColumns * 8L * n) throw new IOException(file + " is truncated");
+            checkpoint.integratorState = new double[stateColumns][n];
+            for (double[] column : checkpoint.integratorState) {
+                position = readColumn(channel, position, column, n);
+            }
+            checkpoint.bodies = bodies;
+            return checkpoint;
+        }
+    }
+
+    private static long readColumn(FileChannel channel, long position, double[] column, int n) throws IOException {
+        map(channel, FileChannel.MapMode.READ_ONLY, position, 8L * n).asDoubleBuffer().get(column, 0, n);
+        return position + 8L * n;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long size)
+            throws IOException {
+        MappedByteBuffer buffer = channel.map(mode, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+}
@@ -0,0 +1,97 @@
+package gravsim;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write a {@link Checkpoint} of a running simulation every so many steps without
+ * holding up the step loop.  At each interval the state is copied into a staging
+ * checkpoint (a memory copy) and written to disk on a background thread.  If the
+ * previous write has not finished yet, that interval is skipped rather than waited for.
+ */
+public class CheckpointWriter implements AutoCloseable {
+    private final Path file;
+    private final long interval;
+    private final Checkpoint staging = new Checkpoint();
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "checkpoint-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile IOException failure;
+    private long written;
+    private long skipped;
+
+    /**
+     * Create a writer that keeps the latest checkpoint in the given file.
+     * @param file file to write, must not be null
+     * @param interval number of steps between checkpoints, must be positive
+     * @throws IllegalArgumentException if interval is not positive
+     */
+    public CheckpointWriter(Path file, long interval) {
+        if (file == null) throw new NullPointerException("file is null");
+        if (interval <= 0) throw new IllegalArgumentException("Interval must be positive");
+        this.file = file;
+        this.interval = interval;
+    }
+
+    /**
+     * Start writing a checkpoint if the simulation is at a multiple of the interval.
+     * To be called after each step, from the thread that steps the simulation.
+     * @param simulation simulation to save, must not be null
+     * @throws IOException if an earlier background write failed
+     */
+    public void afterStep(Simulation simulation) throws IOException {
+        if (failure != null) throw failure;
+        if (simulation.getSteps() % interval != 0) return;
+        if (!writing.compareAndSet(false, true)) {
+            ++skipped;
+            return;
+        }
+        staging.copyFrom(simulation);
+        ++written;
+        executor.execute(() -> {
+            try {
+                staging.write(file);
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                writing.set(false);
+            }
+        });
+    }
+
+    /**
+     * @return number of checkpoints started
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * @return number of intervals skipped because the previous write was still going on
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Wait for any write in progress to finish and stop the background thread.
+     * @throws IOException if a write failed
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) throw failure;
+    }
+}
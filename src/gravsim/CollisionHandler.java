@@ -0,0 +1,164 @@
+package gravsim;
+
+/**
+ * Detect and resolve collisions between bodies with a radius after each step.
+ * Candidates come from a {@link SpatialHash}; each overlapping pair is then
+ * resolved in turn, conserving total mass and momentum:
+ * <ul>
+ * <li>{@link Response#MERGE} replaces the pair by one body at their centre of mass,
+ * moving with their combined momentum.  The heavier body (the one with the lower id
+ * if they are equal) survives, keeping its id; the other is removed from the store
+ * in O(1), see {@link BodyStore#remove(int)}.  The merged radius keeps the total
+ * volume, as for two spheres of the same density.</li>
+ * <li>{@link Response#BOUNCE} exchanges an impulse along the line between the centres
+ * if the bodies are approaching, with the given coefficient of restitution (1 for a
+ * perfectly elastic bounce), and pushes them apart until they just touch without moving
+ * their centre of mass.</li>
+ * </ul>
+ * The renderer only sees copies of the bodies (see {@link SnapshotBuffer}), and
+ * {@link Planet} views follow their body by id, so removing bodies while they are
+ * being drawn or watched is safe.
+ */
+public class CollisionHandler {
+    /**
+     * What happens to two bodies that touch.
+     */
+    public enum Response { MERGE, BOUNCE }
+
+    private final Response response;
+    private final double restitution;
+    private final SpatialHash broadPhase = new SpatialHash();
+    private int[] firstId = new int[0];
+    private int[] secondId = new int[0];
+    private long merges;
+    private long bounces;
+
+    /**
+     * Create a handler; bounces are perfectly elastic.
+     * @param response what to do with bodies that touch, must not be null
+     */
+    public CollisionHandler(Response response) {
+        this(response, 1);
+    }
+
+    /**
+     * Create a handler.
+     * @param response what to do with bodies that touch, must not be null
+     * @param restitution ratio of the speed of separation to the speed of approach
+     *     after a bounce, from 0 to 1
+     * @throws IllegalArgumentException if restitution is outside [0, 1]
+     */
+    public CollisionHandler(Response response, double restitution) {
+        if (response == null) throw new NullPointerException("response is null");
+        if (!(restitution >= 0 && restitution <= 1)) throw new IllegalArgumentException("Restitution must be between 0 and 1");
+        this.response = response;
+        this.restitution = restitution;
+    }
+
+    public Response getResponse() {
+        return response;
+    }
+
+    /**
+     * @return number of pairs merged so far
+     */
+    public long getMerges() {
+        return merges;
+    }
+
+    /**
+     * @return number of pairs bounced off each other so far
+     */
+    public long getBounces() {
+        return bounces;
+    }
+
+    /**
+     * Find the bodies that overlap and merge or bounce them.
+     * @param bodies bodies to check, must not be null
+     * @return number of pairs resolved; if positive, bodies may have been removed or
+     *     reordered and velocities changed, so accelerations carried by an integrator
+     *     are out of date
+     */
+    public int resolve(BodyStore bodies) {
+        int found = broadPhase.findPairs(bodies);
+        if (found == 0) return 0;
+        if (firstId.length < found) {
+            firstId = new int[Math.max(found, 2 * firstId.length)];
+            secondId = new int[firstId.length];
+        }
+        int[] first = broadPhase.getFirst(), second = broadPhase.getSecond();
+        for (int k = 0; k < found; ++k) { // indices change as bodies are removed, ids do not
+            firstId[k] = bodies.id(first[k]);
+            secondId[k] = bodies.id(second[k]);
+        }
+        int resolved = 0;
+        for (int k = 0; k < found; ++k) {
+            int a = bodies.indexOf(firstId[k]);
+            int b = bodies.indexOf(secondId[k]);
+            if (a < 0 || b < 0 || !touching(bodies, a, b)) continue; // already merged or moved apart
+            if (response == Response.MERGE) {
+                merge(bodies, a, b);
+                ++merges;
+            } else {
+                bounce(bodies, a, b);
+                ++bounces;
+            }
+            ++resolved;
+        }
+        return resolved;
+    }
+
+    private static boolean touching(BodyStore bodies, int a, int b) {
+        double dx = bodies.x[b] - bodies.x[a];
+        double dy = bodies.y[b] - bodies.y[a];
+        double reach = bodies.radius[a] + bodies.radius[b];
+        return dx*dx + dy*dy < reach * reach;
+    }
+
+    private static void merge(BodyStore bodies, int a, int b) {
+        double ma = bodies.mass[a], mb = bodies.mass[b];
+        if (mb > ma || (mb == ma && bodies.id[b] < bodies.id[a])) {
+            int swap = a;
+            a = b;
+            b = swap;
+            ma = bodies.mass[a];
+            mb = bodies.mass[b];
+        }
+        double m = ma + mb;
+        bodies.x[a] = (ma * bodies.x[a] + mb * bodies.x[b]) / m;
+        bodies.y[a] = (ma * bodies.y[a] + mb * bodies.y[b]) / m;
+        bodies.vx[a] = (ma * bodies.vx[a] + mb * bodies.vx[b]) / m;
+        bodies.vy[a] = (ma * bodies.vy[a] + mb * bodies.vy[b]) / m;
+        bodies.mass[a] = m;
+        double ra = bodies.radius[a], rb = bodies.radius[b];
+        bodies.radius[a] = Math.cbrt(ra*ra*ra + rb*rb*rb);
+        bodies.remove(b);
+    }
+
+    private void bounce(BodyStore bodies, int a, int b) {
+        double dx = bodies.x[b] - bodies.x[a];
+        double dy = bodies.y[b] - bodies.y[a];
+        double d = Math.sqrt(dx*dx + dy*dy);
+        double nx = 1, ny = 0; // any direction will do for bodies exactly on top of each other
+        if (d > 0) {
+            nx = dx / d;
+            ny = dy / d;
+        }
+        double ma = bodies.mass[a], mb = bodies.mass[b];
+        double approach = (bodies.vx[b] - bodies.vx[a]) * nx + (bodies.vy[b] - bodies.vy[a]) * ny;
+        if (approach < 0) {
+            double impulse = -(1 + restitution) * approach / (1 / ma + 1 / mb);
+            bodies.vx[a] -= impulse / ma * nx;
+            bodies.vy[a] -= impulse / ma * ny;
+            bodies.vx[b] += impulse / mb * nx;
+            bodies.vy[b] += impulse / mb * ny;
+        }
+        double overlap = bodies.radius[a] + bodies.radius[b] - d;
+        double shiftA = overlap * mb / (ma + mb), shiftB = overlap * ma / (ma + mb);
+        bodies.x[a] -= shiftA * nx;
+        bodies.y[a] -= shiftA * ny;
+        bodies.x[b] += shiftB * nx;
+        bodies.y[b] += shiftB * ny;
+    }
+}
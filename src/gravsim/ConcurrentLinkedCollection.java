@@ -0,0 +1,258 @@
+package gravsim;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A concurrent counterpart of {@link LinkedCollection} that any number of threads
+ * may use at once, without locks: elements are appended at the tail and evicted from
+ * the head, as for a trail that gains a point per step on the physics thread while
+ * the event dispatch thread draws it.
+ * <p>
+ * The list is singly linked from a dummy head node to the tail, and both ends move
+ * by compare-and-set (Michael and Scott 1996): an append links its node after the
+ * last one, and whichever thread sees the tail lagging moves it on, so no thread
+ * ever waits for another.  {@link #poll()} evicts the oldest element in O(1), and
+ * the node it leaves becomes the new dummy.
+ * <p>
+ * Iterators are weakly consistent: they walk from the head at the time they are
+ * created up to the last node at that time, following the links past a lagging
+ * tail, so they see each element appended before they were created at most once,
+ * in order, unless it was evicted before they got to it, and nothing appended
+ * after.  They never throw
+ * {@link java.util.ConcurrentModificationException}; evicted nodes keep their links,
+ * so an iterator standing on one still finds its way.  Only the head can be removed,
+ * so {@link Iterator#remove} is not supported, nor is {@link #remove(Object)}.
+ * {@link #size()} walks the list, and is exact when no other thread is changing it.
+ * <p>
+ * The invariant is checked only with assertions enabled, and then only at about
+ * one operation in {@value #CHECK_ONE_IN}, since the check walks the whole list.
+ */
+public class ConcurrentLinkedCollection<E> extends AbstractCollection<E> {
+    private static final int CHECK_ONE_IN = 1024;
+    private static final VarHandle ITEM, NEXT, HEAD, TAIL;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            ITEM = lookup.findVarHandle(Node.class, "item", Object.class);
+            NEXT = lookup.findVarHandle(Node.class, "next", Node.class);
+            HEAD = lookup.findVarHandle(ConcurrentLinkedCollection.class, "head", Node.class);
+            TAIL = lookup.findVarHandle(ConcurrentLinkedCollection.class, "tail", Node.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static class Node<E> {
+        volatile E item; // null in the dummy
+        volatile Node<E> next; // null in the last node
+
+        Node(E item) {
+            ITEM.set(this, item); // plain write, published by the CAS that links the node
+        }
+    }
+
+    private volatile Node<E> head; // the dummy
+    private volatile Node<E> tail; // the last node, or one that was last not long ago
+
+    private static boolean doReport = true;
+
+    private static boolean report(String s) {
+        if (doReport) System.out.println("invariant error: " + s);
+        return false;
+    }
+
+    /**
+     * Check the part of the invariant that holds even while other threads change the list:
+     * <ol>
+     * <li> "head" and "tail" are not null.
+     * <li> The list starting from "head" ends (there is no cycle), which is checked
+     *   with Floyd's tortoise and hare.
+     * <li> The node that "tail" was pointing to is on the way, since the tail may lag
+     *   behind the last node but never falls behind the head.
+     * </ol>
+     * The head is read before the tail: the tail only moves forward, so it is still
+     * found from a head read earlier.
+     * @return whether the invariant is true
+     */
+    private boolean wellFormed() {
+        Node<E> h = head;
+        Node<E> t = tail;
+        if (h == null) return report("head is null");
+        if (t == null) return report("tail is null");
+        boolean tailFound = false;
+        Node<E> turtle = h, rabbit = h;
+        while (rabbit != null) {
+            if (rabbit == t) tailFound = true;
+            rabbit = rabbit.next;
+            if (rabbit == null) break;
+            if (rabbit == t) tailFound = true;
+            rabbit = rabbit.next;
+            turtle = turtle.next;
+            if (rabbit == turtle) return report("cycle in the list");
+        }
+        if (!tailFound) return report("tail not reachable from head");
+        return true;
+    }
+
+    /**
+     * @return whether this operation should check the invariant
+     */
+    private static boolean sampled() {
+        return ThreadLocalRandom.current().nextInt(CHECK_ONE_IN) == 0;
+    }
+
+    /**
+     * Initialize an empty collection.
+     */
+    public ConcurrentLinkedCollection() {
+        head = tail = new Node<E>(null);
+        assert wellFormed() : "invariant broken at constructor";
+    }
+
+    /**
+     * Append an element at the tail.
+     * @param element element to add, must not be null
+     * @return true
+     */
+    @Override //implementation
+    public boolean add(E element) {
+        if (element == null) throw new NullPointerException("element is null");
+        assert !sampled() || wellFormed() : "invariant failed at start of add";
+        Node<E> node = new Node<>(element);
+        while (true) {
+            Node<E> last = tail;
+            Node<E> next = last.next;
+            if (last != tail) continue; // moved while we looked
+            if (next == null) {
+                if (NEXT.compareAndSet(last, null, node)) {
+                    TAIL.compareAndSet(this, last, node); // fine if another thread already has
+                    break;
+                }
+            } else {
+                TAIL.compareAndSet(this, last, next); // help an append that has not moved the tail yet
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evict the oldest element.
+     * @return the element removed, or null if the collection is empty
+     */
+    public E poll() {
+        assert !sampled() || wellFormed() : "invariant failed at start of poll";
+        while (true) {
+            Node<E> first = head;
+            Node<E> last = tail;
+            Node<E> next = first.next;
+            if (first != head) continue;
+            if (next == null) return null;
+            if (first == last) { // the tail lags: move it on before the head passes it
+                TAIL.compareAndSet(this, last, next);
+                continue;
+            }
+            E element = next.item;
+            if (HEAD.compareAndSet(this, first, next)) {
+                ITEM.setRelease(next, null); // next is the dummy now; let the element be collected
+                return element;
+            }
+        }
+    }
+
+    /**
+     * @return the oldest element, or null if the collection is empty
+     */
+    public E peek() {
+        while (true) {
+            Node<E> first = head;
+            Node<E> next = first.next;
+            if (next == null) return null;
+            E element = next.item;
+            if (first == head) return element; // else next was evicted and its item may be gone
+        }
+    }
+
+    @Override //implementation
+    public boolean isEmpty() {
+        return head.next == null;
+    }
+
+    /**
+     * Count the elements by walking the list, in O(n).  No count is kept, since
+     * updating a shared counter would cost every append and eviction another
+     * atomic operation for the benefit of a method a trail does not need.
+     */
+    @Override //required
+    public int size() {
+        int n = 0;
+        for (Node<E> node = head.next; node != null && n < Integer.MAX_VALUE; node = node.next) {
+            if (node.item != null) ++n; // else it was evicted while we walked
+        }
+        return n;
+    }
+
+    /**
+     * Evict every element present when this is called.
+     */
+    @Override //implementation
+    public void clear() {
+        Node<E> last = tail;
+        while (head != last && poll() != null) {
+            // each poll moves the head one node nearer the tail we started with
+        }
+    }
+
+    @Override //required
+    public Iterator<E> iterator() {
+        return new MyIterator();
+    }
+
+    private class MyIterator implements Iterator<E> {
+        private Node<E> cursor; // the node whose element next() returns, or null at the end
+        private E element; // its element, read when the cursor got there
+        private final Node<E> last; // the last node when the iterator was created
+
+        MyIterator() {
+            cursor = head; // before the tail, so that the tail is found from it
+            Node<E> end = tail;
+            for (Node<E> next = end.next; next != null; next = end.next) {
+                end = next; // the tail lags behind an append that has linked its node
+            }
+            last = end;
+            advance();
+        }
+
+        /**
+         * Move to the next node that still has its element, without going past the last one.
+         */
+        private void advance() {
+            while (cursor != last && cursor != null) {
+                cursor = cursor.next;
+                if (cursor == null) break;
+                element = cursor.item;
+                if (element != null) return;
+            }
+            cursor = null;
+            element = null;
+        }
+
+        @Override //required
+        public boolean hasNext() {
+            return cursor != null;
+        }
+
+        @Override //required
+        public E next() {
+            if (cursor == null) throw new NoSuchElementException("No such element");
+            E result = element;
+            advance();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package gravsim;
+
+import java.io.PrintStream;
+
+/**
+ * Track how far the total energy and angular momentum of a simulation drift
+ * from their initial values.  Both are conserved by the exact dynamics, so their
+ * drift measures the error of the integrator (and of the force solver).
+ * Computing the energy is O(n&sup2;), so sample only every so many steps.
+ */
+public class ConservationReport {
+    private final double softening;
+    private final double gravity;
+    private final double initialEnergy;
+    private final double initialMomentum;
+    private double energy;
+    private double momentum;
+    private double maxEnergyDrift;
+    private double maxMomentumDrift;
+    private int samples;
+
+    /**
+     * Start a report from the current state of the bodies.
+     * @param bodies bodies to watch, must not be null
+     */
+    public ConservationReport(BodyStore bodies) {
+        this(bodies, 0);
+    }
+
+    /**
+     * Start a report for a simulation whose force solver softens gravity, so that
+     * the potential energy is measured with the same kernel.
+     * @param bodies bodies to watch, must not be null
+     * @param softening Plummer softening length of the solver, must not be negative
+     * @throws IllegalArgumentException if softening is negative
+     */
+    public ConservationReport(BodyStore bodies, double softening) {
+        this(bodies, softening, Planet.G);
+    }
+
+    /**
+     * Start a report for a simulation run with another gravitational constant,
+     * see {@link ScaledGravitySolver}.
+     * @param bodies bodies to watch, must not be null
+     * @param softening Plummer softening length of the solver, must not be negative
+     * @param gravity gravitational constant of the solver, must be positive
+     * @throws IllegalArgumentException if softening is negative or gravity is not positive
+     */
+    public ConservationReport(BodyStore bodies, double softening, double gravity) {
+        if (!(softening >= 0)) throw new IllegalArgumentException("Softening cannot be negative");
+        if (!(gravity > 0)) throw new IllegalArgumentException("Gravity must be positive");
+        this.softening = softening;
+        this.gravity = gravity;
+        initialEnergy = energy = energy(bodies, softening, gravity);
+        initialMomentum = momentum = angularMomentum(bodies);
+    }
+
+    /**
+     * Record the current state of the bodies.
+     * @param bodies bodies being watched, must not be null
+     */
+    public void sample(BodyStore bodies) {
+        energy = energy(bodies, softening, gravity);
+        momentum = angularMomentum(bodies);
+        maxEnergyDrift = Math.max(maxEnergyDrift, Math.abs(getEnergyDrift()));
+        maxMomentumDrift = Math.max(maxMomentumDrift, Math.abs(getMomentumDrift()));
+        ++samples;
+    }
+
+    /**
+     * @return relative change of the energy between the start and the last sample
+     */
+    public double getEnergyDrift() {
+        return (energy - initialEnergy) / Math.abs(initialEnergy);
+    }
+
+    /**
+     * @return relative change of the angular momentum between the start and the last sample
+     */
+    public double getMomentumDrift() {
+        return (momentum - initialMomentum) / Math.abs(initialMomentum);
+    }
+
+    /**
+     * @return largest relative energy drift of any sample
+     */
+    public double getMaxEnergyDrift() {
+        return maxEnergyDrift;
+    }
+
+    /**
+     * @return largest relative angular momentum drift of any sample
+     */
+    public double getMaxMomentumDrift() {
+        return maxMomentumDrift;
+    }
+
+    /**
+     * Print the initial and last values and the drift of both quantities.
+     * @param out stream to print to, must not be null
+     */
+    public void print(PrintStream out) {
+        out.printf("%-18s %16s %16s %12s %12s%n", "quantity", "initial", "final", "drift", "max drift");
+        out.printf("%-18s %16.9g %16.9g %12.3e %12.3e%n", "energy",
+                initialEnergy, energy, getEnergyDrift(), maxEnergyDrift);
+        out.printf("%-18s %16.9g %16.9g %12.3e %12.3e%n", "angular momentum",
+                initialMomentum, momentum, getMomentumDrift(), maxMomentumDrift);
+        out.printf("(%d samples)%n", samples);
+    }
+
+    /**
+     * Compute the total kinetic plus gravitational potential energy.
+     * @param bodies bodies to measure, must not be null
+     * @return total energy
+     */
+    public static double energy(BodyStore bodies) {
+        return energy(bodies, 0);
+    }
+
+    /**
+     * Compute the total energy with a Plummer-softened potential, -G m m / sqrt(r&sup2; + &epsilon;&sup2;),
+     * the potential of the softened force.
+     * @param bodies bodies to measure, must not be null
+     * @param softening softening length &epsilon;
+     * @return total energy
+     */
+    public static double energy(BodyStore bodies, double softening) {
+        return energy(bodies, softening, Planet.G);
+    }
+
+    /**
+     * Compute the total energy with a softened potential and the given gravitational constant.
+     * @param bodies bodies to measure, must not be null
+     * @param softening softening length &epsilon;
+     * @param gravity gravitational constant
+     * @return total energy
+     */
+    public static double energy(BodyStore bodies, double softening, double gravity) {
+        double e2 = softening * softening;
+        double[] x = bodies.x, y = bodies.y, vx = bodies.vx, vy = bodies.vy, mass = bodies.mass;
+        int n = bodies.size();
+        double kinetic = 0, potential = 0;
+        for (int i = 0; i < n; ++i) {
+            kinetic += 0.5 * mass[i] * (vx[i]*vx[i] + vy[i]*vy[i]);
+            for (int j = i + 1; j < n; ++j) {
+                double dx = x[j] - x[i], dy = y[j] - y[i];
+                potential -= gravity * mass[i] * mass[j] / Math.sqrt(dx*dx + dy*dy + e2);
+            }
+        }
+        return kinetic + potential;
+    }
+
+    /**
+     * Compute the total angular momentum (the z component, the only one in two dimensions)
+     * about the centre of mass, in the frame moving with it.  This does not depend on
+     * where the origin of the screen coordinates happens to be.
+     * @param bodies bodies to measure, must not be null
+     * @return total angular momentum
+     */
+    public static double angularMomentum(BodyStore bodies) {
+        double m = 0, cx = 0, cy = 0, cvx = 0, cvy = 0;
+        for (int i = 0; i < bodies.size(); ++i) {
+            m += bodies.mass[i];
+            cx += bodies.mass[i] * bodies.x[i];
+            cy += bodies.mass[i] * bodies.y[i];
+            cvx += bodies.mass[i] * bodies.vx[i];
+            cvy += bodies.mass[i] * bodies.vy[i];
+        }
+        if (m == 0) return 0;
+        cx /= m;
+        cy /= m;
+        cvx /= m;
+        cvy /= m;
+        double total = 0;
+        for (int i = 0; i < bodies.size(); ++i) {
+            total += bodies.mass[i] * ((bodies.x[i] - cx) * (bodies.vy[i] - cvy) - (bodies.y[i] - cy) * (bodies.vx[i] - cvx));
+        }
+        return total;
+    }
+}
@@ -0,0 +1,109 @@
+package gravsim;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Offscreen layer for drawing many small things at once.  Bodies are splatted
+ * as counts per pixel and turned into a brightness that grows with the logarithm
+ * of the count, so dense regions stay distinct instead of saturating.  Everything
+ * goes straight into the {@code int[]} behind a {@link BufferedImage}, which is
+ * then drawn with a single call.
+ */
+public class DensityRaster {
+    private static final int LEVELS = 256;
+
+    private BufferedImage image;
+    private int[] pixels;
+    private int[] counts = new int[0];
+    private final int[] colors = new int[LEVELS]; // brightness level to ARGB
+    private int[] levels = new int[0]; // count to brightness level, for the common counts
+    private int width;
+    private int height;
+    private int maxCount;
+
+    /**
+     * Create a layer that shows bodies in shades of the given color.
+     * @param rgb color of the densest pixels, as 0xRRGGBB
+     */
+    public DensityRaster(int rgb) {
+        for (int level = 0; level < LEVELS; ++level) {
+            colors[level] = level << 24 | rgb;
+        }
+    }
+
+    /**
+     * Clear the layer, resizing it to the given size if needed.
+     */
+    public void clear(int w, int h) {
+        clear(w, h, null);
+    }
+
+    /**
+     * Clear the layer to a background, resizing it to the given size if needed.
+     * Copying the background in costs no more than clearing.
+     * @param background ARGB pixels of the given size, row by row, or null for none
+     */
+    public void clear(int w, int h, int[] background) {
+        w = Math.max(1, w);
+        h = Math.max(1, h);
+        if (image == null || w != width || h != height) {
+            width = w;
+            height = h;
+            image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            counts = new int[w * h];
+        } else {
+            if (background == null) Arrays.fill(pixels, 0);
+            Arrays.fill(counts, 0);
+        }
+        if (background != null) System.arraycopy(background, 0, pixels, 0, pixels.length);
+        maxCount = 0;
+    }
+
+    /**
+     * Count a body at the given pixel.
+     * @return false if the pixel is off the layer and nothing was counted
+     */
+    public boolean splat(double sx, double sy) {
+        if (!(sx >= 0 && sy >= 0 && sx < width && sy < height)) return false;
+        int c = ++counts[(int) sy * width + (int) sx];
+        if (c > maxCount) maxCount = c;
+        return true;
+    }
+
+    /**
+     * Turn the counts into colors and draw the layer.
+     * @param points whether to draw each counted pixel as a solid 2 by 2 point, like
+     *     {@link Point#draw}, rather than as one pixel shaded by its count
+     */
+    public void draw(Graphics g, boolean points) {
+        if (points) {
+            for (int i = 0; i < counts.length; ++i) {
+                if (counts[i] == 0) continue;
+                int c = colors[LEVELS - 1];
+                pixels[i] = c;
+                if (i % width < width - 1) pixels[i + 1] = c;
+                if (i + width < pixels.length) {
+                    pixels[i + width] = c;
+                    if (i % width < width - 1) pixels[i + width + 1] = c;
+                }
+            }
+        } else if (maxCount > 0) {
+            double norm = (LEVELS - 1) / Math.log1p(maxCount);
+            int tabulated = Math.min(maxCount, 4096) + 1;
+            if (levels.length < tabulated) levels = new int[4097];
+            for (int c = 1; c < tabulated; ++c) {
+                levels[c] = Math.max(64, (int) (Math.log1p(c) * norm));
+            }
+            for (int i = 0; i < counts.length; ++i) {
+                int c = counts[i];
+                if (c == 0) continue;
+                pixels[i] = colors[c < tabulated ? levels[c] : Math.max(64, (int) (Math.log1p(c) * norm))];
+            }
+        }
+        g.drawImage(image, 0, 0, null);
+    }
+}
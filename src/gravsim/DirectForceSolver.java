@@ -0,0 +1,90 @@
+package gravsim;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Exact O(n&sup2;) solver summing the pull of every other body in index order.
+ * This computes the same acceleration as summing {@link Planet#gravForceOn}
+ * and dividing by the mass, without allocating anything.
+ * <p>
+ * An optional Plummer softening length &epsilon; replaces r&sup2; by r&sup2; + &epsilon;&sup2;
+ * in the kernel, so the pull of a close neighbour stays finite instead of forcing
+ * tiny time steps through the encounter.
+ */
+public class DirectForceSolver implements ForceSolver {
+    private final double softening2;
+
+    /**
+     * Create a solver with the exact (unsoftened) kernel.
+     */
+    public DirectForceSolver() {
+        this(0);
+    }
+
+    /**
+     * Create a solver with Plummer softening.
+     * @param softening softening length, must not be negative; 0 gives the exact kernel
+     * @throws IllegalArgumentException if softening is negative
+     */
+    public DirectForceSolver(double softening) {
+        if (!(softening >= 0)) throw new IllegalArgumentException("Softening cannot be negative");
+        this.softening2 = softening * softening;
+    }
+
+    /**
+     * Create the fastest direct solver available: one whose inner loop uses SIMD
+     * instructions through the {@code jdk.incubator.vector} module if the JVM was started
+     * with {@code --add-modules jdk.incubator.vector}, or else this scalar one.  Both
+     * give the same accelerations.
+     * @param softening softening length, must not be negative; 0 gives the exact kernel
+     * @return new solver, never null
+     * @throws IllegalArgumentException if softening is negative
+     */
+    public static ForceSolver vectorized(double softening) {
+        if (isVectorAvailable()) {
+            try {
+                return (ForceSolver) Class.forName("gravsim.VectorDirectForceSolver")
+                        .getDeclaredConstructor(double.class).newInstance(softening);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            } catch (ReflectiveOperationException | LinkageError e) { // fall through to the scalar solver
+            }
+        }
+        return new DirectForceSolver(softening);
+    }
+
+    /**
+     * @return whether the Vector API module is loaded, so that {@link #vectorized} uses it
+     */
+    public static boolean isVectorAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    /**
+     * @return softening length
+     */
+    public double getSoftening() {
+        return Math.sqrt(softening2);
+    }
+
+    @Override //required
+    public void accelerate(BodyStore bodies, int from, int to) {
+        double[] x = bodies.x, y = bodies.y, mass = bodies.mass;
+        double e2 = softening2;
+        int n = bodies.size();
+        for (int i = from; i < to; ++i) {
+            double ax = 0, ay = 0;
+            for (int j = 0; j < n; ++j) {
+                if (j == i) continue; // no force from particle on itself
+                double dx = x[j] - x[i];
+                double dy = y[j] - y[i];
+                double r2 = dx*dx + dy*dy + e2;
+                double s = Planet.G * mass[j] / (r2 * Math.sqrt(r2));
+                ax += dx * s;
+                ay += dy * s;
+            }
+            bodies.ax[i] = ax;
+            bodies.ay[i] = ay;
+        }
+    }
+}
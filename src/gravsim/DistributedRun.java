@@ -0,0 +1,314 @@
+package gravsim;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Headless entry point that splits a system across several processes: this one
+ * coordinates, and each {@link DomainWorker} steps the bodies of one domain with a
+ * {@link DomainForceSolver}.  Domains are slabs of equal numbers of bodies in x,
+ * fixed at the start; they stay correct as bodies wander between them, only
+ * less economical.
+ * <pre>
+ * java DistributedRun [--workers K] [--steps N] [--scene FILE] [--integrator euler|verlet|yoshida]
+ *                     [--dt DT] [--softening EPS] [--theta T] [--unix] [--port P] [--no-launch]
+ *                     [--verify [--tolerance TOL]]
+ * </pre>
+ * Workers connect over TCP on the loopback interface, or over a Unix-domain socket
+ * with {@code --unix}.  The coordinator starts them itself, with the same Java and
+ * class path, unless given {@code --no-launch}; it then prints the address to start
+ * them with.  It only relays messages between the workers: every force evaluation,
+ * it gathers their boxes and sends them to all, then gathers the point masses each
+ * worker exports and sends every worker those meant for it, as slices of the
+ * buffers it read them into.
+ * <p>
+ * {@code --theta} is the opening angle of the monopoles the workers send each other
+ * (0 sends every body, for the exact direct sum).  {@code --verify} then runs the same
+ * system in this process with the {@link DirectForceSolver} and fails (exit status 1)
+ * if any body ends further from where it does there than the tolerance, relative to
+ * the size of the system.
+ */
+public class DistributedRun {
+    private static final String USAGE =
+            "usage: java DistributedRun [--workers K] [--steps N] [--scene FILE] [--integrator euler|verlet|yoshida]\n"
+            + "                           [--dt DT] [--softening EPS] [--theta T] [--unix] [--port P] [--no-launch]\n"
+            + "                           [--verify [--tolerance TOL]]";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int workers = 2;
+        long steps = 1000;
+        Path scene = null;
+        String integratorName = "verlet";
+        double dt = 1.0;
+        double softening = 0;
+        double theta = 0.3;
+        boolean unix = false;
+        int port = 0;
+        boolean launch = true;
+        boolean verify = false;
+        double tolerance = 1e-6;
+        BodyStore bodies;
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--workers": workers = Integer.parseInt(args[++i]); break;
+                    case "--steps": steps = Long.parseLong(args[++i]); break;
+                    case "--scene": scene = Paths.get(args[++i]); break;
+                    case "--integrator": integratorName = args[++i]; break;
+                    case "--dt": dt = Double.parseDouble(args[++i]); break;
+                    case "--softening": softening = Double.parseDouble(args[++i]); break;
+                    case "--theta": theta = Double.parseDouble(args[++i]); break;
+                    case "--unix": unix = true; break;
+                    case "--port": port = Integer.parseInt(args[++i]); break;
+                    case "--no-launch": launch = false; break;
+                    case "--verify": verify = true; break;
+                    case "--tolerance": tolerance = Double.parseDouble(args[++i]); break;
+                    default: throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+            if (workers <= 0) throw new IllegalArgumentException("Worker count must be positive");
+            if (!(dt > 0)) throw new IllegalArgumentException("Time step must be positive");
+            if (!(softening >= 0)) throw new IllegalArgumentException("Softening cannot be negative");
+            if (!(theta >= 0)) throw new IllegalArgumentException("Opening angle cannot be negative");
+            // every worker must evaluate forces as often as the others, which block time steps do not
+            if (integratorName.equals("block")) throw new IllegalArgumentException("block time steps cannot be distributed");
+            BatchRun.integratorFor(integratorName, 0.02);
+            bodies = scene != null ? SceneLoader.load(scene) : SolarSystem.create();
+        } catch (RuntimeException e) { // bad number, missing value or unknown option
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        List<Process> processes = new ArrayList<>();
+        Launcher launcher;
+        if (launch) {
+            launcher = (address, count) -> {
+                String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+                for (int w = 0; w < count; ++w) {
+                    processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                            DomainWorker.class.getName(), address).inheritIO().start());
+                }
+            };
+        } else {
+            launcher = (address, count) -> System.out.printf("waiting for %d workers: java -cp %s %s %s%n", count,
+                    System.getProperty("java.class.path"), DomainWorker.class.getName(), address);
+        }
+        BodyStore ordered;
+        try {
+            ordered = run(bodies, workers, steps, dt, softening, theta, integratorName, unix, port, launcher);
+        } finally {
+            for (Process process : processes) {
+                process.waitFor();
+            }
+        }
+
+        Simulation distributed = new Simulation(ordered);
+        distributed.setClock(Simulation.DAYS_PER_TIME_UNIT * dt * steps, steps);
+        BatchRun.printState(distributed, System.out);
+        if (verify && !verify(bodies, ordered, BatchRun.integratorFor(integratorName, 0.02), dt, steps, softening, tolerance)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Starts the workers of a run.
+     */
+    interface Launcher {
+        /**
+         * @param address address for the workers to connect to, as {@link DomainWorker} takes it
+         * @param workers number of workers to start
+         * @throws IOException if a worker cannot be started
+         */
+        void launch(String address, int workers) throws IOException;
+    }
+
+    /**
+     * Coordinate a run: listen, have the workers started, send them their domains,
+     * relay their messages until they finish and collect the bodies.
+     * @param port TCP port to listen on, or 0 for any free one; ignored if unix
+     * @return the bodies at the end, in the order of the given ones
+     * @throws IOException if a connection fails
+     */
+    static BodyStore run(BodyStore bodies, int workers, long steps, double dt, double softening, double theta,
+            String integratorName, boolean unix, int port, Launcher launcher) throws IOException {
+        Path socketDirectory = unix ? Files.createTempDirectory("gravsim") : null;
+        SocketChannel[] channels = new SocketChannel[workers];
+        BodyStore result;
+        long sent = 0;
+        double seconds;
+        try (ServerSocketChannel server = unix ? ServerSocketChannel.open(StandardProtocolFamily.UNIX) : ServerSocketChannel.open()) {
+            String address;
+            if (unix) {
+                Path socket = socketDirectory.resolve("coordinator.socket");
+                server.bind(UnixDomainSocketAddress.of(socket));
+                address = "unix:" + socket;
+            } else {
+                server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                InetSocketAddress bound = (InetSocketAddress) server.getLocalAddress();
+                address = bound.getHostString() + ":" + bound.getPort();
+            }
+            launcher.launch(address, workers);
+            for (int w = 0; w < workers; ++w) {
+                channels[w] = server.accept();
+                if (!unix) channels[w].setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+
+            long start = System.nanoTime();
+            sendDomains(bodies, channels, steps, dt, softening, theta, integratorName);
+            ByteBuffer[] inbound = new ByteBuffer[workers];
+            for (int w = 0; w < workers; ++w) {
+                inbound[w] = ByteBuffer.allocateDirect(1 << 16);
+            }
+            result = new BodyStore(bodies.size());
+            while (true) {
+                inbound[0] = DomainProtocol.read(channels[0], inbound[0], DomainProtocol.ANY);
+                int type = inbound[0].getInt(4);
+                for (int w = 1; w < workers; ++w) {
+                    inbound[w] = DomainProtocol.read(channels[w], inbound[w], type);
+                }
+                if (type == DomainProtocol.FINISH) break;
+                if (type != DomainProtocol.BOX) throw new IOException("Unexpected message " + type);
+                for (int w = 0; w < workers; ++w) {
+                    ByteBuffer[] boxes = new ByteBuffer[workers];
+                    for (int v = 0; v < workers; ++v) {
+                        boxes[v] = inbound[v].duplicate();
+                    }
+                    DomainProtocol.write(channels[w], DomainProtocol.BOXES, boxes);
+                }
+                for (int w = 0; w < workers; ++w) {
+                    inbound[w] = DomainProtocol.read(channels[w], inbound[w], DomainProtocol.EXPORT);
+                }
+                routeExports(channels, inbound);
+            }
+            for (int w = 0; w < workers; ++w) {
+                ByteBuffer in = inbound[w];
+                int n = in.getInt();
+                for (int i = 0; i < n; ++i) {
+                    DomainProtocol.getBody(in, result);
+                }
+                sent += in.getLong();
+            }
+            seconds = (System.nanoTime() - start) / 1e9;
+        } finally {
+            for (SocketChannel channel : channels) {
+                if (channel != null) channel.close();
+            }
+            if (socketDirectory != null) {
+                Files.deleteIfExists(socketDirectory.resolve("coordinator.socket"));
+                Files.deleteIfExists(socketDirectory);
+            }
+        }
+        result.reindex();
+        BodyStore ordered = new BodyStore(result.size()); // in the order of the scene, for printing and comparing
+        for (int i = 0; i < bodies.size(); ++i) {
+            int k = result.indexOf(bodies.id(i));
+            ordered.add(result.x[k], result.y[k], result.vx[k], result.vy[k], result.mass[k], result.radius[k]);
+        }
+        System.out.printf("%d steps of %d bodies on %d workers in %.3f s: %.1f steps/s, %.0f point masses exchanged per step%n",
+                steps, bodies.size(), workers, seconds, steps / seconds, (double) sent / Math.max(1, steps));
+        return ordered;
+    }
+
+    /**
+     * Split the bodies into slabs of equal counts in x and send each worker its slab
+     * with the settings.
+     */
+    private static void sendDomains(BodyStore bodies, SocketChannel[] channels, long steps, double dt,
+            double softening, double theta, String integratorName) throws IOException {
+        int n = bodies.size(), workers = channels.length;
+        double[] sorted = Arrays.copyOf(bodies.x, n);
+        Arrays.sort(sorted);
+        byte[] name = integratorName.getBytes(StandardCharsets.UTF_8);
+        int assigned = 0;
+        for (int w = 0; w < workers; ++w) {
+            // bodies from the w-th to the (w+1)-th quantile of x; the last worker takes all the rest
+            double low = w == 0 ? Double.NEGATIVE_INFINITY : sorted[(int) ((long) n * w / workers)];
+            double high = w == workers - 1 ? Double.POSITIVE_INFINITY : sorted[(int) ((long) n * (w + 1) / workers)];
+            int count = 0;
+            for (int i = 0; i < n; ++i) {
+                if (bodies.x[i] >= low && bodies.x[i] < high) ++count;
+            }
+            ByteBuffer out = ByteBuffer.allocateDirect(48 + name.length + DomainProtocol.BODY_BYTES * count);
+            out.putInt(w).putInt(workers).putLong(steps).putDouble(dt).putDouble(softening).putDouble(theta);
+            out.putInt(name.length).put(name).putInt(count);
+            for (int i = 0; i < n; ++i) {
+                if (bodies.x[i] >= low && bodies.x[i] < high) DomainProtocol.putBody(out, bodies, i);
+            }
+            DomainProtocol.write(channels[w], DomainProtocol.INIT, out.flip());
+            assigned += count;
+        }
+        if (assigned != n) throw new IllegalStateException("Bodies lost in the decomposition"); // NaN coordinates
+    }
+
+    /**
+     * Send every worker the sections of the others' exports that are meant for it,
+     * as slices of the buffers they were read into.
+     */
+    private static void routeExports(SocketChannel[] channels, ByteBuffer[] inbound) throws IOException {
+        int workers = channels.length;
+        ByteBuffer[][] sections = new ByteBuffer[workers][workers - 1]; // [to][k-th sender]
+        for (int from = 0; from < workers; ++from) {
+            ByteBuffer in = inbound[from];
+            int at = in.position();
+            for (int to = 0; to < workers; ++to) {
+                if (to == from) continue;
+                int length = in.getInt(at);
+                sections[to][from < to ? from : from - 1] = in.duplicate().position(at).limit(at + length).slice();
+                at += length;
+            }
+        }
+        for (int to = 0; to < workers; ++to) {
+            DomainProtocol.write(channels[to], DomainProtocol.IMPORT, sections[to]);
+        }
+    }
+
+    /**
+     * Run the system in this process and compare where the bodies end up.
+     * @return whether every body is within the tolerance
+     */
+    static boolean verify(BodyStore initial, BodyStore distributed, Integrator integrator, double dt,
+            long steps, double softening, double tolerance) {
+        BodyStore bodies = new BodyStore(initial.size());
+        bodies.copyFrom(initial);
+        Simulation reference = new Simulation(bodies, new DirectForceSolver(softening), integrator, dt);
+        for (long s = 0; s < steps; ++s) {
+            reference.step();
+        }
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        double worst = 0;
+        int worstBody = 0;
+        for (int i = 0; i < bodies.size(); ++i) {
+            minX = Math.min(minX, bodies.x[i]);
+            maxX = Math.max(maxX, bodies.x[i]);
+            minY = Math.min(minY, bodies.y[i]);
+            maxY = Math.max(maxY, bodies.y[i]);
+            double d = Math.hypot(distributed.x[i] - bodies.x[i], distributed.y[i] - bodies.y[i]);
+            if (!(d <= worst)) {
+                worst = d;
+                worstBody = i;
+            }
+        }
+        double size = Math.max(Math.max(maxX - minX, maxY - minY), Double.MIN_NORMAL);
+        boolean ok = worst / size <= tolerance;
+        System.out.printf("verify: largest distance from the single-process run %.3e (body %d), %.3e of the system size: %s%n",
+                worst, initial.id(worstBody), worst / size, ok ? "ok" : "FAILED, tolerance " + tolerance);
+        return ok;
+    }
+}
@@ -0,0 +1,229 @@
+package gravsim;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+/**
+ * Force solver of a {@link DomainWorker}: the bodies it holds are one domain of a
+ * larger system whose other domains live in other processes.
+ * <p>
+ * Before each force evaluation the workers swap the boxes around their bodies
+ * through the coordinator.  Each worker then sorts its bodies into a grid of
+ * {@value #CELLS} by {@value #CELLS} cells over its own box and, for every other
+ * worker, sends each cell either as its total mass at its centre of mass (the
+ * monopole) or, if the cell is too near that worker's box for the monopole to
+ * be accurate, as its bodies.  The criterion is that of {@link BarnesHutSolver},
+ * measured from the nearest point of the receiving box so that it holds for every
+ * body there: a cell of width s at distance d goes as one point when s/d &lt; &theta;.
+ * With &theta; = 0 every body is sent and the result is the exact direct sum, in a
+ * different order.  A worker may hold no bodies, when many share the x where its
+ * slab would begin; the others then send it nothing.
+ * <p>
+ * The accelerations of a worker's bodies are then the direct sum over its own
+ * bodies and over the point masses it received.  Everything happens in
+ * {@link #prepare} and {@link #accelerate} on the calling thread, and every
+ * worker must evaluate forces the same number of times, since each evaluation
+ * waits for all workers.
+ */
+class DomainForceSolver implements ForceSolver {
+    static final int CELLS = 8;
+
+    private final SocketChannel channel;
+    private final int worker;
+    private final int workers;
+    private final double theta;
+    private final double softening2;
+    private ByteBuffer out = ByteBuffer.allocateDirect(1 << 16);
+    private ByteBuffer in = ByteBuffer.allocateDirect(1 << 16);
+    private final double[] boxes; // per worker: min x, min y, max x, max y
+    private final double[] cellMass = new double[CELLS * CELLS];
+    private final double[] cellX = new double[CELLS * CELLS];
+    private final double[] cellY = new double[CELLS * CELLS];
+    private final int[] cellStart = new int[CELLS * CELLS + 1];
+    private final int[] cellNext = new int[CELLS * CELLS + 1];
+    private int[] cellOf = new int[0]; // per body: its cell
+    private int[] members = new int[0]; // bodies sorted by cell
+    private double[] pointX = new double[0], pointY = new double[0], pointMass = new double[0]; // received
+    private int points;
+    private long sent; // point masses sent, in total
+
+    DomainForceSolver(SocketChannel channel, int worker, int workers, double theta, double softening) {
+        this.channel = channel;
+        this.worker = worker;
+        this.workers = workers;
+        this.theta = theta;
+        this.softening2 = softening * softening;
+        this.boxes = new double[4 * workers];
+    }
+
+    /**
+     * @return number of point masses sent to other workers so far
+     */
+    long getSent() {
+        return sent;
+    }
+
+    /**
+     * Swap boxes and point masses with the other workers.
+     * @throws UncheckedIOException if the connection fails
+     */
+    @Override //implementation
+    public void prepare(BodyStore bodies) {
+        try {
+            exchangeBoxes(bodies);
+            sortIntoCells(bodies);
+            exchangePoints(bodies);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void exchangeBoxes(BodyStore bodies) throws IOException {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < bodies.size(); ++i) {
+            minX = Math.min(minX, bodies.x[i]);
+            maxX = Math.max(maxX, bodies.x[i]);
+            minY = Math.min(minY, bodies.y[i]);
+            maxY = Math.max(maxY, bodies.y[i]);
+        }
+        out.clear().putDouble(minX).putDouble(minY).putDouble(maxX).putDouble(maxY).flip();
+        DomainProtocol.write(channel, DomainProtocol.BOX, out);
+        in = DomainProtocol.read(channel, in, DomainProtocol.BOXES);
+        for (int k = 0; k < boxes.length; ++k) {
+            boxes[k] = in.getDouble();
+        }
+    }
+
+    /**
+     * Sort the bodies into the cells of this worker's box by counting, and add up
+     * the mass and centre of mass of each cell.
+     */
+    private void sortIntoCells(BodyStore bodies) {
+        int n = bodies.size();
+        if (cellOf.length < n) {
+            cellOf = new int[bodies.x.length];
+            members = new int[bodies.x.length];
+        }
+        double minX = boxes[4 * worker], minY = boxes[4 * worker + 1];
+        double width = Math.max(boxes[4 * worker + 2] - minX, boxes[4 * worker + 3] - minY);
+        double scale = width > 0 ? CELLS / width : 0;
+        Arrays.fill(cellStart, 0);
+        Arrays.fill(cellMass, 0);
+        Arrays.fill(cellX, 0);
+        Arrays.fill(cellY, 0);
+        for (int i = 0; i < n; ++i) {
+            int cx = Math.min(CELLS - 1, (int) ((bodies.x[i] - minX) * scale));
+            int cy = Math.min(CELLS - 1, (int) ((bodies.y[i] - minY) * scale));
+            int c = cy * CELLS + cx;
+            cellOf[i] = c;
+            ++cellStart[c + 1];
+            cellMass[c] += bodies.mass[i];
+            cellX[c] += bodies.mass[i] * bodies.x[i];
+            cellY[c] += bodies.mass[i] * bodies.y[i];
+        }
+        for (int c = 0; c < CELLS * CELLS; ++c) {
+            cellStart[c + 1] += cellStart[c];
+            if (cellMass[c] > 0) {
+                cellX[c] /= cellMass[c];
+                cellY[c] /= cellMass[c];
+            }
+        }
+        System.arraycopy(cellStart, 0, cellNext, 0, cellStart.length);
+        for (int i = 0; i < n; ++i) {
+            members[cellNext[cellOf[i]]++] = i;
+        }
+    }
+
+    private void exchangePoints(BodyStore bodies) throws IOException {
+        double minX = boxes[4 * worker], minY = boxes[4 * worker + 1];
+        double side = Math.max(boxes[4 * worker + 2] - minX, boxes[4 * worker + 3] - minY) / CELLS;
+        out.clear();
+        for (int w = 0; w < workers; ++w) {
+            if (w == worker) continue;
+            int start = out.position();
+            out = DomainProtocol.ensure(out, 4);
+            out.putInt(0); // length of the section, filled in below
+            for (int c = 0; c < CELLS * CELLS && !isEmpty(w); ++c) {
+                if (cellStart[c] == cellStart[c + 1]) continue;
+                if (side < theta * distanceToBox(cellX[c], cellY[c], w)) {
+                    out = DomainProtocol.ensure(out, 24);
+                    out.putDouble(cellX[c]).putDouble(cellY[c]).putDouble(cellMass[c]);
+                    ++sent;
+                    continue;
+                }
+                out = DomainProtocol.ensure(out, 24 * (cellStart[c + 1] - cellStart[c]));
+                for (int k = cellStart[c]; k < cellStart[c + 1]; ++k) {
+                    int i = members[k];
+                    out.putDouble(bodies.x[i]).putDouble(bodies.y[i]).putDouble(bodies.mass[i]);
+                }
+                sent += cellStart[c + 1] - cellStart[c];
+            }
+            out.putInt(start, out.position() - start);
+        }
+        out.flip();
+        DomainProtocol.write(channel, DomainProtocol.EXPORT, out);
+        in = DomainProtocol.read(channel, in, DomainProtocol.IMPORT);
+        int total = (in.remaining() - 4 * (workers - 1)) / 24;
+        if (pointX.length < total) {
+            pointX = new double[total];
+            pointY = new double[total];
+            pointMass = new double[total];
+        }
+        points = 0;
+        while (in.hasRemaining()) {
+            int end = in.position() + in.getInt();
+            while (in.position() < end) {
+                pointX[points] = in.getDouble();
+                pointY[points] = in.getDouble();
+                pointMass[points++] = in.getDouble();
+            }
+        }
+    }
+
+    /**
+     * @return whether worker w has no bodies, so that its box is empty (minimum +&infin;,
+     * maximum -&infin;) and nothing need be sent to it
+     */
+    private boolean isEmpty(int w) {
+        return !(boxes[4 * w] <= boxes[4 * w + 2]);
+    }
+
+    private double distanceToBox(double px, double py, int w) {
+        double dx = Math.max(0, Math.max(boxes[4 * w] - px, px - boxes[4 * w + 2]));
+        double dy = Math.max(0, Math.max(boxes[4 * w + 1] - py, py - boxes[4 * w + 3]));
+        return Math.sqrt(dx*dx + dy*dy);
+    }
+
+    @Override //required
+    public void accelerate(BodyStore bodies, int from, int to) {
+        double[] x = bodies.x, y = bodies.y, mass = bodies.mass;
+        double e2 = softening2;
+        int n = bodies.size();
+        for (int i = from; i < to; ++i) {
+            double ax = 0, ay = 0;
+            for (int j = 0; j < n; ++j) {
+                if (j == i) continue;
+                double dx = x[j] - x[i];
+                double dy = y[j] - y[i];
+                double r2 = dx*dx + dy*dy + e2;
+                double s = Planet.G * mass[j] / (r2 * Math.sqrt(r2));
+                ax += dx * s;
+                ay += dy * s;
+            }
+            for (int j = 0; j < points; ++j) {
+                double dx = pointX[j] - x[i];
+                double dy = pointY[j] - y[i];
+                double r2 = dx*dx + dy*dy + e2;
+                double s = Planet.G * pointMass[j] / (r2 * Math.sqrt(r2));
+                ax += dx * s;
+                ay += dy * s;
+            }
+            bodies.ax[i] = ax;
+            bodies.ay[i] = ay;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package gravsim;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Messages between the coordinator of a {@link DistributedRun} and its
+ * {@link DomainWorker}s.  Every message is an int giving the length of the rest,
+ * an int giving its type and the payload, all in the byte order of
+ * {@link ByteBuffer} (big-endian).  Buffers are direct, so the bytes go from and
+ * to the socket without a copy on the Java heap, and the coordinator forwards
+ * parts of what it received as slices of the same buffers.
+ * <ul>
+ * <li>{@link #INIT}, to a worker: its index, the number of workers, the number of
+ * steps, dt, the softening, the opening angle, the integrator's name (an int
+ * length and the bytes) and its bodies ({@link #putBody}).</li>
+ * <li>{@link #BOX}, from a worker before each force evaluation: the smallest and
+ * largest x and y of its bodies.  The coordinator answers every worker with
+ * {@link #BOXES}, the boxes of all workers in order.</li>
+ * <li>{@link #EXPORT}, from a worker: for every other worker in order, a section
+ * made of an int giving the section's length in bytes and the point masses (x, y
+ * and mass) that worker needs.  The coordinator answers with {@link #IMPORT}, the
+ * sections addressed to the worker, one from each other worker.</li>
+ * <li>{@link #FINISH}, from a worker at the end: the number of its bodies, the
+ * bodies and, as a long, the number of point masses it sent.</li>
+ * </ul>
+ */
+final class DomainProtocol {
+    static final int INIT = 1;
+    static final int BOX = 2;
+    static final int BOXES = 3;
+    static final int EXPORT = 4;
+    static final int IMPORT = 5;
+    static final int FINISH = 6;
+    /**
+     * Passed to {@link #read} to accept a message of any type.
+     */
+    static final int ANY = 0;
+
+    /**
+     * Bytes taken by one body: the id, position, velocity, mass and radius.
+     */
+    static final int BODY_BYTES = 4 + 6 * 8;
+
+    private DomainProtocol() {}
+
+    /**
+     * Read one message.
+     * @param channel channel to read from, in blocking mode
+     * @param buffer buffer to read into if it is large enough
+     * @param type expected type, or {@link #ANY}
+     * @return the buffer holding the payload, from its position to its limit:
+     *     the one given, or a larger one; the type is the int at index 4
+     * @throws IOException if reading fails, the channel is closed or the type is not the one expected
+     */
+    static ByteBuffer read(SocketChannel channel, ByteBuffer buffer, int type) throws IOException {
+        buffer.clear().limit(8);
+        fill(channel, buffer);
+        int length = buffer.getInt(0);
+        int actual = buffer.getInt(4);
+        if (type != ANY && actual != type) throw new IOException("Expected message " + type + ", got " + actual);
+        if (length < 4) throw new IOException("Bad message length " + length);
+        if (buffer.capacity() < length + 4) {
+            buffer = ByteBuffer.allocateDirect(Math.max(length + 4, 2 * buffer.capacity()));
+            buffer.putInt(0, length).putInt(4, actual);
+        }
+        buffer.clear().position(8).limit(length + 4);
+        fill(channel, buffer);
+        buffer.position(8);
+        return buffer;
+    }
+
+    private static void fill(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new EOFException("Connection closed");
+        }
+    }
+
+    /**
+     * Write a message made of a header and parts, in one gathering write where possible.
+     * @param channel channel to write to, in blocking mode
+     * @param type type of the message
+     * @param parts payload, each from its position to its limit; left with nothing remaining
+     * @throws IOException if writing fails
+     */
+    static void write(SocketChannel channel, int type, ByteBuffer... parts) throws IOException {
+        long length = 4;
+        for (ByteBuffer part : parts) {
+            length += part.remaining();
+        }
+        if (length > Integer.MAX_VALUE - 4) throw new IOException("Message too long");
+        ByteBuffer[] all = new ByteBuffer[parts.length + 1];
+        all[0] = ByteBuffer.allocate(8).putInt((int) length).putInt(type).flip();
+        System.arraycopy(parts, 0, all, 1, parts.length);
+        long left = length + 4;
+        while (left > 0) {
+            left -= channel.write(all);
+        }
+    }
+
+    /**
+     * Make sure a buffer can take the given number of bytes more.
+     * @return the buffer, or a larger copy of it
+     */
+    static ByteBuffer ensure(ByteBuffer buffer, int more) {
+        if (buffer.remaining() >= more) return buffer;
+        ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(buffer.position() + more, 2 * buffer.capacity()));
+        return larger.put(buffer.flip());
+    }
+
+    static void putBody(ByteBuffer out, BodyStore bodies, int i) {
+        out.putInt(bodies.id(i)).putDouble(bodies.x[i]).putDouble(bodies.y[i]).putDouble(bodies.vx[i])
+                .putDouble(bodies.vy[i]).putDouble(bodies.mass[i]).putDouble(bodies.radius[i]);
+    }
+
+    /**
+     * Add a body read from a message to the end of a store, with its id.
+     * Call {@link BodyStore#reindex()} once all are read.
+     */
+    static void getBody(ByteBuffer in, BodyStore bodies) {
+        int id = in.getInt();
+        int i = bodies.add(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble());
+        bodies.id[i] = id;
+    }
+}
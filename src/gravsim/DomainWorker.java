@@ -0,0 +1,89 @@
+package gravsim;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One process of a {@link DistributedRun}: connect to the coordinator, receive a
+ * domain of the system and the settings, step it with a {@link DomainForceSolver}
+ * and send the bodies back at the end.
+ * <pre>
+ * java DomainWorker HOST:PORT
+ * java DomainWorker unix:PATH
+ * </pre>
+ * The coordinator normally starts its workers itself; with {@code --no-launch}
+ * it waits for workers started by hand with the address it prints.
+ */
+public class DomainWorker {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: java DomainWorker HOST:PORT | unix:PATH");
+            System.exit(2);
+        }
+        try (SocketChannel channel = connect(args[0])) {
+            run(channel);
+        }
+    }
+
+    static SocketChannel connect(String address) throws IOException {
+        SocketAddress to;
+        SocketChannel channel;
+        if (address.startsWith("unix:")) {
+            to = UnixDomainSocketAddress.of(address.substring(5));
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            int colon = address.lastIndexOf(':');
+            if (colon < 0) throw new IllegalArgumentException("Address must be HOST:PORT or unix:PATH");
+            to = new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+            channel = SocketChannel.open();
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+        channel.connect(to);
+        return channel;
+    }
+
+    /**
+     * Receive a domain, step it and send it back.
+     * @param channel connection to the coordinator, in blocking mode
+     * @throws IOException if the connection fails
+     */
+    static void run(SocketChannel channel) throws IOException {
+        ByteBuffer in = DomainProtocol.read(channel, ByteBuffer.allocateDirect(1 << 16), DomainProtocol.INIT);
+        int worker = in.getInt();
+        int workers = in.getInt();
+        long steps = in.getLong();
+        double dt = in.getDouble();
+        double softening = in.getDouble();
+        double theta = in.getDouble();
+        byte[] name = new byte[in.getInt()];
+        in.get(name);
+        int n = in.getInt();
+        BodyStore bodies = new BodyStore(n);
+        for (int i = 0; i < n; ++i) {
+            DomainProtocol.getBody(in, bodies);
+        }
+        bodies.reindex();
+
+        DomainForceSolver solver = new DomainForceSolver(channel, worker, workers, theta, softening);
+        Integrator integrator = BatchRun.integratorFor(new String(name, StandardCharsets.UTF_8), 0.02);
+        Simulation simulation = new Simulation(bodies, solver, integrator, dt);
+        for (long s = 0; s < steps; ++s) {
+            simulation.step();
+        }
+
+        ByteBuffer out = ByteBuffer.allocateDirect(4 + DomainProtocol.BODY_BYTES * bodies.size() + 8);
+        out.putInt(bodies.size());
+        for (int i = 0; i < bodies.size(); ++i) {
+            DomainProtocol.putBody(out, bodies, i);
+        }
+        out.putLong(solver.getSent());
+        DomainProtocol.write(channel, DomainProtocol.FINISH, out.flip());
+    }
+}
@@ -0,0 +1,352 @@
+package gravsim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Run many independent variations of one scene side by side, to see how its
+ * fate depends on the mass of the sun, the initial velocities and the
+ * gravitational constant.
+ * <p>
+ * The scene is copied once and then only read.  Each worker thread owns a body
+ * store, a force solver, an integrator and a collision handler, which it reuses
+ * from one variant to the next, so a variant costs no allocation beyond what the
+ * steps themselves need.  Workers take the next variant from a shared counter, so
+ * variants that end early (or run slowly) do not leave threads idle.  Variants
+ * are numerous and independent, so this scales with the number of cores far better
+ * than running one simulation on all of them; the solvers should therefore use
+ * a single thread each.
+ */
+public class Ensemble {
+    /**
+     * One set of parameters.
+     */
+    public static final class Variant {
+        final int index;
+        final double sunMass;
+        final double velocityScale;
+        final double gravity;
+
+        /**
+         * @param index position of the variant in its list
+         * @param sunMass mass to give the heaviest body of the scene, must be positive
+         * @param velocityScale factor applied to every initial velocity
+         * @param gravity gravitational constant, must be positive
+         * @throws IllegalArgumentException if a mass or gravity is not positive
+         */
+        public Variant(int index, double sunMass, double velocityScale, double gravity) {
+            if (!(sunMass > 0)) throw new IllegalArgumentException("Sun mass must be positive");
+            if (!(gravity > 0)) throw new IllegalArgumentException("Gravity must be positive");
+            this.index = index;
+            this.sunMass = sunMass;
+            this.velocityScale = velocityScale;
+            this.gravity = gravity;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public double getSunMass() {
+            return sunMass;
+        }
+
+        public double getVelocityScale() {
+            return velocityScale;
+        }
+
+        public double getGravity() {
+            return gravity;
+        }
+    }
+
+    /**
+     * What became of one variant.
+     */
+    public static final class Result {
+        final Variant variant;
+        final double energyDrift;
+        final double maxEnergyDrift;
+        final double momentumDrift;
+        final int bodies;
+        final int ejected;
+        final long merges;
+        final long bounces;
+        final long nanos;
+
+        Result(Variant variant, ConservationReport report, BodyStore bodies, int ejected,
+                long merges, long bounces, long nanos) {
+            this.variant = variant;
+            this.energyDrift = report.getEnergyDrift();
+            this.maxEnergyDrift = report.getMaxEnergyDrift();
+            this.momentumDrift = report.getMomentumDrift();
+            this.bodies = bodies.size();
+            this.ejected = ejected;
+            this.merges = merges;
+            this.bounces = bounces;
+            this.nanos = nanos;
+        }
+
+        public Variant getVariant() {
+            return variant;
+        }
+
+        /**
+         * @return relative change of the energy between the start and the end
+         */
+        public double getEnergyDrift() {
+            return energyDrift;
+        }
+
+        /**
+         * @return largest relative energy drift of any sample
+         */
+        public double getMaxEnergyDrift() {
+            return maxEnergyDrift;
+        }
+
+        /**
+         * @return relative change of the angular momentum between the start and the end
+         */
+        public double getMomentumDrift() {
+            return momentumDrift;
+        }
+
+        /**
+         * @return number of bodies left at the end
+         */
+        public int getBodies() {
+            return bodies;
+        }
+
+        /**
+         * @return number of bodies no longer bound to the rest at the end
+         */
+        public int getEjected() {
+            return ejected;
+        }
+
+        public long getMerges() {
+            return merges;
+        }
+
+        public long getBounces() {
+            return bounces;
+        }
+
+        /**
+         * @return wall-clock time the variant took
+         */
+        public long getNanos() {
+            return nanos;
+        }
+    }
+
+    private final BodyStore scene = new BodyStore(0);
+    private final int sun;
+    private final Supplier<? extends ForceSolver> solvers;
+    private final Supplier<? extends Integrator> integrators;
+    private final double dt;
+    private final long steps;
+    private Supplier<? extends CollisionHandler> collisions;
+    private double softening;
+    private long sampleEvery;
+
+    /**
+     * Prepare an ensemble of the given scene.
+     * @param scene bodies to start every variant from, copied, must not be null or empty
+     * @param solvers makes one force solver per worker, must not be null
+     * @param integrators makes one integrator per worker, must not be null
+     * @param dt length of a step in time units, must be positive
+     * @param steps number of steps to run each variant for, must not be negative
+     * @throws IllegalArgumentException if the scene is empty, dt is not positive or steps is negative
+     */
+    public Ensemble(BodyStore scene, Supplier<? extends ForceSolver> solvers,
+            Supplier<? extends Integrator> integrators, double dt, long steps) {
+        if (scene == null) throw new NullPointerException("scene is null");
+        if (solvers == null) throw new NullPointerException("solvers is null");
+        if (integrators == null) throw new NullPointerException("integrators is null");
+        if (scene.size() == 0) throw new IllegalArgumentException("Scene is empty");
+        if (!(dt > 0)) throw new IllegalArgumentException("Time step must be positive");
+        if (steps < 0) throw new IllegalArgumentException("Step count cannot be negative");
+        this.scene.copyFrom(scene);
+        int heaviest = 0;
+        for (int i = 1; i < scene.size(); ++i) {
+            if (scene.mass[i] > scene.mass[heaviest]) heaviest = i;
+        }
+        this.sun = heaviest;
+        this.solvers = solvers;
+        this.integrators = integrators;
+        this.dt = dt;
+        this.steps = steps;
+    }
+
+    /**
+     * @return mass of the heaviest body of the scene, the one {@link Variant#getSunMass} replaces
+     */
+    public double getSunMass() {
+        return scene.mass[sun];
+    }
+
+    /**
+     * Make bodies collide in every variant.
+     * @param collisions makes one collision handler per worker, or null to let bodies pass through each other
+     */
+    public void setCollisions(Supplier<? extends CollisionHandler> collisions) {
+        this.collisions = collisions;
+    }
+
+    /**
+     * Tell the ensemble the softening of the solvers, so that energies are measured
+     * with the same kernel.
+     * @param softening Plummer softening length, must not be negative
+     * @throws IllegalArgumentException if softening is negative
+     */
+    public void setSoftening(double softening) {
+        if (!(softening >= 0)) throw new IllegalArgumentException("Softening cannot be negative");
+        this.softening = softening;
+    }
+
+    /**
+     * Sample the energy every so many steps as well as at the end, for the largest drift.
+     * Each sample is O(n&sup2;).
+     * @param sampleEvery steps between samples, 0 for the end only
+     * @throws IllegalArgumentException if sampleEvery is negative
+     */
+    public void setSampleEvery(long sampleEvery) {
+        if (sampleEvery < 0) throw new IllegalArgumentException("Sample interval cannot be negative");
+        this.sampleEvery = sampleEvery;
+    }
+
+    /**
+     * Make every combination of the given values, the sun masses varying slowest.
+     * @param sunMasses masses for the heaviest body, must not be null
+     * @param velocityScales factors for the initial velocities, must not be null
+     * @param gravities gravitational constants, must not be null
+     * @return new list of variants, numbered in order
+     * @throws IllegalArgumentException if a mass or gravity is not positive
+     */
+    public static List<Variant> grid(double[] sunMasses, double[] velocityScales, double[] gravities) {
+        List<Variant> variants = new ArrayList<>(sunMasses.length * velocityScales.length * gravities.length);
+        for (double m : sunMasses) {
+            for (double v : velocityScales) {
+                for (double g : gravities) {
+                    variants.add(new Variant(variants.size(), m, v, g));
+                }
+            }
+        }
+        return variants;
+    }
+
+    /**
+     * Run every variant.
+     * @param variants variants to run, must not be null
+     * @param threads number of worker threads, must be positive
+     * @return results in the order of the variants
+     * @throws InterruptedException if interrupted while waiting for the workers, which are then stopped
+     * @throws IllegalArgumentException if threads is not positive
+     */
+    public Result[] run(List<Variant> variants, int threads) throws InterruptedException {
+        if (variants == null) throw new NullPointerException("variants is null");
+        if (threads <= 0) throw new IllegalArgumentException("Thread count must be positive");
+        Result[] results = new Result[variants.size()];
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.max(1, Math.min(threads, variants.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<>(workers);
+            for (int w = 0; w < workers; ++w) {
+                futures.add(executor.submit(() -> {
+                    Worker worker = new Worker();
+                    for (int k = next.getAndIncrement(); k < results.length; k = next.getAndIncrement()) {
+                        if (Thread.currentThread().isInterrupted()) return;
+                        results[k] = worker.run(variants.get(k));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results; // the futures' completion makes the workers' writes visible
+    }
+
+    /**
+     * Count the bodies with positive energy relative to the rest of the bodies taken
+     * as one, as a two-body problem: the rest's centre of mass and total mass give
+     * a fair picture for a body far enough out to be leaving.  The heaviest body is
+     * not counted, since it is what the others escape from.  O(n).
+     */
+    static int countUnbound(BodyStore bodies, double gravity) {
+        int n = bodies.size();
+        int heaviest = 0;
+        double m = 0, mx = 0, my = 0, mvx = 0, mvy = 0;
+        for (int i = 0; i < n; ++i) {
+            if (bodies.mass[i] > bodies.mass[heaviest]) heaviest = i;
+            m += bodies.mass[i];
+            mx += bodies.mass[i] * bodies.x[i];
+            my += bodies.mass[i] * bodies.y[i];
+            mvx += bodies.mass[i] * bodies.vx[i];
+            mvy += bodies.mass[i] * bodies.vy[i];
+        }
+        int unbound = 0;
+        for (int i = 0; i < n; ++i) {
+            double mi = bodies.mass[i], rest = m - mi;
+            if (i == heaviest || !(rest > 0)) continue;
+            double dx = bodies.x[i] - (mx - mi * bodies.x[i]) / rest;
+            double dy = bodies.y[i] - (my - mi * bodies.y[i]) / rest;
+            double dvx = bodies.vx[i] - (mvx - mi * bodies.vx[i]) / rest;
+            double dvy = bodies.vy[i] - (mvy - mi * bodies.vy[i]) / rest;
+            double r = Math.sqrt(dx*dx + dy*dy);
+            if (0.5 * (dvx*dvx + dvy*dvy) > gravity * m / r) ++unbound;
+        }
+        return unbound;
+    }
+
+    /**
+     * Scratch state of one worker thread.
+     */
+    private class Worker {
+        private final BodyStore bodies = new BodyStore(scene.size());
+        private final ForceSolver solver = solvers.get();
+        private final Integrator integrator = integrators.get();
+        private final CollisionHandler handler = collisions != null ? collisions.get() : null;
+
+        Result run(Variant variant) {
+            long start = System.nanoTime();
+            bodies.copyFrom(scene);
+            bodies.mass[sun] = variant.sunMass;
+            for (int i = 0; i < bodies.size(); ++i) {
+                bodies.vx[i] *= variant.velocityScale;
+                bodies.vy[i] *= variant.velocityScale;
+            }
+            integrator.reset();
+            Simulation simulation = new Simulation(bodies, new ScaledGravitySolver(solver, variant.gravity), integrator, dt);
+            simulation.setCollisions(handler);
+            long merges = handler != null ? handler.getMerges() : 0;
+            long bounces = handler != null ? handler.getBounces() : 0;
+            ConservationReport report = new ConservationReport(bodies, softening, variant.gravity);
+            for (long s = 1; s <= steps; ++s) {
+                simulation.step();
+                if (sampleEvery > 0 && s % sampleEvery == 0 && s != steps) report.sample(bodies);
+            }
+            report.sample(bodies);
+            return new Result(variant, report, bodies, countUnbound(bodies, variant.gravity),
+                    handler != null ? handler.getMerges() - merges : 0,
+                    handler != null ? handler.getBounces() - bounces : 0,
+                    System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package gravsim;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Headless entry point for parameter sweeps: run every combination of the given
+ * sun masses, velocity factors and gravitational constants (see {@link Ensemble})
+ * on all cores, write one line per variant to a CSV file and print a summary.
+ * <pre>
+ * java EnsembleRun [--steps N] [--scene FILE] [--sun-mass LIST] [--velocity LIST] [--gravity LIST]
+ *                  [--threads K] [--out FILE] [--sample EVERY]
+ *                  [--solver direct|vector|symmetric|barnes-hut] [--theta T] [--softening EPS]
+ *                  [--collisions merge|bounce [--restitution E]]
+ *                  [--integrator euler|verlet|yoshida|block] [--dt DT] [--eta ETA]
+ * </pre>
+ * A LIST is either values separated by commas or {@code FROM:TO:COUNT}, COUNT values
+ * evenly spaced from FROM to TO.  By default each parameter takes the scene's own
+ * value only.  {@code --threads} is the number of variants run at once, by
+ * default one per core; every solver runs on a single thread.
+ * The other options are those of {@link BatchRun}.
+ */
+public class EnsembleRun {
+    private static final String USAGE =
+            "usage: java EnsembleRun [--steps N] [--scene FILE] [--sun-mass LIST] [--velocity LIST] [--gravity LIST]\n"
+            + "                        [--threads K] [--out FILE] [--sample EVERY]\n"
+            + "                        [--solver direct|vector|symmetric|barnes-hut] [--theta T] [--softening EPS]\n"
+            + "                        [--collisions merge|bounce [--restitution E]]\n"
+            + "                        [--integrator euler|verlet|yoshida|block] [--dt DT] [--eta ETA]\n"
+            + "       LIST is V1,V2,.. or FROM:TO:COUNT";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long steps = 10000;
+        String solverName = "direct";
+        double theta = 0.5;
+        double softening = 0;
+        String collisionName = null;
+        double restitution = 1;
+        String integratorName = "verlet";
+        double dt = 1.0;
+        double eta = 0.02;
+        long sampleEvery = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path scene = null;
+        Path out = Paths.get("ensemble.csv");
+        double[] sunMasses = null;
+        double[] velocities = {1};
+        double[] gravities = {Planet.G};
+        Ensemble ensemble;
+        List<Ensemble.Variant> variants;
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--steps": steps = Long.parseLong(args[++i]); break;
+                    case "--scene": scene = Paths.get(args[++i]); break;
+                    case "--sun-mass": sunMasses = parseList(args[++i]); break;
+                    case "--velocity": velocities = parseList(args[++i]); break;
+                    case "--gravity": gravities = parseList(args[++i]); break;
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    case "--out": out = Paths.get(args[++i]); break;
+                    case "--sample": sampleEvery = Long.parseLong(args[++i]); break;
+                    case "--solver": solverName = args[++i]; break;
+                    case "--theta": theta = Double.parseDouble(args[++i]); break;
+                    case "--softening": softening = Double.parseDouble(args[++i]); break;
+                    case "--collisions": collisionName = args[++i]; break;
+                    case "--restitution": restitution = Double.parseDouble(args[++i]); break;
+                    case "--integrator": integratorName = args[++i]; break;
+                    case "--dt": dt = Double.parseDouble(args[++i]); break;
+                    case "--eta": eta = Double.parseDouble(args[++i]); break;
+                    default: throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+            String solver = solverName, integrator = integratorName, collisions = collisionName;
+            double t = theta, e = softening, r = restitution, accuracy = eta;
+            BatchRun.solverFor(solver, t, e, 1, 1); // fail now rather than in every worker
+            BatchRun.integratorFor(integrator, accuracy);
+            if (collisions != null) BatchRun.collisionsFor(collisions, r);
+            BodyStore bodies = scene != null ? SceneLoader.load(scene) : SolarSystem.create();
+            ensemble = new Ensemble(bodies, () -> BatchRun.solverFor(solver, t, e, 1, 1),
+                    () -> BatchRun.integratorFor(integrator, accuracy), dt, steps);
+            ensemble.setSoftening(softening);
+            ensemble.setSampleEvery(sampleEvery);
+            if (collisions != null) ensemble.setCollisions(() -> BatchRun.collisionsFor(collisions, r));
+            if (sunMasses == null) sunMasses = new double[] {ensemble.getSunMass()};
+            variants = Ensemble.grid(sunMasses, velocities, gravities);
+            if (threads <= 0) throw new IllegalArgumentException("Thread count must be positive");
+        } catch (RuntimeException e) { // bad number, missing value or unknown option
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        long start = System.nanoTime();
+        Ensemble.Result[] results = ensemble.run(variants, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        write(results, out);
+
+        double[] drifts = new double[results.length];
+        long ejected = 0, disrupted = 0, variantNanos = 0;
+        for (int k = 0; k < results.length; ++k) {
+            drifts[k] = Math.abs(results[k].getEnergyDrift());
+            ejected += results[k].getEjected();
+            if (results[k].getEjected() > 0) ++disrupted;
+            variantNanos += results[k].getNanos();
+        }
+        Arrays.sort(drifts);
+        System.out.printf("%d variants of %d steps on %d threads in %.3f s: %.1f variants/s, %.3f s per variant%n",
+                results.length, steps, Math.min(threads, results.length), seconds, results.length / seconds,
+                variantNanos / 1e9 / results.length);
+        System.out.printf("|energy drift|: median %.3e, max %.3e%n", drifts[drifts.length / 2], drifts[drifts.length - 1]);
+        System.out.printf("%d bodies ejected, from %d of %d variants%n", ejected, disrupted, results.length);
+        System.out.println("results written to " + out);
+    }
+
+    /**
+     * Write one CSV line per variant, with a header line.
+     */
+    static void write(Ensemble.Result[] results, Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.println("variant,sun_mass,velocity_scale,gravity,energy_drift,max_energy_drift,momentum_drift,"
+                    + "bodies,ejected,merges,bounces,seconds");
+            for (Ensemble.Result r : results) {
+                Ensemble.Variant v = r.getVariant();
+                out.println(String.format(Locale.ROOT, "%d,%.9g,%.9g,%.9g,%.6e,%.6e,%.6e,%d,%d,%d,%d,%.6f",
+                        v.getIndex(), v.getSunMass(), v.getVelocityScale(), v.getGravity(), r.getEnergyDrift(),
+                        r.getMaxEnergyDrift(), r.getMomentumDrift(), r.getBodies(), r.getEjected(),
+                        r.getMerges(), r.getBounces(), r.getNanos() / 1e9));
+            }
+        }
+    }
+
+    /**
+     * Parse {@code V1,V2,..} or {@code FROM:TO:COUNT}.
+     * @throws IllegalArgumentException if the list is malformed
+     */
+    static double[] parseList(String text) {
+        String[] range = text.split(":");
+        if (range.length == 3) {
+            double from = Double.parseDouble(range[0]), to = Double.parseDouble(range[1]);
+            int count = Integer.parseInt(range[2]);
+            if (count <= 0) throw new IllegalArgumentException("Count must be positive in " + text);
+            double[] values = new double[count];
+            for (int k = 0; k < count; ++k) {
+                values[k] = count == 1 ? from : from + (to - from) * k / (count - 1);
+            }
+            return values;
+        }
+        if (range.length != 1) throw new IllegalArgumentException("Malformed list " + text);
+        String[] parts = text.split(",");
+        double[] values = new double[parts.length];
+        for (int k = 0; k < parts.length; ++k) {
+            values[k] = Double.parseDouble(parts[k].trim());
+        }
+        return values;
+    }
+}
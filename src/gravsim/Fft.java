@@ -0,0 +1,76 @@
+package gravsim;
+
+/**
+ * In-place radix-2 fast Fourier transform of complex sequences of one fixed
+ * power-of-two length, kept as separate arrays of real and imaginary parts.
+ * The bit-reversal permutation and the twiddle factors are computed once, so a
+ * transform allocates nothing and one instance may be shared by several threads.
+ * The inverse is not scaled: a forward and an inverse transform multiply by the length.
+ */
+final class Fft {
+    private final int n;
+    private final int[] reversed;
+    private final double[] cos, sin; // e^(-2 pi i k / n) for k < n/2
+
+    /**
+     * @param n length of the sequences, a power of two
+     * @throws IllegalArgumentException if n is not a power of two
+     */
+    Fft(int n) {
+        if (n < 1 || (n & (n - 1)) != 0) throw new IllegalArgumentException("Length must be a power of two");
+        this.n = n;
+        int bits = Integer.numberOfTrailingZeros(n);
+        reversed = new int[n];
+        for (int i = 0; i < n; ++i) {
+            reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+        cos = new double[n / 2];
+        sin = new double[n / 2];
+        for (int k = 0; k < n / 2; ++k) {
+            double angle = -2 * Math.PI * k / n;
+            cos[k] = Math.cos(angle);
+            sin[k] = Math.sin(angle);
+        }
+    }
+
+    int length() {
+        return n;
+    }
+
+    /**
+     * Transform n consecutive entries of the arrays in place.
+     * @param re real parts
+     * @param im imaginary parts
+     * @param offset index of the first entry
+     * @param inverse true for the inverse transform (without the 1/n)
+     */
+    void transform(double[] re, double[] im, int offset, boolean inverse) {
+        for (int i = 0; i < n; ++i) {
+            int j = reversed[i];
+            if (j > i) {
+                double t = re[offset + i];
+                re[offset + i] = re[offset + j];
+                re[offset + j] = t;
+                t = im[offset + i];
+                im[offset + i] = im[offset + j];
+                im[offset + j] = t;
+            }
+        }
+        double sign = inverse ? -1 : 1;
+        for (int size = 2; size <= n; size <<= 1) {
+            int half = size >>> 1, step = n / size;
+            for (int start = offset; start < offset + n; start += size) {
+                for (int k = 0; k < half; ++k) {
+                    double wr = cos[k * step], wi = sign * sin[k * step];
+                    int a = start + k, b = a + half;
+                    double tr = re[b] * wr - im[b] * wi;
+                    double ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
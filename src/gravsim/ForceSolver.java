@@ -0,0 +1,64 @@
+package gravsim;
+
+/**
+ * Strategy for computing the gravitational acceleration of the bodies in a store.
+ * Results are written into the store's acceleration arrays ({@code ax}, {@code ay}).
+ * A round of computation is {@link #prepare} followed by any number of
+ * {@link #accelerate} calls over disjoint ranges, which may run concurrently.
+ */
+public interface ForceSolver {
+    /**
+     * Get ready to compute accelerations for the current positions,
+     * for example by building a tree.  The default does nothing.
+     * @param bodies bodies to work on, must not be null
+     */
+    default void prepare(BodyStore bodies) {}
+
+    /**
+     * Compute the acceleration of the bodies with indices from (inclusive) to (exclusive),
+     * as caused by every other body in the store.  Must follow {@link #prepare}
+     * with no change to positions or masses in between.
+     * @param bodies bodies to work on, must not be null
+     * @param from first index to compute
+     * @param to one past the last index to compute
+     */
+    void accelerate(BodyStore bodies, int from, int to);
+
+    /**
+     * Compute the acceleration of the listed bodies only, as caused by every
+     * other body in the store.  Must follow {@link #prepare} like {@link #accelerate}.
+     * The default computes the whole list as one slice.
+     * @param bodies bodies to work on, must not be null
+     * @param targets indices of the bodies to compute, must not be null
+     * @param count number of entries of targets to use
+     */
+    default void accelerate(BodyStore bodies, int[] targets, int count) {
+        accelerate(bodies, targets, 0, count);
+    }
+
+    /**
+     * Compute the acceleration of the bodies listed in a slice of targets, as caused
+     * by every other body in the store.  Slices of one list with no entries in common
+     * may be computed concurrently, like disjoint ranges.  Solvers with setup per call
+     * (such as scratch space) override this one, so that it is done once per slice.
+     * The default computes one body at a time.
+     * @param bodies bodies to work on, must not be null
+     * @param targets indices of the bodies to compute, must not be null
+     * @param from first position in targets to use
+     * @param to one past the last position in targets to use
+     */
+    default void accelerate(BodyStore bodies, int[] targets, int from, int to) {
+        for (int k = from; k < to; ++k) {
+            accelerate(bodies, targets[k], targets[k] + 1);
+        }
+    }
+
+    /**
+     * Compute the acceleration of every body in the store.
+     * @param bodies bodies to work on, must not be null
+     */
+    default void computeAccelerations(BodyStore bodies) {
+        prepare(bodies);
+        accelerate(bodies, 0, bodies.size());
+    }
+}
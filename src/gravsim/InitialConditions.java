@@ -0,0 +1,146 @@
+package gravsim;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generators of large, reproducible initial conditions.  Each adds its bodies
+ * to a store, drawing every random number from a generator seeded by the caller,
+ * so the same arguments always give bit-for-bit the same bodies.
+ * Lengths are in screen units and velocities in screen units per time unit,
+ * with the gravitational constant of {@link Planet#G}.
+ */
+public final class InitialConditions {
+    private static final double G = Planet.G;
+
+    private InitialConditions() {}
+
+    /**
+     * Add a Plummer sphere: a cluster of equal masses with density proportional to
+     * (1 + r&sup2;/a&sup2;)<sup>-5/2</sup>, in virial equilibrium with isotropic velocities.
+     * Positions and velocities are drawn in three dimensions (Aarseth, H&eacute;non
+     * and Wielen 1974) and projected onto the plane, so the result is a hot,
+     * pressure-supported cluster.  Bodies beyond ten scale radii are drawn again.
+     * @param bodies store to add to, must not be null
+     * @param n number of bodies, must be positive
+     * @param seed seed of the random numbers
+     * @param cx x coordinate of the centre
+     * @param cy y coordinate of the centre
+     * @param cvx x velocity of the centre of mass
+     * @param cvy y velocity of the centre of mass
+     * @param totalMass mass of the whole cluster, must be positive
+     * @param radius Plummer scale radius a, must be positive
+     * @throws IllegalArgumentException if a count, mass or length is not positive
+     */
+    public static void plummer(BodyStore bodies, int n, long seed, double cx, double cy, double cvx, double cvy,
+            double totalMass, double radius) {
+        check(n, totalMass, radius);
+        SplittableRandom random = new SplittableRandom(seed);
+        bodies.ensureCapacity(bodies.size() + n);
+        double m = totalMass / n;
+        double[] p = new double[2];
+        double[] v = new double[2];
+        for (int i = 0; i < n; ++i) {
+            double r;
+            do {
+                double u = random.nextDouble(1e-12, 1.0);
+                r = radius / Math.sqrt(Math.pow(u, -2.0 / 3.0) - 1);
+            } while (r > 10 * radius);
+            isotropic(random, r, p);
+            double q;
+            double g;
+            do { // rejection sampling of q = v / v_escape from g(q) = q^2 (1 - q^2)^(7/2)
+                q = random.nextDouble();
+                g = 0.1 * random.nextDouble();
+            } while (g > q * q * Math.pow(1 - q * q, 3.5));
+            double escape = Math.sqrt(2 * G * totalMass) * Math.pow(r * r + radius * radius, -0.25);
+            isotropic(random, q * escape, v);
+            bodies.add(cx + p[0], cy + p[1], cvx + v[0], cvy + v[1], m);
+        }
+    }
+
+    /**
+     * Store in xy the x and y components of a vector of the given length pointing
+     * in a uniformly random direction in three dimensions.
+     */
+    private static void isotropic(SplittableRandom random, double length, double[] xy) {
+        double z = 2 * random.nextDouble() - 1;
+        double phi = 2 * Math.PI * random.nextDouble();
+        double planar = length * Math.sqrt(1 - z * z);
+        xy[0] = planar * Math.cos(phi);
+        xy[1] = planar * Math.sin(phi);
+    }
+
+    /**
+     * Add a rotating exponential disk: equal masses with surface density proportional to
+     * e<sup>-r/h</sup>, on circular orbits around an optional central body, counterclockwise.
+     * Orbital speeds count the central mass and the disk mass inside each radius.
+     * Radii are kept between h/20 and 10h.
+     * @param bodies store to add to, must not be null
+     * @param n number of disk bodies, must be positive
+     * @param seed seed of the random numbers
+     * @param cx x coordinate of the centre
+     * @param cy y coordinate of the centre
+     * @param cvx x velocity of the centre
+     * @param cvy y velocity of the centre
+     * @param diskMass mass of all disk bodies together, must be positive
+     * @param scaleLength scale length h, must be positive
+     * @param centralMass mass of a body added at the centre, or 0 for none
+     * @throws IllegalArgumentException if a count, mass or length is out of range
+     */
+    public static void exponentialDisk(BodyStore bodies, int n, long seed, double cx, double cy, double cvx,
+            double cvy, double diskMass, double scaleLength, double centralMass) {
+        check(n, diskMass, scaleLength);
+        if (centralMass < 0) throw new IllegalArgumentException("Central mass cannot be negative");
+        SplittableRandom random = new SplittableRandom(seed);
+        bodies.ensureCapacity(bodies.size() + n + 1);
+        if (centralMass > 0) bodies.add(cx, cy, cvx, cvy, centralMass);
+        double m = diskMass / n;
+        for (int i = 0; i < n; ++i) {
+            double r;
+            do { // the sum of two exponentials has density proportional to r e^(-r/h)
+                r = -scaleLength * Math.log(random.nextDouble(1e-300, 1.0) * random.nextDouble(1e-300, 1.0));
+            } while (r < scaleLength / 20 || r > 10 * scaleLength);
+            double a = 2 * Math.PI * random.nextDouble();
+            double s = r / scaleLength;
+            double enclosed = centralMass + diskMass * (1 - (1 + s) * Math.exp(-s));
+            double v = Math.sqrt(G * enclosed / r);
+            double cos = Math.cos(a);
+            double sin = Math.sin(a);
+            bodies.add(cx + r * cos, cy + r * sin, cvx - v * sin, cvy + v * cos, m);
+        }
+    }
+
+    /**
+     * Add two exponential disks (see {@link #exponentialDisk}) on a collision course.
+     * They start the given distance apart along the x axis, offset by the impact
+     * parameter along y, and approach each other at the given relative speed.
+     * The second disk's random numbers come from a seed derived from the first.
+     * @param bodies store to add to, must not be null
+     * @param n number of disk bodies in both galaxies together, must be at least 2
+     * @param seed seed of the random numbers
+     * @param cx x coordinate of the midpoint between the galaxies
+     * @param cy y coordinate of the midpoint
+     * @param diskMass disk mass of each galaxy, must be positive
+     * @param scaleLength scale length of each disk, must be positive
+     * @param centralMass central mass of each galaxy, or 0 for none
+     * @param separation initial distance between the centres along x
+     * @param impact offset between the centres along y
+     * @param speed relative speed of approach
+     * @throws IllegalArgumentException if a count, mass or length is out of range
+     */
+    public static void collidingGalaxies(BodyStore bodies, int n, long seed, double cx, double cy,
+            double diskMass, double scaleLength, double centralMass, double separation, double impact, double speed) {
+        if (n < 2) throw new IllegalArgumentException("Need at least one body per galaxy");
+        int first = n / 2;
+        exponentialDisk(bodies, first, seed, cx - separation / 2, cy - impact / 2, speed / 2, 0,
+                diskMass, scaleLength, centralMass);
+        exponentialDisk(bodies, n - first, new SplittableRandom(seed).nextLong(), cx + separation / 2,
+                cy + impact / 2, -speed / 2, 0, diskMass, scaleLength, centralMass);
+    }
+
+    private static void check(int n, double mass, double length) {
+        if (n <= 0) throw new IllegalArgumentException("Number of bodies must be positive");
+        if (!(mass > 0)) throw new IllegalArgumentException("Mass must be positive");
+        if (!(length > 0)) throw new IllegalArgumentException("Length must be positive");
+    }
+}
@@ -0,0 +1,42 @@
+package gravsim;
+
+/**
+ * Scheme for advancing the positions and velocities of bodies over a time step,
+ * given a way to compute their accelerations.
+ */
+public interface Integrator {
+    /**
+     * Advance every body by one step.
+     * @param bodies bodies to move, must not be null
+     * @param solver computes accelerations into the store, must not be null
+     * @param dt length of the step in simulation time units, must be positive
+     */
+    void step(BodyStore bodies, ForceSolver solver, double dt);
+
+    /**
+     * Forget anything carried over from the previous step.  Must be called
+     * if positions or masses are changed other than by {@link #step}.
+     * The default does nothing.
+     */
+    default void reset() {}
+
+    /**
+     * Return any per-body values this integrator carries from one step to the next
+     * that cannot be recomputed from positions and velocities, so that they can be
+     * saved with a {@link Checkpoint}.  The default carries nothing.
+     * @param bodies bodies being stepped, must not be null
+     * @return copies of the carried columns, each with one entry per body; never null
+     */
+    default double[][] saveState(BodyStore bodies) {
+        return new double[0][];
+    }
+
+    /**
+     * Take back values returned by {@link #saveState} so that the next step is
+     * exactly the one that would have followed when they were saved.
+     * The default ignores them.
+     * @param bodies bodies that will be stepped, must not be null
+     * @param columns columns as returned by saveState, must not be null
+     */
+    default void restoreState(BodyStore bodies, double[][] columns) {}
+}
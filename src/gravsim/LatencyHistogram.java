@@ -0,0 +1,102 @@
+package gravsim;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of durations in nanoseconds with buckets of constant relative width,
+ * in the manner of HdrHistogram: each power of two is split into 32 linear buckets,
+ * so any percentile is known to within about 3% from 1 ns up to about 18 minutes
+ * (longer durations count in the last bucket).  Recording is a few arithmetic
+ * operations and an array increment, and never allocates.
+ * <p>
+ * A histogram is meant to be written by one thread.  Other threads may read it
+ * while it is written and then see a slightly stale but usable picture.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_SHIFT = 40 - SUB_BITS; // up to 2^40 ns
+
+    private final long[] counts = new long[(MAX_SHIFT + 2) << SUB_BITS];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * Count one duration.
+     * @param nanos duration in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        ++counts[index(v)];
+        ++count;
+        sum += v;
+        if (v > max) max = v;
+    }
+
+    private static int index(long v) {
+        if (v < SUB_BUCKETS) return (int) v;
+        int shift = Math.min(63 - Long.numberOfLeadingZeros(v) - SUB_BITS, MAX_SHIFT);
+        long sub = Math.min(v >>> shift, 2 * SUB_BUCKETS - 1);
+        return ((shift + 1) << SUB_BITS) + (int) sub - SUB_BUCKETS;
+    }
+
+    private static long lowest(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = (index >> SUB_BITS) - 1;
+        return (long) ((index & (SUB_BUCKETS - 1)) + SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * @return number of durations recorded
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return longest duration recorded, in nanoseconds
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return mean duration in nanoseconds, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Return the duration that the given percentage of recorded durations do not exceed,
+     * to within the width of its bucket.
+     * @param percentile percentage from 0 to 100
+     * @return duration in nanoseconds, or 0 if nothing was recorded
+     * @throws IllegalArgumentException if percentile is out of range
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) throw new IllegalArgumentException("Percentile must be from 0 to 100");
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long mid = (lowest(i) + lowest(i + 1) - 1) / 2;
+                return Math.min(mid, max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+}
@@ -1,3 +1,5 @@
+package gravsim;
+
 import java.util.AbstractCollection;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
@@ -0,0 +1,133 @@
+package gravsim;
+
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.swing.AbstractAction;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.WindowConstants;
+
+/**
+ * Animate the solar system, or with {@code --replay FILE} play back
+ * a trajectory recorded by {@code BatchRun --record FILE}.
+ * {@code --scene FILE} animates a scene file (see {@link SceneLoader}) with Barnes-Hut
+ * instead; drag to pan, use the mouse wheel to zoom and double click to reset the view.
+ * {@code --metrics FILE} times every step and frame and writes the figures to the
+ * file each second (CSV, or JSON lines for a .json file); {@code --overlay}
+ * also draws them on screen.  {@code --collisions merge|bounce} makes bodies that
+ * touch merge or bounce (see {@link CollisionHandler}).
+ * <p>
+ * The simulation runs at {@code --rate} simulated days per second (by default what
+ * the old fixed 10 ms sleep per step aimed for), paced by a {@link Pacer}.  Space
+ * pauses and resumes; {@code ]} and {@code [} double and halve the speed.
+ */
+public class Main {
+    /**
+     * Simulated days per second at normal speed: a step every 10 ms.
+     */
+    public static final double DAYS_PER_SECOND = 100 * Simulation.DAYS_PER_TIME_UNIT;
+    private static final double MAX_WARP = 1024;
+
+    public static void main(String[] args) throws IOException {
+
+        BodyStore initial = SolarSystem.create();
+        Color[] colors = {Color.YELLOW, Color.darkGray, Color.white, Color.BLUE, Color.RED};
+        Planet[] planets = new Planet[initial.size()];
+        for (int i = 0; i < planets.length; ++i) {
+            planets[i] = new Planet(SolarSystem.NAMES[i], initial.position(i), initial.velocity(i),
+                    initial.mass(i), colors[i], SolarSystem.RADII[i]);
+        }
+        if (args.length == 2 && args[0].equals("--replay")) {
+            TrajectoryReader reader = new TrajectoryReader(Paths.get(args[1]));
+            reader.seek(reader.getFirstDays());
+            // a recording of anything but the solar system is drawn without planets; the frames'
+            // ids keep each planet's name and color on the right body after merges
+            Planet[] shown = reader.getFrame().size() == planets.length ? planets : new Planet[0];
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    ReplayViewer viewer = new ReplayViewer(reader, shown);
+                    viewer.setBackground(Color.black);
+                    JPanel content = new JPanel(new BorderLayout());
+                    content.add(viewer, BorderLayout.CENTER);
+                    content.add(viewer.createControls(), BorderLayout.SOUTH);
+                    JFrame j = new JFrame();
+                    j.setTitle("Particle Simulation - " + args[1]);
+                    j.setContentPane(content);
+                    j.setSize(1000,1000);
+                    j.setVisible(true);
+                    j.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+                }
+            });
+            return;
+        }
+        Path metricsFile = null;
+        Path scene = null;
+        String collisions = null;
+        double rate = DAYS_PER_SECOND;
+        boolean overlay = false;
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("--metrics") && i + 1 < args.length) metricsFile = Paths.get(args[++i]);
+            else if (args[i].equals("--scene") && i + 1 < args.length) scene = Paths.get(args[++i]);
+            else if (args[i].equals("--collisions") && i + 1 < args.length) collisions = args[++i];
+            else if (args[i].equals("--rate") && i + 1 < args.length) rate = Double.parseDouble(args[++i]);
+            else if (args[i].equals("--overlay")) overlay = true;
+        }
+        StepMetrics metrics = metricsFile != null || overlay ? new StepMetrics() : null;
+        final ParticleSimulation animation;
+        if (scene != null) {
+            ForceSolver solver = new ParallelForceSolver(new BarnesHutSolver(0.5));
+            if (metrics != null) solver = metrics.time(solver);
+            animation = new ParticleSimulation(new Simulation(SceneLoader.load(scene), solver), metrics);
+        } else {
+            animation = new ParticleSimulation(planets, new DirectForceSolver(), metrics);
+        }
+        if (collisions != null) animation.getSimulation().setCollisions(BatchRun.collisionsFor(collisions, 1));
+        animation.setMetricsOverlay(overlay);
+        if (metricsFile != null) new MetricsExporter(metrics, metricsFile, 1000); // runs until exit
+        Pacer pacer = Pacer.of(animation, rate);
+
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                JFrame j = new JFrame();
+                j.setTitle(title(pacer));
+                j.setContentPane(animation);
+                j.getContentPane().setBackground(Color.black);
+                j.setSize(1000,1000);
+                j.setVisible(true);
+                j.setResizable(true);
+                j.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+                bind(animation, ' ', "pause", () -> pacer.setPaused(!pacer.isPaused()), j, pacer);
+                bind(animation, ']', "faster", () -> pacer.setWarp(Math.min(MAX_WARP, pacer.getWarp() * 2)), j, pacer);
+                bind(animation, '[', "slower", () -> pacer.setWarp(Math.max(1 / MAX_WARP, pacer.getWarp() / 2)), j, pacer);
+            }
+        });
+
+        pacer.run(); // until the window is closed
+    }
+
+    private static String title(Pacer pacer) {
+        if (pacer.isPaused()) return "Particle Simulation - paused";
+        if (pacer.getWarp() == 1) return "Particle Simulation";
+        return "Particle Simulation - " + (pacer.getWarp() >= 1 ? Math.round(pacer.getWarp()) + "x" : "1/" + Math.round(1 / pacer.getWarp()) + "x");
+    }
+
+    private static void bind(JComponent component, char key, String name, Runnable action, JFrame frame, Pacer pacer) {
+        component.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key), name);
+        component.getActionMap().put(name, new AbstractAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override //required
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+                frame.setTitle(title(pacer));
+            }
+        });
+    }
+}
\ No newline at end of file
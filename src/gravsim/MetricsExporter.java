@@ -0,0 +1,103 @@
+package gravsim;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append the state of a {@link StepMetrics} to a file at a fixed period, from a
+ * background thread.  A file whose name ends in {@code .json} gets one JSON object
+ * per line; any other file gets CSV with a header line.  Durations are in microseconds.
+ */
+public class MetricsExporter implements AutoCloseable {
+    private final StepMetrics metrics;
+    private final PrintWriter out;
+    private final boolean json;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "metrics-exporter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Start exporting, replacing any existing file.
+     * @param metrics metrics to export, must not be null
+     * @param file file to write, must not be null
+     * @param periodMillis time between lines, must be positive
+     * @throws IOException if the file cannot be created
+     * @throws IllegalArgumentException if the period is not positive
+     */
+    public MetricsExporter(StepMetrics metrics, Path file, long periodMillis) throws IOException {
+        if (metrics == null) throw new NullPointerException("metrics is null");
+        if (file == null) throw new NullPointerException("file is null");
+        if (periodMillis <= 0) throw new IllegalArgumentException("Period must be positive");
+        this.metrics = metrics;
+        this.json = file.getFileName().toString().endsWith(".json");
+        out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+        if (!json) writeHeader();
+        executor.scheduleAtFixedRate(this::export, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void writeHeader() {
+        StringBuilder line = new StringBuilder("seconds,steps,frames,steps_per_s,fps,bytes_per_step");
+        for (StepMetrics.Phase phase : StepMetrics.Phase.values()) {
+            String name = phase.name().toLowerCase();
+            line.append(',').append(name).append("_count,").append(name).append("_p50_us,")
+                    .append(name).append("_p99_us,").append(name).append("_max_us");
+        }
+        out.println(line);
+        out.flush();
+    }
+
+    private synchronized void export() {
+        StringBuilder line = new StringBuilder();
+        double seconds = metrics.getElapsedNanos() / 1e9;
+        if (json) {
+            line.append(String.format(Locale.ROOT, "{\"seconds\":%.3f,\"steps\":%d,\"frames\":%d,"
+                    + "\"steps_per_s\":%.1f,\"fps\":%.1f,\"bytes_per_step\":%.1f", seconds, metrics.getSteps(),
+                    metrics.getFrames(), metrics.getStepsPerSecond(), metrics.getFramesPerSecond(),
+                    metrics.getBytesPerStep()));
+        } else {
+            line.append(String.format(Locale.ROOT, "%.3f,%d,%d,%.1f,%.1f,%.1f", seconds, metrics.getSteps(),
+                    metrics.getFrames(), metrics.getStepsPerSecond(), metrics.getFramesPerSecond(),
+                    metrics.getBytesPerStep()));
+        }
+        for (StepMetrics.Phase phase : StepMetrics.Phase.values()) {
+            LatencyHistogram h = metrics.getHistogram(phase);
+            long count = h.getCount();
+            double p50 = h.getValueAtPercentile(50) / 1e3;
+            double p99 = h.getValueAtPercentile(99) / 1e3;
+            double max = h.getMax() / 1e3;
+            if (json) {
+                line.append(String.format(Locale.ROOT, ",\"%s\":{\"count\":%d,\"p50_us\":%.3f,\"p99_us\":%.3f,"
+                        + "\"max_us\":%.3f}", phase.name().toLowerCase(), count, p50, p99, max));
+            } else {
+                line.append(String.format(Locale.ROOT, ",%d,%.3f,%.3f,%.3f", count, p50, p99, max));
+            }
+        }
+        if (json) line.append('}');
+        out.println(line);
+        out.flush();
+    }
+
+    /**
+     * Write a last line and close the file.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        export();
+        out.close();
+    }
+}
@@ -0,0 +1,186 @@
+package gravsim;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs a simulation in real time: steps are taken so that simulated days advance
+ * at a target rate per second of wall-clock time, times a warp factor that can
+ * be changed (or paused) while running.
+ * <p>
+ * The schedule is anchored to the clock: the number of steps due at any moment is
+ * the time since the anchor times the step rate, so a late wake-up or a slow step
+ * is made up by the next ticks instead of stretching simulated time.  When steps are
+ * due, they are taken together in one tick (and published to the display once); when
+ * none is due, the thread parks until the next one is.  How late it wakes up
+ * compared to when it asked to is the overshoot, recorded as
+ * {@link StepMetrics.Phase#OVERSHOOT}.  If more steps are due than fit in
+ * {@value #MAX_TICK_MILLIS} ms at the measured cost of a step, the machine cannot
+ * keep up: the tick takes what fits, the rest is dropped and the schedule is
+ * re-anchored, so simulated time runs slower than asked rather than the display
+ * freezing while the backlog grows.
+ * <p>
+ * {@link #run()} is meant for the physics thread; the setters may be called from any
+ * thread (such as the Swing thread) and take effect at once, waking the pacer if it
+ * is parked.
+ */
+public class Pacer implements Runnable {
+    /**
+     * Longest time spent stepping in one tick, so that frames keep coming when behind.
+     */
+    public static final int MAX_TICK_MILLIS = 50;
+    private static final long PAUSED_NANOS = 20_000_000L; // how often a paused pacer looks again
+
+    private final IntConsumer advance;
+    private final double daysPerStep;
+    private final double daysPerSecond;
+    private final StepMetrics metrics;
+    private volatile double warp = 1;
+    private volatile boolean paused;
+    private volatile long changes; // incremented by every setter, so the loop re-anchors
+    private volatile Thread thread; // running the loop, woken by the setters
+    private volatile double stepNanos; // smoothed cost of one step
+    private volatile long ticks;
+    private volatile long dropped;
+
+    /**
+     * Create a pacer.
+     * @param advance takes the given number of steps and shows the result, must not be null
+     * @param daysPerStep simulated days per step, must be positive
+     * @param daysPerSecond simulated days per second at a warp of 1, must be positive
+     * @param metrics where to record the overshoot, or null
+     * @throws IllegalArgumentException if a rate is not positive
+     */
+    public Pacer(IntConsumer advance, double daysPerStep, double daysPerSecond, StepMetrics metrics) {
+        if (advance == null) throw new NullPointerException("advance is null");
+        if (!(daysPerStep > 0) || Double.isInfinite(daysPerStep)) throw new IllegalArgumentException("Days per step must be positive");
+        if (!(daysPerSecond > 0) || Double.isInfinite(daysPerSecond)) throw new IllegalArgumentException("Days per second must be positive");
+        this.advance = advance;
+        this.daysPerStep = daysPerStep;
+        this.daysPerSecond = daysPerSecond;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Pace a displayed simulation.
+     * @param animation simulation to step, must not be null
+     * @param daysPerSecond simulated days per second at a warp of 1, must be positive
+     * @return new pacer; the animation's metrics, if any, get the overshoot
+     * @throws IllegalArgumentException if the rate is not positive
+     */
+    public static Pacer of(ParticleSimulation animation, double daysPerSecond) {
+        return new Pacer(animation::move, Simulation.DAYS_PER_TIME_UNIT * animation.getSimulation().getTimeStep(),
+                daysPerSecond, animation.getMetrics());
+    }
+
+    /**
+     * @return simulated days per second at a warp of 1
+     */
+    public double getDaysPerSecond() {
+        return daysPerSecond;
+    }
+
+    public double getWarp() {
+        return warp;
+    }
+
+    /**
+     * Speed up or slow down simulated time.
+     * @param warp factor applied to the target rate, must be positive
+     * @throws IllegalArgumentException if warp is not positive
+     */
+    public void setWarp(double warp) {
+        if (!(warp > 0) || Double.isInfinite(warp)) throw new IllegalArgumentException("Warp must be positive");
+        this.warp = warp;
+        ++changes;
+        wake();
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+        ++changes;
+        wake();
+    }
+
+    /**
+     * Wake the loop if it is parked, so that a change takes effect now rather than
+     * when the next step was due, which at a low warp may be seconds away.
+     */
+    private void wake() {
+        Thread t = thread;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    /**
+     * @return smoothed wall-clock cost of one step in nanoseconds, 0 before the first
+     */
+    public double getStepNanos() {
+        return stepNanos;
+    }
+
+    /**
+     * @return number of ticks that took at least one step
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return number of due steps dropped because they did not fit in a tick
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Step the simulation on schedule until the thread is interrupted.
+     */
+    @Override //required
+    public void run() {
+        thread = Thread.currentThread();
+        long seen = changes - 1;
+        long anchorNanos = 0;
+        long anchorSteps = 0; // steps taken since the start when the schedule was anchored
+        long steps = 0;
+        double stepsPerNano = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            if (paused) {
+                LockSupport.parkNanos(this, PAUSED_NANOS);
+                continue;
+            }
+            long now = System.nanoTime();
+            if (changes != seen) { // start a new schedule from here
+                seen = changes;
+                anchorNanos = now;
+                anchorSteps = steps;
+                stepsPerNano = daysPerSecond * warp / daysPerStep / 1e9;
+            }
+            long due = anchorSteps + (long) ((now - anchorNanos) * stepsPerNano) - steps;
+            if (due <= 0) {
+                long wake = anchorNanos + (long) Math.ceil((steps + 1 - anchorSteps) / stepsPerNano);
+                LockSupport.parkNanos(this, wake - now);
+                long late = System.nanoTime() - wake;
+                if (metrics != null && late >= 0) metrics.recordNanos(StepMetrics.Phase.OVERSHOOT, late);
+                continue;
+            }
+            double cost = stepNanos;
+            long fit = cost > 0 ? Math.max(1, (long) (MAX_TICK_MILLIS * 1e6 / cost)) : 1;
+            int taken = (int) Math.min(Math.min(due, fit), Integer.MAX_VALUE);
+            advance.accept(taken);
+            long end = System.nanoTime();
+            double perStep = (double) (end - now) / taken;
+            stepNanos = cost > 0 ? 0.9 * cost + 0.1 * perStep : perStep;
+            steps += taken;
+            ++ticks;
+            if (taken < due) {
+                dropped += due - taken;
+                anchorNanos = end;
+                anchorSteps = steps;
+            }
+        }
+    }
+}
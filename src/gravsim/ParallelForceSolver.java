@@ -0,0 +1,122 @@
+package gravsim;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Run another solver's per-body loop across the cores of a {@link ForkJoinPool}.
+ * The range of target bodies, or the list of them, is split in halves until pieces
+ * are no larger than the chunk size, and each piece goes to the wrapped solver in
+ * one call.  Each body's acceleration is written only by the task that owns
+ * it, so no locking is needed, and because the wrapped solver sums the sources for
+ * one body in the same order whatever the range, the results are bit-identical to
+ * running the wrapped solver on one thread.
+ * {@link #prepare} (such as building a tree) still runs on the calling thread.
+ */
+public class ParallelForceSolver implements ForceSolver {
+    private final ForceSolver solver;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    /**
+     * Parallelize the given solver over all available processors.
+     * @param solver solver to run in parallel, must not be null
+     */
+    public ParallelForceSolver(ForceSolver solver) {
+        this(solver, Runtime.getRuntime().availableProcessors(), 64);
+    }
+
+    /**
+     * Parallelize the given solver.
+     * @param solver solver to run in parallel, must not be null
+     * @param parallelism number of worker threads, must be positive
+     * @param chunkSize largest number of bodies handled by one task, must be positive
+     * @throws IllegalArgumentException if parallelism or chunk size is not positive
+     */
+    public ParallelForceSolver(ForceSolver solver, int parallelism, int chunkSize) {
+        if (solver == null) throw new NullPointerException("solver is null");
+        if (parallelism <= 0) throw new IllegalArgumentException("Parallelism must be positive");
+        if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+        this.solver = solver;
+        this.pool = new ForkJoinPool(parallelism);
+        this.chunkSize = chunkSize;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @Override //implementation
+    public void prepare(BodyStore bodies) {
+        solver.prepare(bodies);
+    }
+
+    @Override //required
+    public void accelerate(BodyStore bodies, int from, int to) {
+        if (to - from <= chunkSize) solver.accelerate(bodies, from, to);
+        else pool.invoke(new Chunk(bodies, from, to));
+    }
+
+    @Override //implementation
+    public void accelerate(BodyStore bodies, int[] targets, int from, int to) {
+        if (to - from <= chunkSize) solver.accelerate(bodies, targets, from, to);
+        else pool.invoke(new ListChunk(bodies, targets, from, to));
+    }
+
+    /**
+     * Stop the worker threads.  The solver must not be used afterwards.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final BodyStore bodies;
+        private final int from, to;
+
+        Chunk(BodyStore bodies, int from, int to) {
+            this.bodies = bodies;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override //required
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                solver.accelerate(bodies, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Chunk(bodies, from, mid), new Chunk(bodies, mid, to));
+        }
+    }
+
+    private class ListChunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final BodyStore bodies;
+        private final int[] targets;
+        private final int from, to; // range of positions in targets
+
+        ListChunk(BodyStore bodies, int[] targets, int from, int to) {
+            this.bodies = bodies;
+            this.targets = targets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override //required
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                solver.accelerate(bodies, targets, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ListChunk(bodies, targets, from, mid), new ListChunk(bodies, targets, mid, to));
+        }
+    }
+}
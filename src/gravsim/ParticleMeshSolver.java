@@ -0,0 +1,449 @@
+package gravsim;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Approximate solver for many bodies spread fairly evenly, using a square grid:
+ * <ol>
+ * <li>the mass of each body is shared among the four grid points around it
+ * (cloud in cell);</li>
+ * <li>the potential of that mass is the convolution of the grid with the
+ * potential of a unit mass, -G / sqrt(r&sup2; + &epsilon;&sup2;), done by fast
+ * Fourier transforms in O(m&sup2; log m) for a grid of m by m points;</li>
+ * <li>the acceleration at each grid point is minus the central difference of the
+ * potential, and each body gets its four points' accelerations with the weights its
+ * mass was shared out with.</li>
+ * </ol>
+ * The cost is O(n) plus the transforms, whatever the distribution, but detail
+ * finer than about two grid cells is lost: the pull between two bodies is right
+ * at distances of a few cells and beyond, and weaker closer in.  Since mass is
+ * shared out and gathered back the same way, the pulls are equal and opposite
+ * and a body does not pull itself.
+ * <p>
+ * With {@link Boundary#ISOLATED} the grid is fitted around the bodies at every
+ * step, and the transforms are twice the size of the grid each way, so that the
+ * convolution is that of an isolated system (Hockney and Eastwood 1981).  The cell
+ * size is rounded up to a power of 2<sup>1/8</sup>, so the transform of the
+ * potential only needs recomputing when the system has grown or shrunk that much.
+ * With {@link Boundary#PERIODIC} the given square repeats without end, as for a
+ * piece of a larger uniform universe: bodies outside it act as their image inside,
+ * and the mean density is taken away, so only the departures from it pull.  The
+ * potential is then applied in Fourier space, where that of the softened kernel in
+ * a plane is 2&pi; e<sup>-k&epsilon;</sup> / k.
+ * <p>
+ * All the work happens in {@link #prepare}, except interpolating the accelerations
+ * in {@link #accelerate}.  With more than one thread, each thread shares out the
+ * mass of its own range of bodies onto a grid of its own, which are then summed in
+ * a fixed order, so the results do not depend on timing; the transforms and large
+ * interpolations are split among the threads as well.  All grids are allocated
+ * once and reused.
+ */
+public class ParticleMeshSolver implements ForceSolver {
+    /**
+     * What lies beyond the grid.
+     */
+    public enum Boundary { ISOLATED, PERIODIC }
+
+    private static final int MARGIN = 2; // grid points kept free around the bodies of an isolated system
+    private static final double LEVEL = Math.log(2) / 8; // isolated cell sizes are powers of 2^(1/8)
+    private static final double CELL_POTENTIAL = 4 * Math.log(1 + Math.sqrt(2)); // mean h/r over a cell of side h, from its centre
+    private static final int PARALLEL_BODIES = 4096; // fewest bodies worth interpolating on several threads
+
+    private final int grid;
+    private final int size; // of the transforms
+    private final Boundary boundary;
+    private final double softening;
+    private final int threads;
+    private final ForkJoinPool pool; // null when running on the calling thread
+    private final Fft fft;
+    private final double[] re, im; // size by size: the mass, its transform, then the potential
+    private final double[] green; // transform of the potential of a unit mass, divided by size^2
+    private final double[] forceX, forceY; // grid by grid: accelerations of the grid points
+    private final double[][] deposit; // per thread when there are several: grid by grid masses
+    private final double[][] scratchRe, scratchIm; // per thread: one column
+    private double originX, originY, cell;
+    private double greenCell = Double.NaN; // cell size green was computed for
+
+    /**
+     * Create a solver for an isolated system, fitting the grid around the bodies at every step.
+     * @param grid number of grid points along each side, a power of two no less than 8
+     * @param softening Plummer softening length, must not be negative
+     * @param threads number of threads to use, must be positive
+     * @throws IllegalArgumentException if a setting is out of range
+     */
+    public ParticleMeshSolver(int grid, double softening, int threads) {
+        this(grid, Boundary.ISOLATED, 0, 0, 1, softening, threads);
+    }
+
+    /**
+     * Create a solver for a periodic system.
+     * @param grid number of grid points along each side, a power of two no less than 8
+     * @param minX x coordinate of the left side of the repeating square
+     * @param minY y coordinate of the top side of the repeating square
+     * @param width width of the repeating square, must be positive
+     * @param softening Plummer softening length, must not be negative
+     * @param threads number of threads to use, must be positive
+     * @throws IllegalArgumentException if a setting is out of range
+     */
+    public ParticleMeshSolver(int grid, double minX, double minY, double width, double softening, int threads) {
+        this(grid, Boundary.PERIODIC, minX, minY, width, softening, threads);
+    }
+
+    private ParticleMeshSolver(int grid, Boundary boundary, double minX, double minY, double width,
+            double softening, int threads) {
+        if (grid < 8 || (grid & (grid - 1)) != 0) throw new IllegalArgumentException("Grid size must be a power of two, at least 8");
+        if (!(width > 0) || Double.isInfinite(width)) throw new IllegalArgumentException("Width must be positive");
+        if (!(softening >= 0)) throw new IllegalArgumentException("Softening cannot be negative");
+        if (threads <= 0) throw new IllegalArgumentException("Thread count must be positive");
+        this.grid = grid;
+        this.boundary = boundary;
+        this.size = boundary == Boundary.ISOLATED ? 2 * grid : grid;
+        this.softening = softening;
+        this.threads = threads;
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        this.originX = minX;
+        this.originY = minY;
+        this.cell = width / grid;
+        fft = new Fft(size);
+        re = new double[size * size];
+        im = new double[size * size];
+        green = new double[size * size];
+        forceX = new double[grid * grid];
+        forceY = new double[grid * grid];
+        deposit = threads > 1 ? new double[threads][grid * grid] : new double[0][];
+        scratchRe = new double[threads][size];
+        scratchIm = new double[threads][size];
+    }
+
+    public int getGrid() {
+        return grid;
+    }
+
+    public Boundary getBoundary() {
+        return boundary;
+    }
+
+    /**
+     * @return softening length
+     */
+    public double getSoftening() {
+        return softening;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return distance between grid points at the last step (fixed when periodic)
+     */
+    public double getCellSize() {
+        return cell;
+    }
+
+    /**
+     * Stop the worker threads, if any.  The solver must not be used afterwards.
+     */
+    public void shutdown() {
+        if (pool != null) pool.shutdown();
+    }
+
+    /**
+     * Share out the mass, solve for the potential and compute the accelerations
+     * of the grid points.
+     */
+    @Override //implementation
+    public void prepare(BodyStore bodies) {
+        boolean fresh = false;
+        if (boundary == Boundary.ISOLATED) {
+            fit(bodies);
+            if (cell != greenCell) {
+                isolatedGreen();
+                fresh = true;
+            }
+        } else if (greenCell != cell) {
+            periodicGreen();
+            fresh = true;
+        }
+        // rows beyond the grid stay zero once cleared; only the grid's own need clearing
+        Arrays.fill(re, 0, fresh ? re.length : grid * size, 0);
+        Arrays.fill(im, 0, fresh ? im.length : grid * size, 0);
+        int n = bodies.size();
+        if (pool == null) {
+            depositRange(bodies, 0, n, re, size);
+        } else {
+            inParts((part, parts) -> {
+                double[] mine = deposit[part];
+                Arrays.fill(mine, 0);
+                depositRange(bodies, start(part, parts, n), start(part + 1, parts, n), mine, grid);
+            });
+            inParts((part, parts) -> {
+                for (int j = start(part, parts, grid); j < start(part + 1, parts, grid); ++j) {
+                    for (int t = 0; t < threads; ++t) {
+                        double[] from = deposit[t];
+                        for (int i = 0; i < grid; ++i) {
+                            re[j * size + i] += from[j * grid + i];
+                        }
+                    }
+                }
+            });
+        }
+        convolve();
+        inParts((part, parts) -> gradient(start(part, parts, grid), start(part + 1, parts, grid)));
+    }
+
+    /**
+     * Interpolate the accelerations of the grid points to the bodies.
+     */
+    @Override //required
+    public void accelerate(BodyStore bodies, int from, int to) {
+        if (pool == null || to - from < PARALLEL_BODIES) {
+            interpolate(bodies, from, to);
+            return;
+        }
+        inParts((part, parts) -> interpolate(bodies, from + start(part, parts, to - from),
+                from + start(part + 1, parts, to - from)));
+    }
+
+    /**
+     * Choose the cell size and the origin so that all bodies lie at least
+     * {@value #MARGIN} grid points inside the grid.
+     */
+    private void fit(BodyStore bodies) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < bodies.size(); ++i) {
+            minX = Math.min(minX, bodies.x[i]);
+            maxX = Math.max(maxX, bodies.x[i]);
+            minY = Math.min(minY, bodies.y[i]);
+            maxY = Math.max(maxY, bodies.y[i]);
+        }
+        double extent = Math.max(maxX - minX, maxY - minY);
+        if (!(extent > 0)) { // no bodies, or all on one spot
+            extent = 1;
+            if (bodies.size() == 0) minX = maxX = minY = maxY = 0;
+        }
+        double needed = extent / (grid - 2 * MARGIN - 1);
+        cell = Math.exp(Math.ceil(Math.log(needed) / LEVEL) * LEVEL);
+        if (cell < needed) cell = Math.nextUp(needed); // in case exp(log) rounded down
+        originX = 0.5 * (minX + maxX) - 0.5 * (grid - 1) * cell;
+        originY = 0.5 * (minY + maxY) - 0.5 * (grid - 1) * cell;
+    }
+
+    /**
+     * Transform the potential of a unit mass, sampled at the distances between
+     * grid points; it is even, so its transform is real.
+     */
+    private void isolatedGreen() {
+        double h = cell;
+        double centre = Planet.G * Math.min(softening > 0 ? 1 / softening : Double.POSITIVE_INFINITY, CELL_POTENTIAL / h);
+        for (int q = 0; q < size; ++q) {
+            int dy = q <= grid ? q : q - size;
+            for (int p = 0; p < size; ++p) {
+                int dx = p <= grid ? p : p - size;
+                double r2 = (double) (dx*dx + dy*dy) * h * h + softening * softening;
+                re[q * size + p] = dx == 0 && dy == 0 ? -centre : -Planet.G / Math.sqrt(r2);
+            }
+        }
+        Arrays.fill(im, 0);
+        inParts((part, parts) -> {
+            for (int q = start(part, parts, size); q < start(part + 1, parts, size); ++q) {
+                fft.transform(re, im, q * size, false);
+            }
+        });
+        inParts((part, parts) -> {
+            double[] cr = scratchRe[part], ci = scratchIm[part];
+            for (int p = start(part, parts, size); p < start(part + 1, parts, size); ++p) {
+                for (int q = 0; q < size; ++q) {
+                    cr[q] = re[q * size + p];
+                    ci[q] = im[q * size + p];
+                }
+                fft.transform(cr, ci, 0, false);
+                for (int q = 0; q < size; ++q) {
+                    green[q * size + p] = cr[q] / ((double) size * size);
+                }
+            }
+        });
+        greenCell = h;
+    }
+
+    private void periodicGreen() {
+        double k0 = 2 * Math.PI / (grid * cell);
+        double scale = -Planet.G * 2 * Math.PI / (cell * cell) / ((double) size * size);
+        for (int q = 0; q < size; ++q) {
+            int ky = q <= size / 2 ? q : q - size;
+            for (int p = 0; p < size; ++p) {
+                int kx = p <= size / 2 ? p : p - size;
+                double k = k0 * Math.sqrt((double) (kx*kx + ky*ky));
+                green[q * size + p] = k == 0 ? 0 : scale * Math.exp(-k * softening) / k;
+            }
+        }
+        greenCell = cell;
+    }
+
+    /**
+     * Share out the mass of a range of bodies onto a grid with the given row length.
+     */
+    private void depositRange(BodyStore bodies, int from, int to, double[] target, int stride) {
+        double[] x = bodies.x, y = bodies.y, mass = bodies.mass;
+        double inverse = 1 / cell;
+        boolean periodic = boundary == Boundary.PERIODIC;
+        for (int b = from; b < to; ++b) {
+            double u = (x[b] - originX) * inverse, v = (y[b] - originY) * inverse;
+            int i = (int) Math.floor(u), j = (int) Math.floor(v);
+            double fx = u - i, fy = v - j;
+            int i1 = i + 1, j1 = j + 1;
+            if (periodic) {
+                i = Math.floorMod(i, grid);
+                j = Math.floorMod(j, grid);
+                i1 = i + 1 == grid ? 0 : i + 1;
+                j1 = j + 1 == grid ? 0 : j + 1;
+            }
+            double m = mass[b];
+            target[j * stride + i] += m * (1 - fx) * (1 - fy);
+            target[j * stride + i1] += m * fx * (1 - fy);
+            target[j1 * stride + i] += m * (1 - fx) * fy;
+            target[j1 * stride + i1] += m * fx * fy;
+        }
+    }
+
+    /**
+     * Turn the mass in re into the potential: transform the rows, then for each column
+     * transform it, multiply by the transformed kernel and transform it back, then
+     * transform the rows back.  Rows beyond the grid of an isolated system hold no mass,
+     * so their transforms are zero, and their potential is not needed.
+     */
+    private void convolve() {
+        inParts((part, parts) -> {
+            for (int q = start(part, parts, grid); q < start(part + 1, parts, grid); ++q) {
+                fft.transform(re, im, q * size, false);
+            }
+        });
+        inParts((part, parts) -> {
+            double[] cr = scratchRe[part], ci = scratchIm[part];
+            for (int p = start(part, parts, size); p < start(part + 1, parts, size); ++p) {
+                for (int q = 0; q < grid; ++q) {
+                    cr[q] = re[q * size + p];
+                    ci[q] = im[q * size + p];
+                }
+                Arrays.fill(cr, grid, size, 0);
+                Arrays.fill(ci, grid, size, 0);
+                fft.transform(cr, ci, 0, false);
+                for (int q = 0; q < size; ++q) {
+                    cr[q] *= green[q * size + p];
+                    ci[q] *= green[q * size + p];
+                }
+                fft.transform(cr, ci, 0, true);
+                for (int q = 0; q < grid; ++q) {
+                    re[q * size + p] = cr[q];
+                    im[q * size + p] = ci[q];
+                }
+            }
+        });
+        inParts((part, parts) -> {
+            for (int q = start(part, parts, grid); q < start(part + 1, parts, grid); ++q) {
+                fft.transform(re, im, q * size, true);
+            }
+        });
+    }
+
+    /**
+     * Compute the accelerations of the grid points in a range of rows from the potential.
+     * The outer points of an isolated grid are never used, so they are left at zero.
+     */
+    private void gradient(int fromRow, int toRow) {
+        double scale = -0.5 / cell;
+        boolean periodic = boundary == Boundary.PERIODIC;
+        int first = periodic ? 0 : 1, last = periodic ? grid : grid - 1;
+        for (int j = Math.max(fromRow, first); j < Math.min(toRow, last); ++j) {
+            int up = periodic && j == 0 ? grid - 1 : j - 1;
+            int down = periodic && j == grid - 1 ? 0 : j + 1;
+            for (int i = first; i < last; ++i) {
+                int left = periodic && i == 0 ? grid - 1 : i - 1;
+                int right = periodic && i == grid - 1 ? 0 : i + 1;
+                forceX[j * grid + i] = scale * (re[j * size + right] - re[j * size + left]);
+                forceY[j * grid + i] = scale * (re[down * size + i] - re[up * size + i]);
+            }
+        }
+    }
+
+    private void interpolate(BodyStore bodies, int from, int to) {
+        double[] x = bodies.x, y = bodies.y;
+        double inverse = 1 / cell;
+        boolean periodic = boundary == Boundary.PERIODIC;
+        for (int b = from; b < to; ++b) {
+            double u = (x[b] - originX) * inverse, v = (y[b] - originY) * inverse;
+            int i = (int) Math.floor(u), j = (int) Math.floor(v);
+            double fx = u - i, fy = v - j;
+            int i1 = i + 1, j1 = j + 1;
+            if (periodic) {
+                i = Math.floorMod(i, grid);
+                j = Math.floorMod(j, grid);
+                i1 = i + 1 == grid ? 0 : i + 1;
+                j1 = j + 1 == grid ? 0 : j + 1;
+            }
+            double w00 = (1 - fx) * (1 - fy), w10 = fx * (1 - fy), w01 = (1 - fx) * fy, w11 = fx * fy;
+            int k00 = j * grid + i, k10 = j * grid + i1, k01 = j1 * grid + i, k11 = j1 * grid + i1;
+            bodies.ax[b] = w00 * forceX[k00] + w10 * forceX[k10] + w01 * forceX[k01] + w11 * forceX[k11];
+            bodies.ay[b] = w00 * forceY[k00] + w10 * forceY[k10] + w01 * forceY[k01] + w11 * forceY[k11];
+        }
+    }
+
+    /**
+     * @return first index of a part when n items are split into the given number of parts
+     */
+    private static int start(int part, int parts, int n) {
+        return (int) ((long) n * part / parts);
+    }
+
+    /**
+     * Work that can be split into parts that run at the same time.
+     */
+    private interface Work {
+        void run(int part, int parts);
+    }
+
+    /**
+     * Run one part of the work per thread, or all of it on the calling thread if there is one.
+     */
+    private void inParts(Work work) {
+        if (pool == null) work.run(0, 1);
+        else pool.invoke(new Parts(work));
+    }
+
+    private class Parts extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Work work;
+
+        Parts(Work work) {
+            this.work = work;
+        }
+
+        @Override //required
+        protected void compute() {
+            Part[] tasks = new Part[threads];
+            for (int t = 0; t < threads; ++t) {
+                tasks[t] = new Part(work, t);
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    private class Part extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Work work;
+        private final int part;
+
+        Part(Work work, int part) {
+            this.work = work;
+            this.part = part;
+        }
+
+        @Override //required
+        protected void compute() {
+            work.run(part, threads);
+        }
+    }
+}
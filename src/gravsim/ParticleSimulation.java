@@ -0,0 +1,202 @@
+package gravsim;
+
+import java.awt.*;
+
+import javax.swing.JPanel;
+import javax.swing.Timer;
+
+/**
+ * A display of a {@link Simulation} of particles in two dimensional Cartesian space
+ * acting on each other using Newtonian gravitation.
+ * The physics thread calls {@link #move()}, which publishes a snapshot of the
+ * new positions without waiting for the renderer.  Painting happens on the Swing
+ * thread at a capped frame rate, from the latest snapshot only.
+ * Given a {@link StepMetrics}, it times each phase of both and can draw the
+ * figures over the simulation.
+ */
+public class ParticleSimulation extends JPanel {
+    /**
+     * Put this in to keep Eclipse happy ("KEH").
+     */
+    private static final long serialVersionUID = 1L;
+    private final Planet[] planets;
+    private final Simulation simulation;
+    private final SnapshotBuffer snapshots = new SnapshotBuffer();
+    private final Timer repaintTimer;
+    private long lastDrawn = -1; // sequence of the snapshot whose positions are in the trails
+    private final StepMetrics metrics; // null when not measuring
+    private boolean overlay;
+    private final BodyRenderer renderer = new BodyRenderer();
+    /**
+     * Create a particle simulation with three particles
+//     * @param p1 first particle, must not be null
+//     * @param p2 second particle, must not be null
+//     * @param p3 third particle, must not be null
+     */
+    public ParticleSimulation(Planet[] particles) {
+        this(particles, new DirectForceSolver());
+    }
+
+    /**
+     * Create a particle simulation that computes gravity with the given solver.
+     * @param particles bodies to simulate, must not be null
+     * @param solver force solver, must not be null
+     */
+    public ParticleSimulation(Planet[] particles, ForceSolver solver) {
+        this(particles, solver, null);
+    }
+
+    /**
+     * Create a particle simulation that records where its time goes.
+     * @param particles bodies to simulate, must not be null
+     * @param solver force solver, must not be null
+     * @param metrics metrics to record into, or null to measure nothing
+     */
+    public ParticleSimulation(Planet[] particles, ForceSolver solver, StepMetrics metrics) {
+        this.planets = particles;
+        this.metrics = metrics;
+        BodyStore bodies = new BodyStore(particles.length);
+        for (Planet p : particles) {
+            p.bind(bodies);
+        }
+        this.simulation = new Simulation(bodies, metrics == null ? solver : metrics.time(solver));
+        repaintTimer = prepareDisplay();
+    }
+
+    /**
+     * Display a simulation of bodies that have no {@link Planet} views, such as a
+     * large scene, drawn as points or as a density map.
+     * @param simulation simulation to display, must not be null
+     * @param metrics metrics to record into, or null to measure nothing; to time the
+     *     forces, the simulation's solver should come from {@link StepMetrics#time}
+     */
+    public ParticleSimulation(Simulation simulation, StepMetrics metrics) {
+        if (simulation == null) throw new NullPointerException("simulation is null");
+        this.planets = new Planet[0];
+        this.metrics = metrics;
+        this.simulation = simulation;
+        repaintTimer = prepareDisplay();
+    }
+
+    /**
+     * Publish the initial state and set up panning and zooming.
+     * @return timer that repaints when there is something new to show
+     */
+    private Timer prepareDisplay() {
+        renderer.attach(this);
+        snapshots.publish(simulation.getBodies(), simulation.getDays(), simulation.getSteps());
+        return new Timer(1000 / 60, e -> {
+            if (snapshots.hasNewer()) repaint();
+        });
+    }
+
+    /**
+     * @return the mapping from simulation coordinates to the screen, changed by
+     *     dragging (pan), the mouse wheel (zoom) and double clicks (reset)
+     */
+    public Viewport getViewport() {
+        return renderer.getViewport();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        repaintTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        repaintTimer.stop();
+        super.removeNotify();
+    }
+
+    /**
+     * Set the most frames per second that will be painted.
+     * The simulation itself runs at whatever rate {@link #move()} is called.
+     * @param fps frame rate cap, must be positive
+     * @throws IllegalArgumentException if fps is not positive
+     */
+    public void setFrameRate(int fps) {
+        if (fps <= 0) throw new IllegalArgumentException("Frame rate must be positive");
+        repaintTimer.setDelay(Math.max(1, 1000 / fps));
+    }
+
+    /**
+     * Show or hide the step and frame metrics over the simulation.
+     * Has no effect if the simulation was created without metrics.
+     * @param show whether to draw the overlay
+     */
+    public void setMetricsOverlay(boolean show) {
+        overlay = show;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        long start = metrics == null ? 0 : metrics.start();
+        super.paintComponent(g);
+        Snapshot snapshot = snapshots.acquire();
+        boolean advanced = snapshot.sequence != lastDrawn;
+        lastDrawn = snapshot.sequence;
+        renderer.paint(g, snapshot.x, snapshot.y, snapshot.id, snapshot.size(), planets, advanced, getWidth(), getHeight(), metrics);
+        g.setColor(Color.white);
+        g.setFont(Font.getFont("Arial"));
+        g.drawString("Days:" + Math.round(snapshot.getDays()), 8, 13);
+        if (metrics == null) return;
+        if (overlay) {
+            int y = 28;
+            for (String line : metrics.summary()) {
+                g.drawString(line, 8, y);
+                y += 15;
+            }
+        }
+        metrics.record(StepMetrics.Phase.PAINT, start);
+    }
+
+    /**
+     * @return metrics being recorded, or null if none
+     */
+    public StepMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the physics being displayed
+     */
+    public Simulation getSimulation() {
+        return simulation;
+    }
+
+    /**
+     * Take one step of the simulation and hand the result to the renderer.
+     * @see Simulation#step()
+     */
+    public void move() {
+        if (metrics == null) {
+            simulation.step();
+            snapshots.publish(simulation.getBodies(), simulation.getDays(), simulation.getSteps());
+            return;
+        }
+        metrics.stepStarted();
+        simulation.step();
+        metrics.stepFinished();
+        long start = metrics.start();
+        snapshots.publish(simulation.getBodies(), simulation.getDays(), simulation.getSteps());
+        metrics.record(StepMetrics.Phase.PUBLISH, start);
+    }
+
+    /**
+     * Take several steps and hand only the last state to the renderer, which
+     * could not have shown the ones in between anyway.
+     * @param steps number of steps to take
+     * @see #move()
+     */
+    public void move(int steps) {
+        for (int k = 1; k < steps; ++k) {
+            if (metrics != null) metrics.stepStarted();
+            simulation.step();
+            if (metrics != null) metrics.stepFinished();
+        }
+        if (steps > 0) move();
+    }
+}
@@ -1,4 +1,6 @@
 //Haitam Chouiekh
+package gravsim;
+
 import java.awt.Color;
 import java.awt.Graphics;
 import java.util.ArrayList;
@@ -16,7 +18,9 @@ public class Planet {
     private final double mass;
     private final Color color;
     int radius;
-    LinkedCollection<Point> trail;
+    TrailBuffer trail;
+    private BodyStore store; // when bound, position and velocity live in the store
+    private int id; // id of the body in the store, which survives other bodies being removed
     /**
      * Create a new particle with the given position, velocity, mass and color
      * @param p position (location) of particle initially, must not be null
@@ -27,7 +31,7 @@ public class Planet {
      * @throws IllegalArgumentException is mass is negative
      */
     public Planet(String name, Point p, Vector v, double m, Color c, int radius) {
-        trail = new LinkedCollection<>();
+        trail = new TrailBuffer();
         if(name == null) throw new NullPointerException("name is null");
         this.name = name;
         if (p == null) throw new NullPointerException("Position cannot be null");
@@ -45,23 +49,57 @@ public class Planet {
     /**
      * Return the position of this particle
      * @return position, never null
+     * @throws IllegalStateException if the particle was removed from its store
      */
     public Point getPosition() {
+        if (store != null) return store.position(index());
         return this.position;
     }
 
     /**
      * Return the velocity of this particular
      * @return velocity, never null
+     * @throws IllegalStateException if the particle was removed from its store
      */
     public Vector getVelocity() {
+        if (store != null) return store.velocity(index());
         return this.velocity;
     }
 
+    /**
+     * @return whether this particle was bound to a store and has since been removed
+     *     from it, for example by merging with another in a collision
+     */
+    public boolean isRemoved() {
+        return store != null && store.indexOf(id) < 0;
+    }
+
+    private int index() {
+        int index = store.indexOf(id);
+        if (index < 0) throw new IllegalStateException(name + " has been removed");
+        return index;
+    }
+
     public String getName() {
         return name;
     }
 
+    /**
+     * Copy the state of this particle into the store and make this particle
+     * a view on the new entry from now on.  The radius it is drawn with becomes
+     * its collision radius.
+     * @param bodies store to add this particle to, must not be null
+     * @return index of this particle in the store
+     * @throws IllegalStateException if this particle is already bound
+     */
+    int bind(BodyStore bodies) {
+        if (store != null) throw new IllegalStateException("Planet is already bound to a store");
+        int index = bodies.add(position.x(), position.y(), velocity.dx(), velocity.dy(), mass, radius);
+        id = bodies.id(index);
+        store = bodies;
+        return index;
+    }
+
     /**
      * Estimate the location of the particle after one unit of time by
      * letting it move at a constant velocity for that time from its starting
@@ -69,6 +107,12 @@ public class Planet {
      * to the particles current position.
      */
     public void move() {
+        if (store != null) {
+            int index = index();
+            store.x[index] += store.vx[index];
+            store.y[index] += store.vy[index];
+            return;
+        }
         position = velocity.move(position);
     }
 
@@ -78,17 +122,28 @@ public class Planet {
      * @param g graphics context (must not be null)
      */
     public void draw(Graphics g) {
+        draw(g, getPosition());
+    }
+
+    /**
+     * Draw the particle as a small circle at the given position rather than its current one,
+     * for example one taken from a {@link Snapshot}.
+     * @param g graphics context (must not be null)
+     * @param at position to draw at (must not be null)
+     */
+    void draw(Graphics g, Point at) {
         // TODO: Read the documentation of fillOval carefully:
         // fillOval's first two parameters are the x and y coordinates of the
         // UPPER LEFT corner of the bounding box of the oval, NOT the center!
         g.setColor(color);
-        int Xcoordinate =  (int) position.asAWT().getX() -radius;
-        int Ycoordinate = (int) position.asAWT().getY() -radius;
+        java.awt.Point center = at.asAWT();
+        int Xcoordinate =  (int) center.getX() -radius;
+        int Ycoordinate = (int) center.getY() -radius;
         g.fillOval(Xcoordinate, Ycoordinate, 2*radius, 2*radius);
         g.drawString(this.name,Xcoordinate, Ycoordinate );
     }
 
-    private static final double G = 9.8;
+    static final double G = 9.8;
 
     /**
      * Compute the Newtonian gravitational force that this particle exerts on the other.
@@ -99,11 +154,26 @@ public class Planet {
      * @return force of gravitation toward this particle
      */
     public Vector gravForceOn(Planet other) {
-        Vector v21 = new Vector(other.position,this.position);
+        Vector v21 = new Vector(other.getPosition(),this.getPosition());
         Vector u21 = v21.normalize();
         return u21.scale((G*this.mass*other.mass)/(v21.magnitude()*v21.magnitude()));
     }
 
+    /**
+     * Compute the gravitational force that this particle exerts on the other with
+     * Plummer softening: the squared distance is increased by the square of the
+     * softening length, so the force stays finite as the particles meet.
+     * @param other particle to operate gravitation on, must not be null
+     * @param softening softening length; 0 gives {@link #gravForceOn(Planet)}
+     * @return force of gravitation toward this particle
+     */
+    public Vector gravForceOn(Planet other, double softening) {
+        Vector v21 = new Vector(other.getPosition(),this.getPosition());
+        double r = v21.magnitude();
+        double r2 = r*r + softening*softening;
+        return v21.scale((G*this.mass*other.mass)/(r2*Math.sqrt(r2)));
+    }
+
     /**
      * Apply a force as an acceleration on the velocity (after dividing by the mass).
      * This velocity is affected as though one applied the constant acceleration for one time unit.
@@ -112,6 +182,12 @@ public class Planet {
     public void applyForce(Vector force) {
         //F = am
         Vector a = force.scale(1/mass);
+        if (store != null) {
+            int index = index();
+            store.vx[index] += a.dx();
+            store.vy[index] += a.dy();
+            return;
+        }
         velocity = velocity.add(a);
     }
     public int getRadius() {
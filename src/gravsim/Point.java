@@ -1,4 +1,5 @@
 //Haitam Chouiekh
+package gravsim;
 
 import java.awt.*;
 import java.util.Objects;
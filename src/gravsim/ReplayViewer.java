@@ -0,0 +1,200 @@
+package gravsim;
+
+import java.awt.*;
+import java.io.IOException;
+
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.Timer;
+
+/**
+ * Play back a trajectory file recorded by {@link TrajectoryRecorder} without
+ * running the physics again.  Frames are drawn by a {@link BodyRenderer} the same
+ * way as in {@link ParticleSimulation}, and can be panned and zoomed the same way.
+ * <p>
+ * The playback clock advances in days at a multiple of the live simulation's speed.
+ * Each repaint seeks the reader to the clock, which decodes forward within the
+ * current chunk or jumps through the chunk index, so memory use stays that of a
+ * single frame and a jump costs at most one chunk decode.
+ * All methods must be called on the Swing thread.
+ */
+public class ReplayViewer extends JPanel {
+    private static final long serialVersionUID = 1L;
+    /**
+     * Days per second of playback at 1x: the speed of the live animation,
+     * which takes a step of one time unit every 10 ms.
+     */
+    public static final double DAYS_PER_SECOND = 100 * Simulation.DAYS_PER_TIME_UNIT;
+    private static final double[] SPEEDS = {0.25, 0.5, 1, 2, 4, 8, 16, 64};
+    private static final int SLIDER_STEPS = 1000;
+
+    private final TrajectoryReader reader;
+    private final Planet[] planets;
+    private final Timer timer;
+    private double days;
+    private double speed = 1;
+    private boolean playing;
+    private long lastTick;
+    private long lastDrawn = -1; // step of the frame whose positions are in the trails
+    private String error;
+    private Runnable onChange = () -> {}; // updates the controls, if any
+    private final BodyRenderer renderer = new BodyRenderer();
+
+    /**
+     * Create a viewer positioned at the start of the recording.
+     * @param reader open trajectory, must not be null; the viewer reads from it but does not close it
+     * @param planets appearance of the bodies of the recording with the lowest ids (color,
+     *     name, radius), must not be null; their own positions are not used
+     */
+    public ReplayViewer(TrajectoryReader reader, Planet[] planets) {
+        if (reader == null) throw new NullPointerException("reader is null");
+        if (planets == null) throw new NullPointerException("planets is null");
+        this.reader = reader;
+        this.planets = planets;
+        timer = new Timer(1000 / 60, e -> tick());
+        renderer.attach(this);
+        seek(reader.getFirstDays());
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        timer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        timer.stop();
+        super.removeNotify();
+    }
+
+    public void play() {
+        if (days >= reader.getLastDays()) seek(reader.getFirstDays());
+        playing = true;
+        lastTick = System.nanoTime();
+        onChange.run();
+    }
+
+    public void pause() {
+        playing = false;
+        onChange.run();
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * Set the playback speed as a multiple of {@link #DAYS_PER_SECOND}.
+     * @param speed multiplier, must be positive
+     * @throws IllegalArgumentException if speed is not positive
+     */
+    public void setSpeed(double speed) {
+        if (speed <= 0) throw new IllegalArgumentException("Speed must be positive");
+        this.speed = speed;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return time shown, in days
+     */
+    public double getDays() {
+        return days;
+    }
+
+    /**
+     * Jump to the last frame at or before the given time.  Trails are cleared
+     * unless the jump is a short step forward.
+     * @param target time in days, clamped to the recording
+     */
+    public void seek(double target) {
+        days = Math.max(reader.getFirstDays(), Math.min(target, reader.getLastDays()));
+        long before = reader.getFrame().getSteps();
+        try {
+            reader.seek(days);
+        } catch (IOException e) {
+            error = e.getMessage();
+            playing = false;
+        }
+        long after = reader.getFrame().getSteps();
+        if (after < before || after - before > 100 * reader.getSampleInterval()) {
+            renderer.clearTrails(planets);
+            lastDrawn = -1;
+        }
+        repaint();
+        onChange.run();
+    }
+
+    private void tick() {
+        if (!playing) return;
+        long now = System.nanoTime();
+        double elapsed = (now - lastTick) / 1e9;
+        lastTick = now;
+        seek(days + elapsed * DAYS_PER_SECOND * speed);
+        if (days >= reader.getLastDays()) pause();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        TrajectoryFrame frame = reader.getFrame();
+        boolean advanced = frame.getSteps() != lastDrawn;
+        lastDrawn = frame.getSteps();
+        renderer.paint(g, frame.x, frame.y, frame.id, frame.size(), planets, advanced, getWidth(), getHeight(), null);
+        g.setColor(Color.white);
+        g.setFont(Font.getFont("Arial"));
+        g.drawString("Days:" + Math.round(frame.getDays()), 8, 13);
+        if (error != null) g.drawString("Replay stopped: " + error, 8, 28);
+    }
+
+    /**
+     * Create the play/pause button, time slider and speed selector for this viewer.
+     * They follow the playback; only one set of controls can be created.
+     * @return panel of controls to place next to the viewer
+     */
+    public JPanel createControls() {
+        JButton play = new JButton("Play");
+        play.addActionListener(e -> {
+            if (playing) pause();
+            else play();
+        });
+        JSlider slider = new JSlider(0, SLIDER_STEPS, 0);
+        boolean[] updating = {false};
+        slider.addChangeListener(e -> {
+            if (updating[0]) return;
+            double span = reader.getLastDays() - reader.getFirstDays();
+            seek(reader.getFirstDays() + span * slider.getValue() / SLIDER_STEPS);
+        });
+        String[] names = new String[SPEEDS.length];
+        for (int i = 0; i < SPEEDS.length; ++i) {
+            names[i] = SPEEDS[i] + "x";
+        }
+        JComboBox<String> speeds = new JComboBox<>(names);
+        speeds.setSelectedIndex(2);
+        speeds.addActionListener(e -> setSpeed(SPEEDS[speeds.getSelectedIndex()]));
+        JLabel label = new JLabel();
+        onChange = () -> {
+            play.setText(playing ? "Pause" : "Play");
+            double span = reader.getLastDays() - reader.getFirstDays();
+            updating[0] = true;
+            if (span > 0) slider.setValue((int) Math.round((days - reader.getFirstDays()) / span * SLIDER_STEPS));
+            updating[0] = false;
+            label.setText(String.format("%.0f / %.0f days", days, reader.getLastDays()));
+        };
+        onChange.run();
+        JPanel controls = new JPanel(new BorderLayout());
+        JPanel buttons = new JPanel();
+        buttons.add(play);
+        buttons.add(speeds);
+        controls.add(buttons, BorderLayout.WEST);
+        controls.add(slider, BorderLayout.CENTER);
+        controls.add(label, BorderLayout.EAST);
+        return controls;
+    }
+}
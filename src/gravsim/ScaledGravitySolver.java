@@ -0,0 +1,67 @@
+package gravsim;
+
+/**
+ * Run another solver with a different gravitational constant than {@link Planet#G}.
+ * Every solver computes accelerations proportional to G, so this one lets the wrapped
+ * solver compute them with {@link Planet#G} and multiplies what it wrote by
+ * G / {@link Planet#G}.  The result differs from a solver built with the other
+ * constant only by the rounding of that one product.
+ */
+public class ScaledGravitySolver implements ForceSolver {
+    private final ForceSolver solver;
+    private final double gravity;
+    private final double factor;
+
+    /**
+     * Wrap a solver.
+     * @param solver solver to run, must not be null
+     * @param gravity gravitational constant to use, must be positive
+     * @throws IllegalArgumentException if gravity is not positive
+     */
+    public ScaledGravitySolver(ForceSolver solver, double gravity) {
+        if (solver == null) throw new NullPointerException("solver is null");
+        if (!(gravity > 0) || Double.isInfinite(gravity)) throw new IllegalArgumentException("Gravity must be positive");
+        this.solver = solver;
+        this.gravity = gravity;
+        this.factor = gravity / Planet.G;
+    }
+
+    /**
+     * @return the solver being run
+     */
+    public ForceSolver getSolver() {
+        return solver;
+    }
+
+    /**
+     * @return gravitational constant used
+     */
+    public double getGravity() {
+        return gravity;
+    }
+
+    @Override //implementation
+    public void prepare(BodyStore bodies) {
+        solver.prepare(bodies);
+    }
+
+    @Override //required
+    public void accelerate(BodyStore bodies, int from, int to) {
+        solver.accelerate(bodies, from, to);
+        if (factor == 1) return;
+        for (int i = from; i < to; ++i) {
+            bodies.ax[i] *= factor;
+            bodies.ay[i] *= factor;
+        }
+    }
+
+    @Override //implementation
+    public void accelerate(BodyStore bodies, int[] targets, int from, int to) {
+        solver.accelerate(bodies, targets, from, to);
+        if (factor == 1) return;
+        for (int k = from; k < to; ++k) {
+            bodies.ax[targets[k]] *= factor;
+            bodies.ay[targets[k]] *= factor;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package gravsim;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read a scene, a text description of the initial bodies, straight into a {@link BodyStore}.
+ * <p>
+ * Each line is a body, a generator or blank; {@code #} starts a comment.
+ * <pre>
+ * x y vx vy mass [r]                    one body, with collision radius r (default 0)
+ * solar                                 the sun and inner planets ({@link SolarSystem})
+ * plummer n=N [seed=S] [x= y= vx= vy=] [mass=M] [radius=A] [size=R]
+ * disk n=N [seed=S] [x= y= vx= vy=] [mass=M] [scale=H] [central=MC] [size=R]
+ * galaxies n=N [seed=S] [x= y=] [mass=M] [scale=H] [central=MC] [separation=D] [impact=B] [speed=V] [size=R]
+ * </pre>
+ * Generators are those of {@link InitialConditions}; the centre defaults to (500, 500),
+ * the seed to 1, and the rest to a size that fills the default window.  {@code size}
+ * is the collision radius of every generated body, 0 (never colliding) by default.
+ * <p>
+ * The parser reads through a fixed buffer and decodes numbers in place, so a file of
+ * millions of bodies is loaded without creating an object (or a string) per body.
+ */
+public final class SceneLoader {
+    private static final double[] POWERS = new double[23];
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; ++i) {
+            POWERS[i] = POWERS[i - 1] * 10;
+        }
+    }
+
+    private final Reader in;
+    private final char[] buffer = new char[1 << 16];
+    private int position;
+    private int limit;
+    private char[] line = new char[256];
+    private int length;
+    private int lineNumber;
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int tokens;
+
+    private SceneLoader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Read a scene file.
+     * @param file file to read, must not be null
+     * @return new store of the bodies described
+     * @throws IOException if the file cannot be read or is not a valid scene
+     */
+    public static BodyStore load(Path file) throws IOException {
+        BodyStore bodies = new BodyStore(16);
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            read(in, bodies);
+        } catch (IOException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+        return bodies;
+    }
+
+    /**
+     * Read a scene, adding its bodies to a store.
+     * @param in scene text, must not be null; it is read to the end but not closed
+     * @param bodies store to add to, must not be null
+     * @throws IOException if the text cannot be read or is not a valid scene
+     */
+    public static void read(Reader in, BodyStore bodies) throws IOException {
+        if (in == null) throw new NullPointerException("in is null");
+        if (bodies == null) throw new NullPointerException("bodies is null");
+        SceneLoader loader = new SceneLoader(in);
+        while (loader.readLine()) {
+            try {
+                loader.parseLine(bodies);
+            } catch (IllegalArgumentException e) { // bad value, or a generator refusing its arguments
+                throw new IOException("line " + loader.lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private boolean readLine() throws IOException {
+        length = 0;
+        boolean any = false;
+        while (true) {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    if (any) ++lineNumber;
+                    return any;
+                }
+            }
+            any = true;
+            char c = buffer[position++];
+            if (c == '\n') {
+                ++lineNumber;
+                return true;
+            }
+            if (length == line.length) line = Arrays.copyOf(line, length * 2);
+            line[length++] = c;
+        }
+    }
+
+    private void tokenize() {
+        tokens = 0;
+        int i = 0;
+        while (true) {
+            while (i < length && Character.isWhitespace(line[i])) ++i;
+            if (i == length || line[i] == '#') return;
+            if (tokens == starts.length) {
+                starts = Arrays.copyOf(starts, tokens * 2);
+                ends = Arrays.copyOf(ends, tokens * 2);
+            }
+            starts[tokens] = i;
+            while (i < length && !Character.isWhitespace(line[i]) && line[i] != '#') ++i;
+            ends[tokens++] = i;
+        }
+    }
+
+    private void parseLine(BodyStore bodies) {
+        tokenize();
+        if (tokens == 0) return;
+        char first = line[starts[0]];
+        if (first == '-' || first == '+' || first == '.' || (first >= '0' && first <= '9')) {
+            if (tokens != 5 && tokens != 6) {
+                throw new IllegalArgumentException("a body needs x y vx vy mass [radius], found " + tokens + " values");
+            }
+            bodies.add(number(0), number(1), number(2), number(3), number(4), tokens == 6 ? number(5) : 0);
+            return;
+        }
+        String name = new String(line, starts[0], ends[0] - starts[0]);
+        Map<String, Double> args = new HashMap<>();
+        for (int t = 1; t < tokens; ++t) {
+            int equals = -1;
+            for (int i = starts[t]; i < ends[t]; ++i) {
+                if (line[i] == '=') {
+                    equals = i;
+                    break;
+                }
+            }
+            if (equals < 0) throw new IllegalArgumentException("expected key=value, found " + token(t));
+            String key = new String(line, starts[t], equals - starts[t]);
+            args.put(key, parseNumber(line, equals + 1, ends[t]));
+        }
+        int before = bodies.size();
+        switch (name) {
+            case "solar":
+                check(name, args);
+                BodyStore solar = SolarSystem.create();
+                for (int i = 0; i < solar.size(); ++i) {
+                    bodies.add(solar.x[i], solar.y[i], solar.vx[i], solar.vy[i], solar.mass[i], solar.radius[i]);
+                }
+                break;
+            case "plummer":
+                check(name, args, "n", "seed", "x", "y", "vx", "vy", "mass", "radius", "size");
+                InitialConditions.plummer(bodies, count(args), seed(args), get(args, "x", 500), get(args, "y", 500),
+                        get(args, "vx", 0), get(args, "vy", 0), get(args, "mass", 20), get(args, "radius", 100));
+                break;
+            case "disk":
+                check(name, args, "n", "seed", "x", "y", "vx", "vy", "mass", "scale", "central", "size");
+                InitialConditions.exponentialDisk(bodies, count(args), seed(args), get(args, "x", 500),
+                        get(args, "y", 500), get(args, "vx", 0), get(args, "vy", 0), get(args, "mass", 20),
+                        get(args, "scale", 60), get(args, "central", 0));
+                break;
+            case "galaxies":
+                check(name, args, "n", "seed", "x", "y", "mass", "scale", "central", "separation", "impact", "speed", "size");
+                InitialConditions.collidingGalaxies(bodies, count(args), seed(args), get(args, "x", 500),
+                        get(args, "y", 500), get(args, "mass", 10), get(args, "scale", 30), get(args, "central", 10),
+                        get(args, "separation", 400), get(args, "impact", 100), get(args, "speed", 0));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown generator " + name);
+        }
+        double size = get(args, "size", 0);
+        if (!(size >= 0)) throw new IllegalArgumentException("size cannot be negative");
+        if (size > 0) Arrays.fill(bodies.radius, before, bodies.size(), size);
+    }
+
+    private static void check(String name, Map<String, Double> args, String... allowed) {
+        for (String key : args.keySet()) {
+            if (!Arrays.asList(allowed).contains(key)) throw new IllegalArgumentException(name + " has no parameter " + key);
+        }
+    }
+
+    private static double get(Map<String, Double> args, String key, double otherwise) {
+        Double value = args.get(key);
+        return value != null ? value : otherwise;
+    }
+
+    private static int count(Map<String, Double> args) {
+        Double n = args.get("n");
+        if (n == null) throw new IllegalArgumentException("n is missing");
+        if (n != Math.rint(n) || n > Integer.MAX_VALUE) throw new IllegalArgumentException("n must be a whole number");
+        return n.intValue();
+    }
+
+    private static long seed(Map<String, Double> args) {
+        return (long) get(args, "seed", 1);
+    }
+
+    private String token(int t) {
+        return new String(line, starts[t], ends[t] - starts[t]);
+    }
+
+    private double number(int t) {
+        return parseNumber(line, starts[t], ends[t]);
+    }
+
+    /**
+     * Parse a decimal number from chars[from, to).  Numbers of up to 15 significant
+     * digits with a power of ten within &plusmn;22 are converted directly, which is
+     * exact (one correctly rounded operation on two exactly representable values);
+     * anything else goes through {@link Double#parseDouble}.
+     * @throws NumberFormatException if the text is not a number
+     */
+    static double parseNumber(char[] chars, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (chars[i] == '-' || chars[i] == '+')) negative = chars[i++] == '-';
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+        for (; i < to && chars[i] >= '0' && chars[i] <= '9'; ++i) {
+            any = true;
+            int d = chars[i] - '0';
+            if (mantissa == 0 && d == 0) continue;
+            if (++digits > 15) return slowParse(chars, from, to);
+            mantissa = mantissa * 10 + d;
+        }
+        if (i < to && chars[i] == '.') {
+            for (++i; i < to && chars[i] >= '0' && chars[i] <= '9'; ++i) {
+                any = true;
+                int d = chars[i] - '0';
+                --exponent;
+                if (mantissa == 0 && d == 0) continue;
+                if (++digits > 15) return slowParse(chars, from, to);
+                mantissa = mantissa * 10 + d;
+            }
+        }
+        if (any && i < to && (chars[i] == 'e' || chars[i] == 'E')) {
+            ++i;
+            boolean negativeExponent = false;
+            if (i < to && (chars[i] == '-' || chars[i] == '+')) negativeExponent = chars[i++] == '-';
+            int e = 0;
+            int start = i;
+            for (; i < to && chars[i] >= '0' && chars[i] <= '9' && e < 1000; ++i) {
+                e = e * 10 + chars[i] - '0';
+            }
+            if (i == start) return slowParse(chars, from, to);
+            exponent += negativeExponent ? -e : e;
+        }
+        if (!any || i != to || exponent < -22 || exponent > 22) return slowParse(chars, from, to);
+        double value = exponent >= 0 ? mantissa * POWERS[exponent] : mantissa / POWERS[-exponent];
+        return negative ? -value : value;
+    }
+
+    private static double slowParse(char[] chars, int from, int to) {
+        String text = new String(chars, from, to - from);
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("not a number: " + text);
+        }
+    }
+}
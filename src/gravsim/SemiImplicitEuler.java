@@ -0,0 +1,24 @@
+package gravsim;
+
+/**
+ * First-order symplectic Euler: kick every velocity by the acceleration, then
+ * drift every position by the new velocity.  With a step of 1 this is exactly
+ * what {@link Planet#applyForce} followed by {@link Planet#move} does.
+ * One force evaluation per step.
+ */
+public class SemiImplicitEuler implements Integrator {
+    @Override //required
+    public void step(BodyStore bodies, ForceSolver solver, double dt) {
+        double[] x = bodies.x, y = bodies.y, vx = bodies.vx, vy = bodies.vy;
+        int n = bodies.size();
+        solver.computeAccelerations(bodies);
+        for (int i = 0; i < n; ++i) {
+            vx[i] += bodies.ax[i] * dt;
+            vy[i] += bodies.ay[i] * dt;
+        }
+        for (int i = 0; i < n; ++i) {
+            x[i] += vx[i] * dt;
+            y[i] += vy[i] * dt;
+        }
+    }
+}
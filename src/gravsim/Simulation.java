@@ -0,0 +1,130 @@
+package gravsim;
+
+/**
+ * The physics of a gravitational simulation, independent of any display.
+ * This class (and everything it uses) never loads AWT or Swing, so it can run
+ * on machines without a screen; {@link ParticleSimulation} draws it on one.
+ */
+public class Simulation {
+    /**
+     * Simulated days that pass in one unit of simulation time.
+     */
+    public static final double DAYS_PER_TIME_UNIT = 0.146;
+
+    private final BodyStore bodies;
+    private final ForceSolver solver;
+    private final Integrator integrator;
+    private final double dt;
+    private CollisionHandler collisions; // null if bodies pass through each other
+    private double days;
+    private long steps;
+
+    /**
+     * Create a simulation of the given bodies using direct summation.
+     * @param bodies bodies to simulate, must not be null
+     */
+    public Simulation(BodyStore bodies) {
+        this(bodies, new DirectForceSolver());
+    }
+
+    /**
+     * Create a simulation of the given bodies using semi-implicit Euler steps of one time unit.
+     * @param bodies bodies to simulate, must not be null
+     * @param solver force solver, must not be null
+     */
+    public Simulation(BodyStore bodies, ForceSolver solver) {
+        this(bodies, solver, new SemiImplicitEuler(), 1.0);
+    }
+
+    /**
+     * Create a simulation of the given bodies.
+     * @param bodies bodies to simulate, must not be null
+     * @param solver force solver, must not be null
+     * @param integrator integration scheme, must not be null
+     * @param dt length of a step in time units, must be positive
+     * @throws IllegalArgumentException if dt is not positive
+     */
+    public Simulation(BodyStore bodies, ForceSolver solver, Integrator integrator, double dt) {
+        if (bodies == null) throw new NullPointerException("bodies is null");
+        if (solver == null) throw new NullPointerException("solver is null");
+        if (integrator == null) throw new NullPointerException("integrator is null");
+        if (!(dt > 0)) throw new IllegalArgumentException("Time step must be positive");
+        this.bodies = bodies;
+        this.solver = solver;
+        this.integrator = integrator;
+        this.dt = dt;
+    }
+
+    /**
+     * Accelerate each particle by the gravitational force of each other particle,
+     * and move all particles forward by one time step.
+     * Then, if collisions are handled, merge or bounce the bodies that touch.
+     * This works directly on the body store and allocates nothing
+     * (unless the force solver does).
+     */
+    public void step() {
+        integrator.step(bodies, solver, dt);
+        if (collisions != null && collisions.resolve(bodies) > 0) integrator.reset();
+        days += DAYS_PER_TIME_UNIT * dt;
+        ++steps;
+    }
+
+    public BodyStore getBodies() {
+        return bodies;
+    }
+
+    public ForceSolver getSolver() {
+        return solver;
+    }
+
+    public Integrator getIntegrator() {
+        return integrator;
+    }
+
+    /**
+     * Make bodies with a radius collide from the next step on.
+     * Only to be called by the thread that steps the simulation.
+     * @param collisions how to resolve collisions, or null to let bodies pass through each other
+     */
+    public void setCollisions(CollisionHandler collisions) {
+        this.collisions = collisions;
+    }
+
+    /**
+     * @return how collisions are resolved, or null if they are not
+     */
+    public CollisionHandler getCollisions() {
+        return collisions;
+    }
+
+    /**
+     * @return length of a step in time units
+     */
+    public double getTimeStep() {
+        return dt;
+    }
+
+    /**
+     * Set the clock, for example when continuing from a {@link Checkpoint}.
+     * @param days simulated days since the start
+     * @param steps steps taken since the start
+     */
+    void setClock(double days, long steps) {
+        this.days = days;
+        this.steps = steps;
+    }
+
+    /**
+     * @return simulated days since the start
+     */
+    public double getDays() {
+        return days;
+    }
+
+    /**
+     * @return number of steps taken since the start
+     */
+    public long getSteps() {
+        return steps;
+    }
+}
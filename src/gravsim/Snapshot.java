@@ -0,0 +1,57 @@
+package gravsim;
+
+/**
+ * Copy of the positions of all bodies at one moment of a simulation,
+ * handed from the physics thread to the renderer by a {@link SnapshotBuffer}.
+ */
+public class Snapshot {
+    double[] x = new double[0];
+    double[] y = new double[0];
+    int[] id = new int[0]; // so that a body can be recognised after others were removed
+    int count;
+    double days;
+    long sequence; // number of the step this was taken after, 0 if none
+
+    /**
+     * Overwrite this snapshot with the current state of the bodies.
+     * @param bodies bodies to copy, must not be null
+     * @param days simulated days so far
+     * @param step number of the step just taken
+     */
+    void copyFrom(BodyStore bodies, double days, long step) {
+        count = bodies.size();
+        if (x.length < count) {
+            x = new double[bodies.x.length];
+            y = new double[bodies.x.length];
+            id = new int[bodies.x.length];
+        }
+        System.arraycopy(bodies.x, 0, x, 0, count);
+        System.arraycopy(bodies.y, 0, y, 0, count);
+        System.arraycopy(bodies.id, 0, id, 0, count);
+        this.days = days;
+        this.sequence = step;
+    }
+
+    /**
+     * @return number of bodies in the snapshot
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return simulated days at the time of the snapshot
+     */
+    public double getDays() {
+        return days;
+    }
+
+    /**
+     * Return the position of a body as a new point.
+     * @param i index of the body
+     * @return position, never null
+     */
+    public Point position(int i) {
+        return new Point(x[i], y[i]);
+    }
+}
@@ -0,0 +1,51 @@
+package gravsim;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free hand-off of snapshots from one writer thread to one reader thread.
+ * The writer fills its back buffer and swaps it with the shared middle buffer;
+ * the reader swaps its front buffer with the middle one when a newer snapshot is
+ * waiting there.  With three buffers in rotation neither side ever waits for the
+ * other, the writer never touches the snapshot being read, and the reader always
+ * sees a complete snapshot (intermediate ones are simply skipped).
+ */
+public class SnapshotBuffer {
+    private Snapshot back = new Snapshot(); // owned by the writer
+    private final AtomicReference<Snapshot> middle = new AtomicReference<>(new Snapshot());
+    private Snapshot front = new Snapshot(); // owned by the reader
+
+    {
+        front.sequence = -1; // so that a snapshot published before any step counts as newer
+    }
+
+    /**
+     * Copy the state of the bodies into the back buffer and make it available to the reader.
+     * Only to be called by the writer thread.
+     * @param bodies bodies to copy, must not be null
+     * @param days simulated days so far
+     * @param step number of the step just taken, must increase from call to call
+     */
+    public void publish(BodyStore bodies, double days, long step) {
+        back.copyFrom(bodies, days, step);
+        back = middle.getAndSet(back);
+    }
+
+    /**
+     * @return whether a snapshot newer than the current one has been published.
+     * Only to be called by the reader thread.
+     */
+    public boolean hasNewer() {
+        return middle.get().sequence > front.sequence;
+    }
+
+    /**
+     * Return the most recently published snapshot, which stays unchanged
+     * until the next call.  Only to be called by the reader thread.
+     * @return latest snapshot, never null (but empty if nothing was published yet)
+     */
+    public Snapshot acquire() {
+        if (hasNewer()) front = middle.getAndSet(front);
+        return front;
+    }
+}
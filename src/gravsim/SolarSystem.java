@@ -0,0 +1,30 @@
+package gravsim;
+
+/**
+ * Initial conditions of the sun and the four inner planets, in screen units.
+ * Bodies are added in the order of {@link #NAMES}.
+ */
+public class SolarSystem {
+    public static final int AU = 280;
+    public static final double SUN_MASS = 20;
+    public static final String[] NAMES = {"", "Mercury", "Venus", "Earth", "Mars"};
+    public static final int[] RADII = {70, 8, 18, 20, 10};
+
+    private SolarSystem() {}
+
+    /**
+     * Create a store holding the sun and inner planets, each with its drawn radius
+     * as its collision radius.
+     * @return new store of five bodies
+     */
+    public static BodyStore create() {
+        BodyStore bodies = new BodyStore(NAMES.length);
+        double offset = 500 - RADII[0];
+        bodies.add(500.0, 500.0, 0, 0.0, SUN_MASS, RADII[0]);
+        bodies.add(500, offset-0.4*AU, 0.9, 0, 0.00000016*SUN_MASS, RADII[1]);
+        bodies.add(500, offset-0.8*AU, 0.75, 0, 0.00000244*SUN_MASS, RADII[2]);
+        bodies.add(500.0, offset-AU, 0.7, 0, 0.00000304*SUN_MASS, RADII[3]);
+        bodies.add(500.0, offset-1.5*AU, 0.6, 0, 0.000000322*SUN_MASS, RADII[4]);
+        return bodies;
+    }
+}
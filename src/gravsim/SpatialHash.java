@@ -0,0 +1,129 @@
+package gravsim;
+
+import java.util.Arrays;
+
+/**
+ * Broad phase of collision detection: finds the pairs of bodies whose collision
+ * circles overlap without testing every pair.  Bodies with a radius are binned into
+ * square cells as wide as the largest diameter, so two overlapping bodies are always
+ * in the same or neighbouring cells; the cells are hashed into buckets that are filled
+ * by a counting sort, as in {@link UniformGrid}.  Each body then looks only at the
+ * nine cells around it, which takes time close to linear in the number of bodies
+ * unless they are piled on top of each other.  Only the cells that hold bodies cost
+ * anything, however far apart the bodies are.  The arrays are reused from one call
+ * to the next.
+ */
+public class SpatialHash {
+    private int members; // bodies with a radius
+    private int[] body = new int[0]; // per member: index of the body
+    private long[] cellX = new long[0];
+    private long[] cellY = new long[0];
+    private int[] bucketOf = new int[0];
+    private int[] bucketStart = new int[1]; // members of bucket b are order[bucketStart[b]] .. order[bucketStart[b + 1] - 1]
+    private int[] order = new int[0];
+    private int mask;
+    private int[] first = new int[0];
+    private int[] second = new int[0];
+    private int pairs;
+
+    /**
+     * Find every pair of bodies whose collision circles overlap.  Bodies with a radius
+     * of 0 never collide and are skipped.
+     * @param bodies bodies to look at, must not be null
+     * @return number of pairs found; their indices are the first entries of
+     *     {@link #getFirst()} and {@link #getSecond()}, with the first index the smaller
+     */
+    public int findPairs(BodyStore bodies) {
+        double[] x = bodies.x, y = bodies.y, radius = bodies.radius;
+        int n = bodies.size();
+        pairs = 0;
+        members = 0;
+        double maxRadius = 0;
+        for (int i = 0; i < n; ++i) {
+            if (radius[i] <= 0) continue;
+            if (members == body.length) grow(Math.max(16, 2 * members));
+            body[members++] = i;
+            maxRadius = Math.max(maxRadius, radius[i]);
+        }
+        if (members < 2) return 0;
+
+        double cell = 2 * maxRadius;
+        int buckets = Integer.highestOneBit(Math.max(2, members - 1)) << 1;
+        mask = buckets - 1;
+        if (bucketStart.length < buckets + 1) bucketStart = new int[buckets + 1];
+        else Arrays.fill(bucketStart, 0, buckets + 1, 0);
+        for (int m = 0; m < members; ++m) {
+            int i = body[m];
+            cellX[m] = (long) Math.floor(x[i] / cell);
+            cellY[m] = (long) Math.floor(y[i] / cell);
+            int b = bucket(cellX[m], cellY[m]);
+            bucketOf[m] = b;
+            ++bucketStart[b + 1];
+        }
+        for (int b = 0; b < buckets; ++b) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        for (int m = 0; m < members; ++m) { // moves each start to the end of its bucket ...
+            order[bucketStart[bucketOf[m]]++] = m;
+        }
+        for (int b = buckets - 1; b > 0; --b) { // ... which is the start of the next one
+            bucketStart[b] = bucketStart[b - 1];
+        }
+        bucketStart[0] = 0;
+
+        for (int m = 0; m < members; ++m) {
+            int i = body[m];
+            for (long cy = cellY[m] - 1; cy <= cellY[m] + 1; ++cy) {
+                for (long cx = cellX[m] - 1; cx <= cellX[m] + 1; ++cx) {
+                    int b = bucket(cx, cy);
+                    for (int k = bucketStart[b]; k < bucketStart[b + 1]; ++k) {
+                        int other = order[k];
+                        if (other <= m || cellX[other] != cx || cellY[other] != cy) continue; // each pair once
+                        int j = body[other];
+                        double dx = x[j] - x[i];
+                        double dy = y[j] - y[i];
+                        double reach = radius[i] + radius[j];
+                        if (dx*dx + dy*dy < reach * reach) addPair(i, j);
+                    }
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private int bucket(long cx, long cy) {
+        long h = cx * 0x9E3779B97F4A7C15L + cy * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 29)) & mask;
+    }
+
+    private void grow(int capacity) {
+        body = Arrays.copyOf(body, capacity);
+        cellX = Arrays.copyOf(cellX, capacity);
+        cellY = Arrays.copyOf(cellY, capacity);
+        bucketOf = Arrays.copyOf(bucketOf, capacity);
+        order = Arrays.copyOf(order, capacity);
+    }
+
+    private void addPair(int i, int j) {
+        if (pairs == first.length) {
+            first = Arrays.copyOf(first, Math.max(16, 2 * pairs));
+            second = Arrays.copyOf(second, first.length);
+        }
+        first[pairs] = i;
+        second[pairs++] = j;
+    }
+
+    /**
+     * @return index of the first body of each pair found by the last {@link #findPairs}
+     */
+    public int[] getFirst() {
+        return first;
+    }
+
+    /**
+     * @return index of the second body of each pair found by the last {@link #findPairs}
+     */
+    public int[] getSecond() {
+        return second;
+    }
+}
@@ -0,0 +1,221 @@
+package gravsim;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where the time of a running simulation goes: a {@link LatencyHistogram} for each
+ * phase of a step and of a frame, steps and frames per second, and the bytes
+ * the stepping thread allocates per step.
+ * <p>
+ * Measuring is opt-in: code that is given no metrics object skips every call, so
+ * a simulation without one runs exactly as before.  With one, each phase costs a
+ * pair of {@link System#nanoTime()} calls and a histogram update, and each step one
+ * read of the thread's allocation counter.  Step phases are written by the physics
+ * thread and frame phases by the Swing thread; readers on other threads (the
+ * overlay, {@link MetricsExporter}) see slightly stale values.
+ */
+public class StepMetrics {
+    /**
+     * Measured phases.  {@code FORCES} and {@code INTEGRATE} split the time of
+     * {@link Simulation#step()}; the others are recorded by their callers.
+     */
+    public enum Phase {
+        /** force evaluation (time spent in the {@link TimedForceSolver}) */
+        FORCES,
+        /** the rest of a step: kicks, drifts and bookkeeping */
+        INTEGRATE,
+        /** copying the new state for the renderer */
+        PUBLISH,
+        /** adding to and drawing the trails */
+        TRAILS,
+        /** a whole paint, trails included; each one counts as a frame */
+        PAINT,
+        /** how much later than planned a {@link Pacer} woke up to take its next steps */
+        OVERSHOOT
+    }
+
+    private static final long WINDOW = 500_000_000L; // rates are over the last half second or so
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Phase.values().length];
+    private final com.sun.management.ThreadMXBean threads;
+    private final long created = System.nanoTime();
+    private long forceNanos; // force time in the current step
+    private long stepStart;
+    private long allocationStart;
+    private volatile long steps;
+    private volatile long frames;
+    private volatile long allocated;
+    private long windowStart = created;
+    private long windowSteps;
+    private long windowAllocated;
+    private long frameWindowStart = created;
+    private long windowFrames;
+    private volatile double stepsPerSecond;
+    private volatile double framesPerSecond;
+    private volatile double bytesPerStep;
+
+    /**
+     * Create empty metrics.  Allocation is measured only where the JVM supports
+     * per-thread allocation counters; elsewhere it reads as zero.
+     */
+    public StepMetrics() {
+        for (int i = 0; i < histograms.length; ++i) {
+            histograms[i] = new LatencyHistogram();
+        }
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threads = null;
+        }
+    }
+
+    /**
+     * Wrap a solver so that its time is counted as {@link Phase#FORCES}.
+     * @param solver solver to measure, must not be null
+     * @return solver to give the simulation
+     */
+    public ForceSolver time(ForceSolver solver) {
+        return new TimedForceSolver(solver, this);
+    }
+
+    void addForceTime(long nanos) {
+        forceNanos += nanos;
+    }
+
+    /**
+     * Mark the start of a step.  To be called by the thread that steps the simulation.
+     */
+    public void stepStarted() {
+        forceNanos = 0;
+        if (threads != null) allocationStart = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        stepStart = System.nanoTime();
+    }
+
+    /**
+     * Mark the end of the step begun with {@link #stepStarted()} and record its phases.
+     */
+    public void stepFinished() {
+        long now = System.nanoTime();
+        histograms[Phase.FORCES.ordinal()].record(forceNanos);
+        histograms[Phase.INTEGRATE.ordinal()].record(now - stepStart - forceNanos);
+        if (threads != null) {
+            allocated += threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocationStart;
+        }
+        long n = ++steps;
+        if (now - windowStart >= WINDOW) {
+            stepsPerSecond = (n - windowSteps) * 1e9 / (now - windowStart);
+            bytesPerStep = (double) (allocated - windowAllocated) / (n - windowSteps);
+            windowStart = now;
+            windowSteps = n;
+            windowAllocated = allocated;
+        }
+    }
+
+    /**
+     * @return the current time, to pass to {@link #record} at the end of a phase
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record a phase that began at the given time and ends now.  A
+     * {@link Phase#PAINT} also counts as a frame.
+     * @param phase phase measured, must not be null
+     * @param start value of {@link #start()} when the phase began
+     */
+    public void record(Phase phase, long start) {
+        recordNanos(phase, System.nanoTime() - start);
+    }
+
+    /**
+     * Record the duration of a phase measured by the caller.
+     * @param phase phase measured, must not be null
+     * @param nanos duration in nanoseconds
+     */
+    public void recordNanos(Phase phase, long nanos) {
+        histograms[phase.ordinal()].record(nanos);
+        if (phase != Phase.PAINT) return;
+        long n = ++frames;
+        long now = System.nanoTime();
+        if (now - frameWindowStart >= WINDOW) {
+            framesPerSecond = (n - windowFrames) * 1e9 / (now - frameWindowStart);
+            frameWindowStart = now;
+            windowFrames = n;
+        }
+    }
+
+    /**
+     * @param phase phase to look at, must not be null
+     * @return histogram of the durations of that phase
+     */
+    public LatencyHistogram getHistogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return nanoseconds since these metrics were created
+     */
+    public long getElapsedNanos() {
+        return System.nanoTime() - created;
+    }
+
+    /**
+     * @return steps per second over the last half second or so
+     */
+    public double getStepsPerSecond() {
+        return stepsPerSecond;
+    }
+
+    /**
+     * @return frames per second over the last half second or so
+     */
+    public double getFramesPerSecond() {
+        return framesPerSecond;
+    }
+
+    /**
+     * @return bytes allocated per step over the last half second or so
+     */
+    public double getBytesPerStep() {
+        return bytesPerStep;
+    }
+
+    /**
+     * @return mean bytes allocated per step since the start
+     */
+    public double getMeanBytesPerStep() {
+        long n = steps;
+        return n == 0 ? 0 : (double) allocated / n;
+    }
+
+    /**
+     * Describe the current state in a few short lines, for an overlay or a log.
+     * @return lines of text: rates first, then one line for each phase that has been recorded
+     */
+    public List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("steps/s %.0f  fps %.1f  alloc/step %.0f B",
+                stepsPerSecond, framesPerSecond, bytesPerStep));
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram h = histograms[phase.ordinal()];
+            if (h.getCount() == 0) continue;
+            lines.add(String.format("%-9s p50 %8.1f us  p99 %8.1f us  max %8.1f us", phase.name().toLowerCase(),
+                    h.getValueAtPercentile(50) / 1e3, h.getValueAtPercentile(99) / 1e3, h.getMax() / 1e3));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,228 @@
+package gravsim;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Exact O(n&sup2;) solver that visits each unordered pair of bodies once and
+ * applies equal and opposite pulls to both (Newton's third law), so it takes half
+ * the square roots and divisions of {@link DirectForceSolver}.
+ * <p>
+ * The pairs are visited in square tiles of {@value #TILE} targets by {@value #TILE}
+ * sources, whose positions, masses and partial sums (about 20&nbsp;KB for both tiles)
+ * stay in the L1 cache while the tile is worked through.
+ * <p>
+ * Since every body receives contributions from all over the loop, nothing is
+ * known about any single body until the whole sum is done.  So all the work
+ * happens in {@link #prepare}, and {@link #accelerate} only copies the results out.
+ * With more than one thread, each thread adds into a buffer of its own for a
+ * fixed set of tile rows, and the buffers are summed at the end, also in parallel
+ * and always in the same order.  The results therefore do not depend on timing,
+ * but they differ in the last bits from those of the direct solver and from
+ * one thread count to another, since the terms are added in a different order.
+ * <p>
+ * For the same reason, computing a few bodies costs as much as computing all of
+ * them.  This solver does not suit {@link BlockTimestepIntegrator}, which prepares
+ * the solver on every sub-step to compute only the active bodies: each sub-step
+ * would cost a whole O(n&sup2;) sum.  {@link BatchRun} refuses the combination.
+ */
+public class SymmetricForceSolver implements ForceSolver {
+    static final int TILE = 256;
+
+    private final double softening2;
+    private final ForkJoinPool pool; // null when running on the calling thread
+    private final int threads;
+    private double[][] sumX = new double[0][]; // per thread: partial sums of the accelerations
+    private double[][] sumY = new double[0][];
+    private double[] resultX = new double[0];
+    private double[] resultY = new double[0];
+
+    /**
+     * Create a solver with the exact kernel that runs on the calling thread.
+     */
+    public SymmetricForceSolver() {
+        this(0, 1);
+    }
+
+    /**
+     * Create a solver.
+     * @param softening Plummer softening length, must not be negative; 0 gives the exact kernel
+     * @param threads number of threads to use, must be positive; with 1 everything
+     *     runs on the calling thread
+     * @throws IllegalArgumentException if softening is negative or threads is not positive
+     */
+    public SymmetricForceSolver(double softening, int threads) {
+        if (!(softening >= 0)) throw new IllegalArgumentException("Softening cannot be negative");
+        if (threads <= 0) throw new IllegalArgumentException("Thread count must be positive");
+        this.softening2 = softening * softening;
+        this.threads = threads;
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * @return softening length
+     */
+    public double getSoftening() {
+        return Math.sqrt(softening2);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Stop the worker threads, if any.  The solver must not be used afterwards.
+     */
+    public void shutdown() {
+        if (pool != null) pool.shutdown();
+    }
+
+    /**
+     * Compute the accelerations of all bodies.
+     */
+    @Override //implementation
+    public void prepare(BodyStore bodies) {
+        int n = bodies.size();
+        if (resultX.length < n) {
+            resultX = new double[bodies.x.length];
+            resultY = new double[bodies.x.length];
+        }
+        if (pool == null) {
+            Arrays.fill(resultX, 0, n, 0);
+            Arrays.fill(resultY, 0, n, 0);
+            int tiles = (n + TILE - 1) / TILE;
+            for (int row = 0; row < tiles; ++row) {
+                tileRow(bodies, row, resultX, resultY);
+            }
+            return;
+        }
+        if (sumX.length < threads || sumX[0].length < n) {
+            sumX = new double[threads][bodies.x.length];
+            sumY = new double[threads][bodies.x.length];
+        }
+        pool.invoke(new Accumulate(bodies));
+        pool.invoke(new Reduce(n, 0, n));
+    }
+
+    @Override //required
+    public void accelerate(BodyStore bodies, int from, int to) {
+        System.arraycopy(resultX, from, bodies.ax, from, to - from);
+        System.arraycopy(resultY, from, bodies.ay, from, to - from);
+    }
+
+    /**
+     * Add the pulls between the bodies of one tile and those of every tile from it
+     * to the end, in both directions.  Row r covers the tiles from r to the end,
+     * so rows near the start are the expensive ones.
+     */
+    private void tileRow(BodyStore bodies, int row, double[] ax, double[] ay) {
+        double[] x = bodies.x, y = bodies.y, mass = bodies.mass;
+        double e2 = softening2;
+        int n = bodies.size();
+        int iFrom = row * TILE, iTo = Math.min(n, iFrom + TILE);
+        for (int jFrom = iFrom; jFrom < n; jFrom += TILE) {
+            int jTo = Math.min(n, jFrom + TILE);
+            for (int i = iFrom; i < iTo; ++i) {
+                double xi = x[i], yi = y[i], mi = mass[i];
+                double sx = 0, sy = 0;
+                for (int j = jFrom == iFrom ? i + 1 : jFrom; j < jTo; ++j) {
+                    double dx = x[j] - xi;
+                    double dy = y[j] - yi;
+                    double r2 = dx*dx + dy*dy + e2;
+                    double s = Planet.G / (r2 * Math.sqrt(r2));
+                    double fx = dx * s, fy = dy * s;
+                    sx += fx * mass[j];
+                    sy += fy * mass[j];
+                    ax[j] -= fx * mi;
+                    ay[j] -= fy * mi;
+                }
+                ax[i] += sx;
+                ay[i] += sy;
+            }
+        }
+    }
+
+    /**
+     * Run one {@link Rows} task per thread.
+     */
+    private class Accumulate extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final BodyStore bodies;
+
+        Accumulate(BodyStore bodies) {
+            this.bodies = bodies;
+        }
+
+        @Override //required
+        protected void compute() {
+            Rows[] tasks = new Rows[threads];
+            for (int t = 0; t < threads; ++t) {
+                tasks[t] = new Rows(bodies, t);
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Add up a fixed set of tile rows into the buffer of one thread.  Rows are dealt
+     * out back and forth (0, 1, .. k-1, k-1, .. 1, 0, 0, 1, ..) so that every thread
+     * gets a similar mix of expensive and cheap ones.
+     */
+    private class Rows extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final BodyStore bodies;
+        private final int thread;
+
+        Rows(BodyStore bodies, int thread) {
+            this.bodies = bodies;
+            this.thread = thread;
+        }
+
+        @Override //required
+        protected void compute() {
+            int n = bodies.size();
+            double[] ax = sumX[thread], ay = sumY[thread];
+            Arrays.fill(ax, 0, n, 0);
+            Arrays.fill(ay, 0, n, 0);
+            int tiles = (n + TILE - 1) / TILE;
+            for (int row = 0; row < tiles; ++row) {
+                int turn = row % (2 * threads);
+                if ((turn < threads ? turn : 2 * threads - 1 - turn) == thread) tileRow(bodies, row, ax, ay);
+            }
+        }
+    }
+
+    /**
+     * Sum the per-thread buffers for a range of bodies, splitting it among the threads.
+     */
+    private class Reduce extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int n;
+        private final int from, to;
+
+        Reduce(int n, int from, int to) {
+            this.n = n;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override //required
+        protected void compute() {
+            if (to - from > Math.max(TILE, n / threads)) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Reduce(n, from, mid), new Reduce(n, mid, to));
+                return;
+            }
+            for (int i = from; i < to; ++i) {
+                double ax = 0, ay = 0;
+                for (int t = 0; t < threads; ++t) {
+                    ax += sumX[t][i];
+                    ay += sumY[t][i];
+                }
+                resultX[i] = ax;
+                resultY[i] = ay;
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package gravsim;
+
+/**
+ * Measure the time another solver takes, for {@link StepMetrics}.
+ * The time of every call made during a step is added up and counted as
+ * that step's force evaluation.  Wrap the outermost solver (for example the
+ * {@link ParallelForceSolver}, not the solver inside it), since the running
+ * total is kept for the thread that steps the simulation only.
+ */
+public class TimedForceSolver implements ForceSolver {
+    private final ForceSolver solver;
+    private final StepMetrics metrics;
+
+    /**
+     * Time the given solver.
+     * @param solver solver to measure, must not be null
+     * @param metrics where to add the time, must not be null
+     */
+    public TimedForceSolver(ForceSolver solver, StepMetrics metrics) {
+        if (solver == null) throw new NullPointerException("solver is null");
+        if (metrics == null) throw new NullPointerException("metrics is null");
+        this.solver = solver;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the solver being measured
+     */
+    public ForceSolver getSolver() {
+        return solver;
+    }
+
+    @Override //implementation
+    public void prepare(BodyStore bodies) {
+        long start = System.nanoTime();
+        solver.prepare(bodies);
+        metrics.addForceTime(System.nanoTime() - start);
+    }
+
+    @Override //required
+    public void accelerate(BodyStore bodies, int from, int to) {
+        long start = System.nanoTime();
+        solver.accelerate(bodies, from, to);
+        metrics.addForceTime(System.nanoTime() - start);
+    }
+
+    @Override //implementation
+    public void accelerate(BodyStore bodies, int[] targets, int from, int to) {
+        long start = System.nanoTime();
+        solver.accelerate(bodies, targets, from, to);
+        metrics.addForceTime(System.nanoTime() - start);
+    }
+
+    @Override //implementation
+    public void computeAccelerations(BodyStore bodies) {
+        long start = System.nanoTime();
+        solver.computeAccelerations(bodies);
+        metrics.addForceTime(System.nanoTime() - start);
+    }
+}
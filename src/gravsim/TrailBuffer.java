@@ -0,0 +1,110 @@
+package gravsim;
+
+/**
+ * Fixed-capacity ring buffer of trail points stored as primitive floats.
+ * Appending is O(1); once the buffer is full each new point overwrites the
+ * oldest one, so the memory used by a trail never grows past its capacity.
+ * Points closer than the minimum spacing to the last point are not stored.
+ * <p>
+ * Points and spacing are in simulation units, not pixels.  The trail is kept
+ * in the same coordinates as the bodies so that it can be drawn again under any
+ * {@link Viewport} after a pan or zoom.  A spacing in pixels would tie how
+ * densely each stretch was recorded to the zoom at the time, so the spacing
+ * stays fixed and zooming in shows the points further apart.
+ */
+public class TrailBuffer {
+    public static final int DEFAULT_CAPACITY = 5000;
+
+    private final float[] xs;
+    private final float[] ys;
+    private final double minSpacing2;
+    private int head; // index of the oldest point
+    private int count;
+
+    /**
+     * Create a trail of the default capacity that skips points less than one
+     * simulation unit, a pixel at the default zoom, away from the previous one.
+     */
+    public TrailBuffer() {
+        this(DEFAULT_CAPACITY, 1.0);
+    }
+
+    /**
+     * Create an empty trail.
+     * @param capacity most points kept, must be positive
+     * @param minSpacing points closer than this to the last point, in simulation
+     *     units, are skipped; 0 keeps every point.  Must not be negative.
+     * @throws IllegalArgumentException if capacity is not positive or spacing is negative
+     */
+    public TrailBuffer(int capacity, double minSpacing) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        if (minSpacing < 0) throw new IllegalArgumentException("Spacing cannot be negative");
+        xs = new float[capacity];
+        ys = new float[capacity];
+        minSpacing2 = minSpacing * minSpacing;
+    }
+
+    /**
+     * Add a point to the end of the trail, evicting the oldest point if the trail is full.
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return whether the point was stored (false if too close to the last one)
+     */
+    public boolean add(double x, double y) {
+        if (count > 0 && minSpacing2 > 0) {
+            int last = index(count - 1);
+            double dx = x - xs[last], dy = y - ys[last];
+            if (dx*dx + dy*dy < minSpacing2) return false;
+        }
+        int i;
+        if (count == xs.length) {
+            i = head;
+            head = index(1);
+        } else {
+            i = index(count++);
+        }
+        xs[i] = (float) x;
+        ys[i] = (float) y;
+        return true;
+    }
+
+    private int index(int k) {
+        int i = head + k;
+        return i >= xs.length ? i - xs.length : i;
+    }
+
+    /**
+     * @param k position in the trail, 0 being the oldest point
+     * @return x coordinate of the point
+     */
+    public float x(int k) {
+        return xs[index(k)];
+    }
+
+    /**
+     * @param k position in the trail, 0 being the oldest point
+     * @return y coordinate of the point
+     */
+    public float y(int k) {
+        return ys[index(k)];
+    }
+
+    /**
+     * @return number of points in the trail
+     */
+    public int size() {
+        return count;
+    }
+
+    public int capacity() {
+        return xs.length;
+    }
+
+    /**
+     * Remove all points.
+     */
+    public void clear() {
+        head = 0;
+        count = 0;
+    }
+}
@@ -0,0 +1,161 @@
+package gravsim;
+
+import java.util.Arrays;
+
+/**
+ * Offscreen layer that keeps the trails drawn from one frame to the next, so
+ * that each frame only adds the points that are new.  Instead of removing points
+ * as their trails drop them, the whole layer fades: every {@value #FADE_INTERVAL}
+ * frames that the simulation advances, each pixel loses one step of opacity, so a
+ * point disappears {@value #LIFETIME} frames after it was drawn.  A frame therefore
+ * costs the same however long the trails are.  The pixels are ARGB, ready to be
+ * the background of a {@link DensityRaster}.
+ * <p>
+ * The pixels only hold for one mapping to the screen and one size.  When either
+ * changes, {@link #prepare} clears the layer and the trails have to be drawn again
+ * from their points with {@link #redraw}, the oldest ones fainter as though they
+ * had faded.
+ */
+public class TrailLayer {
+    /**
+     * Advancing frames between two steps of fading.
+     */
+    public static final int FADE_INTERVAL = 4;
+    /**
+     * Advancing frames a point stays visible.
+     */
+    public static final int LIFETIME = 255 * FADE_INTERVAL;
+
+    private final int rgb;
+    private int[] pixels;
+    private int width;
+    private int height;
+    private long version = -1; // of the viewport the pixels were drawn for
+    private boolean valid;
+    private int frames; // advancing frames since the last fading step
+    private int minX, minY, maxX, maxY; // bounds of the pixels drawn since the layer was cleared, inclusive
+
+    /**
+     * Create a layer that draws trails in the given color.
+     * @param rgb color of the trails, as 0xRRGGBB
+     */
+    public TrailLayer(int rgb) {
+        this.rgb = rgb & 0xFFFFFF;
+    }
+
+    /**
+     * Get the layer ready for a frame, clearing it if the size or the mapping to the
+     * screen changed or it was {@link #invalidate invalidated}.
+     * @param w width of the frame, in pixels
+     * @param h height of the frame, in pixels
+     * @param viewport mapping the trails are drawn with, must not be null
+     * @return whether the layer was cleared, so that the trails must be drawn again
+     *     with {@link #redraw}
+     */
+    public boolean prepare(int w, int h, Viewport viewport) {
+        w = Math.max(1, w);
+        h = Math.max(1, h);
+        boolean resized = pixels == null || w != width || h != height;
+        if (valid && !resized && version == viewport.getVersion()) return false;
+        if (resized) {
+            width = w;
+            height = h;
+            pixels = new int[w * h];
+        } else {
+            Arrays.fill(pixels, 0);
+        }
+        version = viewport.getVersion();
+        valid = true;
+        frames = 0;
+        minX = width;
+        minY = height;
+        maxX = -1;
+        maxY = -1;
+        return true;
+    }
+
+    /**
+     * Make the next {@link #prepare} clear the layer, as when the trails were cleared.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Draw a new point at full opacity.
+     * @see #plot(double, double, int)
+     */
+    public void plot(double sx, double sy) {
+        plot(sx, sy, 255);
+    }
+
+    /**
+     * Set a 2 by 2 block of pixels at the given position, like {@link Point#draw};
+     * ignored if off the layer.  A pixel that is already more opaque is left alone.
+     * @param alpha opacity, from 1 to 255
+     */
+    public void plot(double sx, double sy, int alpha) {
+        int px = (int) sx;
+        int py = (int) sy;
+        if (!(sx >= 0 && sy >= 0) || px >= width - 1 || py >= height - 1) return;
+        int argb = alpha << 24 | rgb;
+        int i = py * width + px;
+        if (pixels[i] >>> 24 < alpha) pixels[i] = argb;
+        if (pixels[i + 1] >>> 24 < alpha) pixels[i + 1] = argb;
+        if (pixels[i + width] >>> 24 < alpha) pixels[i + width] = argb;
+        if (pixels[i + width + 1] >>> 24 < alpha) pixels[i + width + 1] = argb;
+        if (px < minX) minX = px;
+        if (py < minY) minY = py;
+        if (px + 1 > maxX) maxX = px + 1;
+        if (py + 1 > maxY) maxY = py + 1;
+    }
+
+    /**
+     * Draw a trail again after {@link #prepare} cleared the layer: its newest
+     * {@value #LIFETIME} points, each as faint as fading would have left it.  The
+     * ages of the points are not kept, so a point's age is taken to be its place
+     * from the end of the trail, one advancing frame per point.
+     * @param trail trail to draw, must not be null
+     * @param viewport mapping to the screen, the one given to {@link #prepare}
+     */
+    public void redraw(TrailBuffer trail, Viewport viewport) {
+        int n = trail.size();
+        for (int t = Math.max(0, n - LIFETIME); t < n; ++t) {
+            int alpha = 255 - (n - 1 - t) / FADE_INTERVAL;
+            plot(viewport.screenX(trail.x(t)), viewport.screenY(trail.y(t)), alpha);
+        }
+    }
+
+    /**
+     * Count a frame in which the simulation advanced, fading the layer one step
+     * every {@value #FADE_INTERVAL} of them.  Only the part of the layer that has
+     * been drawn on is visited.
+     */
+    public void advance() {
+        if (++frames < FADE_INTERVAL) return;
+        frames = 0;
+        boolean drawn = false;
+        for (int y = minY; y <= maxY; ++y) {
+            for (int i = y * width + minX, end = y * width + maxX; i <= end; ++i) {
+                int p = pixels[i];
+                if (p == 0) continue;
+                int a = (p >>> 24) - 1;
+                pixels[i] = a == 0 ? 0 : a << 24 | (p & 0xFFFFFF);
+                drawn |= a != 0;
+            }
+        }
+        if (!drawn) { // everything has faded
+            minX = width;
+            minY = height;
+            maxX = -1;
+            maxY = -1;
+        }
+    }
+
+    /**
+     * @return the pixels, row by row, as of the last {@link #prepare}'s size
+     */
+    int[] getPixels() {
+        return pixels;
+    }
+}
@@ -0,0 +1,44 @@
+package gravsim;
+
+/**
+ * Layout of trajectory files, shared by {@link TrajectoryRecorder} and {@link TrajectoryReader}.
+ * <p>
+ * A file is a header, a sequence of chunks and a footer, all little-endian.
+ * <ul>
+ * <li> Header: {@link #MAGIC}, version (int), frames per chunk (int), steps between samples (long).
+ * <li> Chunk: an uncompressed chunk header ({@link #CHUNK_MAGIC}, frame count, body count,
+ *   a spare int, days of the first and last frame, step of the first frame, length of the
+ *   compressed data) followed by the ids of the bodies (a varint each, in the order of
+ *   the columns) and the frames, deflated.  A chunk holds frames with the same ids only,
+ *   so a new one starts whenever bodies merge or are removed.  Each frame is its days (8 bytes),
+ *   its step (varint), then the columns x, y, vx, vy and mass, one value per body.
+ *   A value is stored as the difference between its IEEE bit pattern and that of the
+ *   same body's value in the previous frame, zigzag-encoded as a varint.  The first frame
+ *   of a chunk is a keyframe (differences from zero), so any chunk can be decoded alone.
+ * <li> Footer: the file offset of every chunk (longs), the chunk count (int) and
+ *   {@link #FOOTER_MAGIC}.  A file whose recorder never closed it has no footer; the
+ *   chunks can still be found by hopping from one chunk header to the next.
+ * </ul>
+ * Bodies that move smoothly change little between frames, so the differences are small
+ * and take a few bytes each before compression.
+ * <p>
+ * Version 1 chunks have no ids; their bodies have ids in index order.
+ */
+final class TrajectoryFormat {
+    static final long MAGIC = 0x4a4152544d495347L; // "GSIMTRAJ"
+    static final long FOOTER_MAGIC = 0x58444e494d495347L; // "GSIMINDX"
+    static final int CHUNK_MAGIC = 0x4b4e4843; // "CHNK"
+    static final int VERSION = 2;
+    static final int HEADER = 8 + 4 + 4 + 8;
+    static final int CHUNK_HEADER = 4 + 4 + 4 + 4 + 8 + 8 + 8 + 8;
+
+    private TrajectoryFormat() {}
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
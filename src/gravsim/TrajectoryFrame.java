@@ -0,0 +1,95 @@
+package gravsim;
+
+import java.util.Arrays;
+
+/**
+ * State of all bodies at one sampled step of a recorded trajectory.
+ */
+public class TrajectoryFrame {
+    double[] x = new double[0];
+    double[] y = new double[0];
+    double[] vx = new double[0];
+    double[] vy = new double[0];
+    double[] mass = new double[0];
+    int[] id = new int[0];
+    int count;
+    double days;
+    long steps;
+
+    /**
+     * Make room for the given number of bodies, keeping existing values.
+     */
+    void resize(int n) {
+        count = n;
+        if (x.length >= n) return;
+        x = Arrays.copyOf(x, n);
+        y = Arrays.copyOf(y, n);
+        vx = Arrays.copyOf(vx, n);
+        vy = Arrays.copyOf(vy, n);
+        mass = Arrays.copyOf(mass, n);
+        id = Arrays.copyOf(id, n);
+    }
+
+    /**
+     * Overwrite this frame with the current state of a simulation.
+     */
+    void copyFrom(Simulation simulation) {
+        BodyStore bodies = simulation.getBodies();
+        int n = bodies.size();
+        resize(n);
+        System.arraycopy(bodies.x, 0, x, 0, n);
+        System.arraycopy(bodies.y, 0, y, 0, n);
+        System.arraycopy(bodies.vx, 0, vx, 0, n);
+        System.arraycopy(bodies.vy, 0, vy, 0, n);
+        System.arraycopy(bodies.mass, 0, mass, 0, n);
+        System.arraycopy(bodies.id, 0, id, 0, n);
+        days = simulation.getDays();
+        steps = simulation.getSteps();
+    }
+
+    /**
+     * Copy the bodies of this frame into a store, replacing its contents, ids included.
+     * @param bodies store to fill, must not be null
+     */
+    public void copyTo(BodyStore bodies) {
+        bodies.setSize(count);
+        System.arraycopy(x, 0, bodies.x, 0, count);
+        System.arraycopy(y, 0, bodies.y, 0, count);
+        System.arraycopy(vx, 0, bodies.vx, 0, count);
+        System.arraycopy(vy, 0, bodies.vy, 0, count);
+        System.arraycopy(mass, 0, bodies.mass, 0, count);
+        System.arraycopy(id, 0, bodies.id, 0, count);
+        bodies.reindex();
+    }
+
+    /**
+     * @return number of bodies in the frame
+     */
+    public int size() {
+        return count;
+    }
+
+    public double getDays() {
+        return days;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public double x(int i) {
+        return x[i];
+    }
+
+    public double y(int i) {
+        return y[i];
+    }
+
+    /**
+     * @param i index of a body in this frame
+     * @return id the body had in the recorded simulation, which merges do not change
+     */
+    public int id(int i) {
+        return id[i];
+    }
+}
@@ -0,0 +1,310 @@
+package gravsim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read a trajectory file written by {@link TrajectoryRecorder}, one frame at a time.
+ * <p>
+ * Only the chunk headers are read up front.  Frames are decoded on demand from
+ * the memory-mapped compressed data of one chunk at a time into a single reused
+ * {@link TrajectoryFrame}, so memory use does not depend on the length of the recording.
+ * Seeking to a time finds its chunk from the headers and decodes at most that one chunk.
+ * Files left without a footer by a recorder that never closed are read up to the
+ * last complete chunk.
+ */
+public class TrajectoryReader implements AutoCloseable {
+    private static final int COLUMNS = 5; // x, y, vx, vy, mass
+
+    private final FileChannel channel;
+    private final int version;
+    private final long sampleEvery;
+    private final int chunks;
+    private final long[] offsets;
+    private final int[] frames;
+    private final int[] bodies;
+    private final double[] firstDays;
+    private final double[] lastDays;
+    private final long[] firstStep;
+    private final long[] lengths;
+
+    private final TrajectoryFrame frame = new TrajectoryFrame();
+    private final Inflater inflater = new Inflater();
+    private final byte[] buffer = new byte[1 << 16];
+    private int position;
+    private int limit;
+    private long[][] previous = new long[COLUMNS][0];
+    private int chunk = -1;
+    private int decoded; // frames decoded from the current chunk
+    private boolean peeked; // days of the next frame already read
+    private double peekedDays;
+
+    /**
+     * Open a trajectory file and read its index.
+     * @param file file to read, must not be null
+     * @throws IOException if the file cannot be read or is not a trajectory of a known version
+     */
+    public TrajectoryReader(Path file) throws IOException {
+        if (file == null) throw new NullPointerException("file is null");
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < TrajectoryFormat.HEADER) throw new IOException(file + " is too short to be a trajectory");
+            ByteBuffer header = read(0, TrajectoryFormat.HEADER);
+            if (header.getLong() != TrajectoryFormat.MAGIC) throw new IOException(file + " is not a trajectory");
+            version = header.getInt();
+            if (version != 1 && version != TrajectoryFormat.VERSION) {
+                throw new IOException(file + " has unsupported trajectory version " + version);
+            }
+            header.getInt(); // frames per chunk
+            sampleEvery = header.getLong();
+
+            long[] found = footer(size);
+            if (found == null) found = scan(size);
+            chunks = found.length;
+            offsets = found;
+            frames = new int[chunks];
+            bodies = new int[chunks];
+            firstDays = new double[chunks];
+            lastDays = new double[chunks];
+            firstStep = new long[chunks];
+            lengths = new long[chunks];
+            for (int k = 0; k < chunks; ++k) {
+                ByteBuffer chunkHeader = read(offsets[k], TrajectoryFormat.CHUNK_HEADER);
+                if (chunkHeader.getInt() != TrajectoryFormat.CHUNK_MAGIC) throw new IOException(file + " is corrupt");
+                frames[k] = chunkHeader.getInt();
+                bodies[k] = chunkHeader.getInt();
+                chunkHeader.getInt();
+                firstDays[k] = chunkHeader.getDouble();
+                lastDays[k] = chunkHeader.getDouble();
+                firstStep[k] = chunkHeader.getLong();
+                lengths[k] = chunkHeader.getLong();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private long[] footer(long size) throws IOException {
+        if (size < TrajectoryFormat.HEADER + 12) return null;
+        ByteBuffer tail = read(size - 12, 12);
+        int count = tail.getInt();
+        if (tail.getLong() != TrajectoryFormat.FOOTER_MAGIC) return null;
+        if (count < 0 || size - 12 - 8L * count < TrajectoryFormat.HEADER) throw new IOException("corrupt footer");
+        long[] found = new long[count];
+        read(size - 12 - 8L * count, 8 * count).asLongBuffer().get(found);
+        return found;
+    }
+
+    private long[] scan(long size) throws IOException {
+        long[] found = new long[16];
+        int count = 0;
+        long at = TrajectoryFormat.HEADER;
+        while (at + TrajectoryFormat.CHUNK_HEADER <= size) {
+            ByteBuffer chunkHeader = read(at, TrajectoryFormat.CHUNK_HEADER);
+            if (chunkHeader.getInt() != TrajectoryFormat.CHUNK_MAGIC) break; // chunk still being written
+            long length = chunkHeader.getLong(TrajectoryFormat.CHUNK_HEADER - 8);
+            if (at + TrajectoryFormat.CHUNK_HEADER + length > size) break;
+            if (count == found.length) found = Arrays.copyOf(found, count * 2);
+            found[count++] = at;
+            at += TrajectoryFormat.CHUNK_HEADER + length;
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    private ByteBuffer read(long at, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, at + buffer.position()) < 0) throw new IOException("unexpected end of file");
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * @return number of chunks, each of which can be decoded on its own
+     */
+    public int getChunkCount() {
+        return chunks;
+    }
+
+    /**
+     * @return total number of frames in the file
+     */
+    public long getFrameCount() {
+        long total = 0;
+        for (int k = 0; k < chunks; ++k) {
+            total += frames[k];
+        }
+        return total;
+    }
+
+    /**
+     * @return number of steps between recorded frames
+     */
+    public long getSampleInterval() {
+        return sampleEvery;
+    }
+
+    /**
+     * @return days of the first frame, or 0 if the file has no frames
+     */
+    public double getFirstDays() {
+        return chunks == 0 ? 0 : firstDays[0];
+    }
+
+    /**
+     * @return days of the last frame, or 0 if the file has no frames
+     */
+    public double getLastDays() {
+        return chunks == 0 ? 0 : lastDays[chunks - 1];
+    }
+
+    /**
+     * @param k chunk number
+     * @return days of the first frame of that chunk
+     */
+    public double getChunkDays(int k) {
+        return firstDays[k];
+    }
+
+    /**
+     * Current frame.  It is overwritten by {@link #next()} and {@link #seek(double)}.
+     * @return frame last decoded; empty before the first one
+     */
+    public TrajectoryFrame getFrame() {
+        return frame;
+    }
+
+    /**
+     * Decode the frame after the current one.
+     * @return true if there was one, false at the end of the file
+     * @throws IOException if the data is corrupt
+     */
+    public boolean next() throws IOException {
+        if (chunk < 0 || decoded == frames[chunk]) {
+            if (chunk + 1 >= chunks) return false;
+            open(chunk + 1);
+        }
+        decodeFrame();
+        return true;
+    }
+
+    /**
+     * Move to the last frame at or before the given time, or the first frame
+     * if the time is before the start of the recording.
+     * @param days time to seek to
+     * @return false if the file has no frames
+     * @throws IOException if the data is corrupt
+     */
+    public boolean seek(double days) throws IOException {
+        if (chunks == 0) return false;
+        int lo = 0;
+        int hi = chunks - 1;
+        while (lo < hi) { // last chunk starting at or before days
+            int mid = (lo + hi + 1) >>> 1;
+            if (firstDays[mid] <= days) lo = mid;
+            else hi = mid - 1;
+        }
+        if (lo != chunk || decoded == 0 || frame.days > days) open(lo);
+        if (decoded == 0) decodeFrame();
+        while (decoded < frames[chunk] && peekDays() <= days) {
+            decodeFrame();
+        }
+        return true;
+    }
+
+    private void open(int k) throws IOException {
+        chunk = k;
+        decoded = 0;
+        peeked = false;
+        inflater.reset();
+        inflater.setInput(channel.map(FileChannel.MapMode.READ_ONLY,
+                offsets[k] + TrajectoryFormat.CHUNK_HEADER, lengths[k]));
+        position = 0;
+        limit = 0;
+        int n = bodies[k];
+        for (int c = 0; c < COLUMNS; ++c) {
+            if (previous[c].length < n) previous[c] = new long[n];
+            else Arrays.fill(previous[c], 0, n, 0L);
+        }
+        frame.resize(n);
+        for (int i = 0; i < n; ++i) {
+            long id = version == 1 ? i : readVarint();
+            if (id < 0 || id > Integer.MAX_VALUE) throw new IOException("corrupt trajectory data");
+            frame.id[i] = (int) id;
+        }
+    }
+
+    private double peekDays() throws IOException {
+        if (!peeked) {
+            peekedDays = Double.longBitsToDouble(readLong());
+            peeked = true;
+        }
+        return peekedDays;
+    }
+
+    private void decodeFrame() throws IOException {
+        double days = peekDays();
+        peeked = false;
+        int n = bodies[chunk];
+        frame.resize(n);
+        frame.days = days;
+        frame.steps = readVarint();
+        double[][] columns = {frame.x, frame.y, frame.vx, frame.vy, frame.mass};
+        for (int c = 0; c < COLUMNS; ++c) {
+            double[] column = columns[c];
+            long[] last = previous[c];
+            for (int i = 0; i < n; ++i) {
+                long bits = last[i] + TrajectoryFormat.unzigzag(readVarint());
+                last[i] = bits;
+                column[i] = Double.longBitsToDouble(bits);
+            }
+        }
+        ++decoded;
+    }
+
+    private long readVarint() throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+        throw new IOException("corrupt trajectory data");
+    }
+
+    private long readLong() throws IOException {
+        long v = 0;
+        for (int k = 0; k < 8; ++k) {
+            v |= (readByte() & 0xFFL) << (8 * k);
+        }
+        return v;
+    }
+
+    private byte readByte() throws IOException {
+        if (position == limit) {
+            try {
+                limit = inflater.inflate(buffer);
+            } catch (DataFormatException e) {
+                throw new IOException("corrupt trajectory data", e);
+            }
+            position = 0;
+            if (limit == 0) throw new IOException("trajectory chunk ends early");
+        }
+        return buffer[position++];
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+}
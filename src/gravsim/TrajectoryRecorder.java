@@ -0,0 +1,295 @@
+package gravsim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Stream sampled states of a running simulation to a chunked, compressed,
+ * columnar trajectory file (see {@link TrajectoryFormat}).
+ * <p>
+ * Sampling only copies the state into a frame from a fixed pool; encoding,
+ * compression and writing happen on a background thread.  When the writer falls
+ * behind and every frame in the pool is waiting to be written, the step loop waits
+ * for one to come free, so memory use stays bounded at the pool size.  The time
+ * spent waiting is counted so that this backpressure can be seen.
+ */
+public class TrajectoryRecorder implements AutoCloseable {
+    private static final TrajectoryFrame END = new TrajectoryFrame();
+    private static final long MAX_CHUNK_BYTES = 256L << 20;
+    private static final int COLUMNS = 5; // x, y, vx, vy, mass
+
+    private final long sampleEvery;
+    private final int framesPerChunk;
+    private final BlockingQueue<TrajectoryFrame> free;
+    private final BlockingQueue<TrajectoryFrame> filled;
+    private final Thread writer;
+    private volatile IOException failure;
+    private boolean closed;
+    private long samples;
+    private long waits;
+    private long waitNanos;
+
+    // used only by the writer thread
+    private final FileChannel channel;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final byte[] compressed = new byte[1 << 16];
+    private byte[] scratch = new byte[1 << 16];
+    private long[][] previous = new long[COLUMNS][0]; // bit patterns of the last frame
+    private long[] offsets = new long[16];
+    private int chunks;
+    private long chunkStart;
+    private int chunkFrames;
+    private int chunkBodies;
+    private int[] chunkIds = new int[0];
+    private double chunkFirstDays;
+    private double chunkLastDays;
+    private long chunkFirstStep;
+    private long chunkBytes;
+
+    /**
+     * Start recording to a file, replacing any existing one.
+     * @param file file to write, must not be null
+     * @param sampleEvery number of steps between samples, must be positive
+     * @param framesPerChunk most frames in one independently decodable chunk, must be positive
+     * @param queueCapacity number of frames that may wait to be written, must be positive
+     * @throws IOException if the file cannot be created
+     * @throws IllegalArgumentException if a count is not positive
+     */
+    public TrajectoryRecorder(Path file, long sampleEvery, int framesPerChunk, int queueCapacity) throws IOException {
+        if (file == null) throw new NullPointerException("file is null");
+        if (sampleEvery <= 0) throw new IllegalArgumentException("Sample interval must be positive");
+        if (framesPerChunk <= 0) throw new IllegalArgumentException("Frames per chunk must be positive");
+        if (queueCapacity <= 0) throw new IllegalArgumentException("Queue capacity must be positive");
+        this.sampleEvery = sampleEvery;
+        this.framesPerChunk = framesPerChunk;
+        free = new ArrayBlockingQueue<>(queueCapacity);
+        filled = new ArrayBlockingQueue<>(queueCapacity + 1); // room for END
+        for (int i = 0; i < queueCapacity; ++i) {
+            free.add(new TrajectoryFrame());
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(TrajectoryFormat.HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(TrajectoryFormat.MAGIC).putInt(TrajectoryFormat.VERSION)
+                .putInt(framesPerChunk).putLong(sampleEvery).flip();
+        writeFully(header);
+        writer = new Thread(this::run, "trajectory-recorder");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Sample the simulation if it is at a multiple of the sample interval.
+     * To be called after each step, from the thread that steps the simulation.
+     * Waits if the writer has fallen a full queue behind.
+     * @param simulation simulation to sample, must not be null
+     * @throws IOException if the background writer failed
+     * @throws IllegalStateException if the recorder was closed
+     */
+    public void afterStep(Simulation simulation) throws IOException {
+        if (closed) throw new IllegalStateException("recorder is closed");
+        if (failure != null) throw failure;
+        if (simulation.getSteps() % sampleEvery != 0) return;
+        TrajectoryFrame frame = free.poll();
+        if (frame == null) {
+            long start = System.nanoTime();
+            ++waits;
+            try {
+                while ((frame = free.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                    if (failure != null) throw failure;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for the recorder", e);
+            } finally {
+                waitNanos += System.nanoTime() - start;
+            }
+        }
+        frame.copyFrom(simulation);
+        filled.add(frame); // never full: there are no more frames than its capacity
+        ++samples;
+    }
+
+    /**
+     * @return number of frames sampled so far
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return number of times sampling had to wait for the writer
+     */
+    public long getWaits() {
+        return waits;
+    }
+
+    /**
+     * @return total time sampling spent waiting for the writer, in nanoseconds
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * Write all frames sampled so far, finish the file with its index and close it.
+     * @throws IOException if writing failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        filled.add(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) throw failure;
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                TrajectoryFrame frame = filled.take();
+                if (frame == END) break;
+                append(frame);
+                free.add(frame);
+            }
+            if (chunkFrames > 0) finishChunk();
+            ByteBuffer footer = ByteBuffer.allocate(8 * chunks + 4 + 8).order(ByteOrder.LITTLE_ENDIAN);
+            for (int k = 0; k < chunks; ++k) {
+                footer.putLong(offsets[k]);
+            }
+            footer.putInt(chunks).putLong(TrajectoryFormat.FOOTER_MAGIC).flip();
+            writeFully(footer);
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            failure = new IOException("recorder interrupted", e);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+    }
+
+    private void append(TrajectoryFrame frame) throws IOException {
+        if (chunkFrames > 0 && (chunkFrames == framesPerChunk || frame.count != chunkBodies
+                || chunkBytes > MAX_CHUNK_BYTES
+                || !Arrays.equals(frame.id, 0, chunkBodies, chunkIds, 0, chunkBodies))) {
+            finishChunk();
+        }
+        if (chunkFrames == 0) startChunk(frame);
+        int n = frame.count;
+        ensureScratch(8 + 10);
+        int p = putLong(scratch, 0, Double.doubleToRawLongBits(frame.days));
+        p = putVarint(scratch, p, frame.steps);
+        deflate(p);
+        double[][] columns = {frame.x, frame.y, frame.vx, frame.vy, frame.mass};
+        ensureScratch(10 * n);
+        for (int c = 0; c < columns.length; ++c) {
+            double[] column = columns[c];
+            long[] last = previous[c];
+            p = 0;
+            for (int i = 0; i < n; ++i) {
+                long bits = Double.doubleToRawLongBits(column[i]);
+                p = putVarint(scratch, p, TrajectoryFormat.zigzag(bits - last[i]));
+                last[i] = bits;
+            }
+            deflate(p);
+        }
+        ++chunkFrames;
+        chunkLastDays = frame.days;
+    }
+
+    private void startChunk(TrajectoryFrame frame) throws IOException {
+        chunkStart = channel.position();
+        writeFully(ByteBuffer.allocate(TrajectoryFormat.CHUNK_HEADER)); // filled in by finishChunk
+        if (chunks == offsets.length) offsets = Arrays.copyOf(offsets, chunks * 2);
+        offsets[chunks++] = chunkStart;
+        chunkBodies = frame.count;
+        chunkFirstDays = frame.days;
+        chunkFirstStep = frame.steps;
+        chunkBytes = 0;
+        for (int c = 0; c < previous.length; ++c) {
+            if (previous[c].length < chunkBodies) previous[c] = new long[chunkBodies];
+            else Arrays.fill(previous[c], 0, chunkBodies, 0L); // keyframe: differences from zero
+        }
+        if (chunkIds.length < chunkBodies) chunkIds = new int[chunkBodies];
+        System.arraycopy(frame.id, 0, chunkIds, 0, chunkBodies);
+        ensureScratch(5 * chunkBodies);
+        int p = 0;
+        for (int i = 0; i < chunkBodies; ++i) {
+            p = putVarint(scratch, p, chunkIds[i]);
+        }
+        deflate(p);
+    }
+
+    private void finishChunk() throws IOException {
+        deflater.finish();
+        while (!deflater.finished()) {
+            drain();
+        }
+        deflater.reset();
+        ByteBuffer header = ByteBuffer.allocate(TrajectoryFormat.CHUNK_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(TrajectoryFormat.CHUNK_MAGIC).putInt(chunkFrames).putInt(chunkBodies).putInt(0)
+                .putDouble(chunkFirstDays).putDouble(chunkLastDays).putLong(chunkFirstStep).putLong(chunkBytes).flip();
+        long position = chunkStart;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+        chunkFrames = 0;
+    }
+
+    private void deflate(int length) throws IOException {
+        deflater.setInput(scratch, 0, length);
+        while (!deflater.needsInput()) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        int k = deflater.deflate(compressed);
+        if (k == 0) return;
+        writeFully(ByteBuffer.wrap(compressed, 0, k));
+        chunkBytes += k;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void ensureScratch(int size) {
+        if (scratch.length < size) scratch = new byte[size];
+    }
+
+    private static int putVarint(byte[] buffer, int p, long v) {
+        while ((v & ~0x7FL) != 0) {
+            buffer[p++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buffer[p++] = (byte) v;
+        return p;
+    }
+
+    private static int putLong(byte[] buffer, int p, long v) {
+        for (int k = 0; k < 8; ++k) {
+            buffer[p++] = (byte) (v >>> (8 * k));
+        }
+        return p;
+    }
+}
@@ -0,0 +1,117 @@
+package gravsim;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid of cells over the bounding box of a set of points, for finding
+ * the points inside a rectangle without looking at all of them.  Building it is
+ * a counting sort of the point indices by cell, in reused arrays, so after the
+ * first few builds it allocates nothing.
+ */
+public class UniformGrid {
+    private static final int POINTS_PER_CELL = 8;
+    private static final int MAX_CELLS_PER_SIDE = 1024;
+
+    private double minX;
+    private double minY;
+    private double maxX;
+    private double maxY;
+    private double cellWidth;
+    private double cellHeight;
+    private int columns;
+    private int rows;
+    private int[] cellStart = new int[1]; // points of cell c are order[cellStart[c]] .. order[cellStart[c + 1] - 1]
+    private int[] cellOf = new int[0];
+    private int[] order = new int[0];
+    private int[] results = new int[0];
+
+    /**
+     * Sort the first n points into cells.
+     * @param x x coordinates, must not be null
+     * @param y y coordinates, must not be null
+     * @param n number of points to use
+     */
+    public void build(double[] x, double[] y, int n) {
+        minX = Double.POSITIVE_INFINITY;
+        minY = Double.POSITIVE_INFINITY;
+        maxX = Double.NEGATIVE_INFINITY;
+        maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; ++i) {
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        int side = (int) Math.min(MAX_CELLS_PER_SIDE, Math.max(1, Math.sqrt((double) n / POINTS_PER_CELL)));
+        columns = side;
+        rows = side;
+        cellWidth = Math.max((maxX - minX) / columns, Double.MIN_NORMAL);
+        cellHeight = Math.max((maxY - minY) / rows, Double.MIN_NORMAL);
+        int cells = columns * rows;
+        if (cellStart.length < cells + 1) cellStart = new int[cells + 1];
+        else Arrays.fill(cellStart, 0, cells + 1, 0);
+        if (cellOf.length < n) {
+            cellOf = new int[n];
+            order = new int[n];
+        }
+        for (int i = 0; i < n; ++i) {
+            int c = column(x[i]) + columns * row(y[i]); // NaN positions land in cell 0
+            cellOf[i] = c;
+            ++cellStart[c + 1];
+        }
+        for (int c = 0; c < cells; ++c) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        for (int i = 0; i < n; ++i) { // moves each start to the end of its cell ...
+            order[cellStart[cellOf[i]]++] = i;
+        }
+        for (int c = cells - 1; c > 0; --c) { // ... which is the start of the next one
+            cellStart[c] = cellStart[c - 1];
+        }
+        cellStart[0] = 0;
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) ((x - minX) / cellWidth)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) ((y - minY) / cellHeight)));
+    }
+
+    /**
+     * Find the points in the cells that overlap a rectangle.  Points in cells on its
+     * edge may lie a little outside it.
+     * @return number of points found; their indices are the first entries of {@link #getResults()}
+     */
+    public int query(double x0, double y0, double x1, double y1) {
+        if (x1 < minX || y1 < minY || x0 > maxX || y0 > maxY) return 0; // not the cells' far edges, which round
+        int c0 = column(x0);
+        int c1 = column(x1);
+        int r0 = row(y0);
+        int r1 = row(y1);
+        int found = 0;
+        for (int r = r0; r <= r1; ++r) {
+            int from = cellStart[r * columns + c0];
+            int to = cellStart[r * columns + c1 + 1];
+            if (results.length < found + to - from) results = Arrays.copyOf(results, Math.max(2 * results.length, found + to - from));
+            System.arraycopy(order, from, results, found, to - from);
+            found += to - from;
+        }
+        return found;
+    }
+
+    /**
+     * @return whether every point lies inside the rectangle, so that a query would return them all
+     */
+    public boolean within(double x0, double y0, double x1, double y1) {
+        return x0 <= minX && y0 <= minY && x1 >= maxX && y1 >= maxY;
+    }
+
+    /**
+     * @return indices found by the last {@link #query}
+     */
+    public int[] getResults() {
+        return results;
+    }
+}
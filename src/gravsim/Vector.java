@@ -1,4 +1,6 @@
 //Haitam Chouiekh
+package gravsim;
+
 /**
  * An immutable class representing a two dimensional vector
  * in Cartesian space.
@@ -0,0 +1,85 @@
+package gravsim;
+
+import java.util.Arrays;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link DirectForceSolver} with its inner loop written with the incubating
+ * Vector API, so that one instruction works on as many bodies as the CPU's widest
+ * registers hold (4 doubles with AVX2, 8 with AVX-512).
+ * <p>
+ * Each lane holds a different target body, and every source body is broadcast to
+ * all lanes.  A lane therefore adds up exactly the same terms in exactly the same
+ * order as the scalar loop, with no reduction across lanes at the end, and the
+ * result is the same to the last bit.  The only difference is that a pair at zero
+ * distance (a body and itself, or two bodies on the same spot without softening)
+ * contributes nothing instead of being skipped or giving NaN.
+ * <p>
+ * Referring to this class needs the {@code jdk.incubator.vector} module, which the
+ * JVM only loads when asked to with {@code --add-modules}; use
+ * {@link DirectForceSolver#vectorized(double)}, which falls back to the scalar
+ * solver when the module is missing.
+ */
+class VectorDirectForceSolver implements ForceSolver {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private final double softening2;
+
+    VectorDirectForceSolver(double softening) {
+        if (!(softening >= 0)) throw new IllegalArgumentException("Softening cannot be negative");
+        this.softening2 = softening * softening;
+    }
+
+    /**
+     * @return number of bodies worked on by one instruction
+     */
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override //required
+    public void accelerate(BodyStore bodies, int from, int to) {
+        double[] x = bodies.x, y = bodies.y, mass = bodies.mass;
+        double e2 = softening2;
+        int n = bodies.size();
+        int lanes = SPECIES.length();
+        int i = from;
+        for (; i + lanes <= to; i += lanes) {
+            DoubleVector xi = DoubleVector.fromArray(SPECIES, x, i);
+            DoubleVector yi = DoubleVector.fromArray(SPECIES, y, i);
+            // the sums are kept in the arrays rather than in vector variables: C2 in JDK 17
+            // allocates a box for a vector that is still live after its loop, and the
+            // extra load and store are hidden behind the division
+            Arrays.fill(bodies.ax, i, i + lanes, 0);
+            Arrays.fill(bodies.ay, i, i + lanes, 0);
+            for (int j = 0; j < n; ++j) {
+                DoubleVector dx = DoubleVector.broadcast(SPECIES, x[j]).sub(xi);
+                DoubleVector dy = DoubleVector.broadcast(SPECIES, y[j]).sub(yi);
+                DoubleVector r2 = dx.mul(dx).add(dy.mul(dy)).add(e2);
+                DoubleVector s = DoubleVector.broadcast(SPECIES, Planet.G * mass[j]).div(r2.mul(r2.sqrt()));
+                VectorMask<Double> apart = r2.compare(VectorOperators.GT, 0);
+                s = s.blend(0, apart.not()); // adding 0 leaves a sum unchanged, like skipping the term
+                DoubleVector.fromArray(SPECIES, bodies.ax, i).add(dx.mul(s)).intoArray(bodies.ax, i);
+                DoubleVector.fromArray(SPECIES, bodies.ay, i).add(dy.mul(s)).intoArray(bodies.ay, i);
+            }
+        }
+        for (; i < to; ++i) { // the few bodies left over, as DirectForceSolver does them
+            double ax = 0, ay = 0;
+            for (int j = 0; j < n; ++j) {
+                if (j == i) continue;
+                double dx = x[j] - x[i];
+                double dy = y[j] - y[i];
+                double r2 = dx*dx + dy*dy + e2;
+                double s = Planet.G * mass[j] / (r2 * Math.sqrt(r2));
+                ax += dx * s;
+                ay += dy * s;
+            }
+            bodies.ax[i] = ax;
+            bodies.ay[i] = ay;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package gravsim;
+
+/**
+ * Second-order symplectic Velocity Verlet in kick-drift-kick form.
+ * The accelerations at the end of one step are kept in the store and used to
+ * start the next, so there is one force evaluation per step.
+ */
+public class VelocityVerlet implements Integrator {
+    private BodyStore primed; // store whose ax/ay match its current positions
+
+    @Override //required
+    public void step(BodyStore bodies, ForceSolver solver, double dt) {
+        double[] x = bodies.x, y = bodies.y, vx = bodies.vx, vy = bodies.vy;
+        double[] ax = bodies.ax, ay = bodies.ay;
+        int n = bodies.size();
+        if (primed != bodies) {
+            solver.computeAccelerations(bodies);
+            ax = bodies.ax;
+            ay = bodies.ay;
+            primed = bodies;
+        }
+        double h = dt / 2;
+        for (int i = 0; i < n; ++i) {
+            vx[i] += ax[i] * h;
+            vy[i] += ay[i] * h;
+            x[i] += vx[i] * dt;
+            y[i] += vy[i] * dt;
+        }
+        solver.computeAccelerations(bodies);
+        for (int i = 0; i < n; ++i) {
+            vx[i] += ax[i] * h;
+            vy[i] += ay[i] * h;
+        }
+    }
+
+    @Override //implementation
+    public void reset() {
+        primed = null;
+    }
+}
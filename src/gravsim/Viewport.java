@@ -0,0 +1,83 @@
+package gravsim;
+
+/**
+ * Mapping from simulation coordinates to screen pixels: a uniform scale and
+ * an offset, changed by panning and zooming.  The default maps each simulation
+ * unit to one pixel with the origins together, as the display has always done.
+ * Every change increments a version number, so that anything drawn for an
+ * earlier mapping can tell it is out of date.
+ */
+public class Viewport {
+    private double originX; // simulation coordinates at the top left corner of the screen
+    private double originY;
+    private double scale = 1; // pixels per simulation unit
+    private long version;
+
+    public double screenX(double x) {
+        return (x - originX) * scale;
+    }
+
+    public double screenY(double y) {
+        return (y - originY) * scale;
+    }
+
+    public double worldX(double sx) {
+        return originX + sx / scale;
+    }
+
+    public double worldY(double sy) {
+        return originY + sy / scale;
+    }
+
+    /**
+     * @return pixels per simulation unit
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * @return number of changes made so far
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Move the view so that the picture shifts by the given number of pixels.
+     * @param dx pixels to the right
+     * @param dy pixels down
+     */
+    public void pan(double dx, double dy) {
+        originX -= dx / scale;
+        originY -= dy / scale;
+        ++version;
+    }
+
+    /**
+     * Zoom in or out, keeping the point under the given pixel in place.
+     * @param factor magnification to apply; above 1 zooms in.  Must be positive.
+     * @param sx x coordinate of the fixed pixel
+     * @param sy y coordinate of the fixed pixel
+     * @throws IllegalArgumentException if factor is not positive
+     */
+    public void zoom(double factor, double sx, double sy) {
+        if (!(factor > 0)) throw new IllegalArgumentException("Zoom factor must be positive");
+        double x = worldX(sx);
+        double y = worldY(sy);
+        scale *= factor;
+        originX = x - sx / scale;
+        originY = y - sy / scale;
+        ++version;
+    }
+
+    /**
+     * Go back to one pixel per unit with the origins together.
+     */
+    public void reset() {
+        originX = 0;
+        originY = 0;
+        scale = 1;
+        ++version;
+    }
+}
@@ -0,0 +1,45 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class BarnesHutSolverTest {
+    private static BodyStore cluster(int n) {
+        BodyStore bodies = new BodyStore(n);
+        InitialConditions.plummer(bodies, n, 11, 500, 500, 0, 0, 20, 100);
+        return bodies;
+    }
+
+    @Test
+    public void openingAngleZeroIsTheDirectSum() {
+        BodyStore bodies = cluster(500);
+        BodyStore direct = new BodyStore(bodies.size());
+        direct.copyFrom(bodies);
+        new BarnesHutSolver(0, 1).computeAccelerations(bodies);
+        new DirectForceSolver(1).computeAccelerations(direct);
+        for (int i = 0; i < bodies.size(); ++i) {
+            double scale = Math.hypot(direct.ax[i], direct.ay[i]);
+            assertEquals(direct.ax[i], bodies.ax[i], 1e-12 * scale);
+            assertEquals(direct.ay[i], bodies.ay[i], 1e-12 * scale);
+        }
+    }
+
+    @Test
+    public void listedBodiesMatchARange() {
+        BodyStore bodies = cluster(300);
+        BarnesHutSolver solver = new BarnesHutSolver(0.5);
+        solver.computeAccelerations(bodies);
+        double[] ax = bodies.ax.clone(), ay = bodies.ay.clone();
+        int[] targets = {299, 0, 17, 150, 151};
+        for (int i : targets) {
+            bodies.ax[i] = bodies.ay[i] = Double.NaN;
+        }
+        solver.accelerate(bodies, targets, targets.length - 1);
+        for (int k = 0; k < targets.length - 1; ++k) {
+            assertEquals(ax[targets[k]], bodies.ax[targets[k]], 0);
+            assertEquals(ay[targets[k]], bodies.ay[targets[k]], 0);
+        }
+        assertEquals(Double.NaN, bodies.ax[151], 0, "only count entries are computed");
+    }
+}
@@ -0,0 +1,87 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Color;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Stepping a {@link BodyStore} must follow the same trajectories as the
+ * original object path, where each {@link Planet} sums {@link Planet#gravForceOn}
+ * over the others, applies it and moves.
+ */
+public class BodyStoreTest {
+    private static final int STEPS = 2000;
+    private static final double TOLERANCE = 1e-9;
+
+    private static Planet[] solarSystem() {
+        BodyStore initial = SolarSystem.create();
+        Planet[] planets = new Planet[initial.size()];
+        for (int i = 0; i < planets.length; ++i) {
+            planets[i] = new Planet(SolarSystem.NAMES[i], new Point(initial.x[i], initial.y[i]),
+                    new Vector(initial.vx[i], initial.vy[i]), initial.mass[i], Color.WHITE, SolarSystem.RADII[i]);
+        }
+        return planets;
+    }
+
+    /**
+     * One step of the object path, as ParticleSimulation.move() did it.
+     */
+    private static void stepObjects(LinkedCollection<Planet> planets) {
+        for (Planet p : planets) {
+            Vector force = new Vector();
+            for (Planet other : planets) {
+                if (other == p) continue;
+                force = force.add(other.gravForceOn(p));
+            }
+            p.applyForce(force);
+        }
+        for (Planet p : planets) {
+            p.move();
+        }
+    }
+
+    @Test
+    public void storeMatchesObjectPath() {
+        LinkedCollection<Planet> objects = new LinkedCollection<>();
+        for (Planet p : solarSystem()) {
+            objects.add(p);
+        }
+        Planet[] views = solarSystem();
+        BodyStore bodies = new BodyStore(views.length);
+        for (Planet p : views) {
+            p.bind(bodies);
+        }
+        Simulation simulation = new Simulation(bodies);
+
+        for (int s = 0; s < STEPS; ++s) {
+            stepObjects(objects);
+            simulation.step();
+        }
+
+        int i = 0;
+        for (Planet p : objects) {
+            Planet view = views[i++];
+            assertEquals(p.getPosition().x(), view.getPosition().x(), TOLERANCE, p.getName() + " x");
+            assertEquals(p.getPosition().y(), view.getPosition().y(), TOLERANCE, p.getName() + " y");
+            assertEquals(p.getVelocity().dx(), view.getVelocity().dx(), TOLERANCE, p.getName() + " vx");
+            assertEquals(p.getVelocity().dy(), view.getVelocity().dy(), TOLERANCE, p.getName() + " vy");
+        }
+    }
+
+    @Test
+    public void viewsReadAndWriteTheStore() {
+        Planet[] views = solarSystem();
+        BodyStore bodies = new BodyStore(views.length);
+        for (Planet p : views) {
+            p.bind(bodies);
+        }
+        views[3].move();
+        views[3].applyForce(new Vector(2 * bodies.mass[3], 0));
+        assertEquals(bodies.x[3], views[3].getPosition().x(), 0);
+        assertEquals(bodies.y[3], views[3].getPosition().y(), 0);
+        assertEquals(0.7 + 2, bodies.vx[3], 1e-15);
+        assertEquals(0.7 + 2, views[3].getVelocity().dx(), 1e-15);
+    }
+}
@@ -0,0 +1,174 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CheckpointTest {
+    private static final int N = 300;
+    private static final long STEPS = 40, SAVED_AT = 17;
+    private static final double DT = 0.5, SOFTENING = 1;
+
+    @TempDir
+    Path directory;
+
+    private static Simulation cluster(Integrator integrator) {
+        BodyStore bodies = new BodyStore(N);
+        InitialConditions.plummer(bodies, N, 5, 0, 0, 0, 0, 50, 100);
+        for (int i = 0; i < N; ++i) {
+            bodies.radius[i] = 0.01 * (i % 7);
+        }
+        bodies.remove(3); // ids no longer in index order
+        bodies.remove(100);
+        return new Simulation(bodies, new DirectForceSolver(SOFTENING), integrator, DT);
+    }
+
+    private static void assertSameBodies(BodyStore expected, BodyStore actual) {
+        int n = expected.size();
+        assertEquals(n, actual.size());
+        assertArrayEquals(Arrays.copyOf(expected.x, n), Arrays.copyOf(actual.x, n));
+        assertArrayEquals(Arrays.copyOf(expected.y, n), Arrays.copyOf(actual.y, n));
+        assertArrayEquals(Arrays.copyOf(expected.vx, n), Arrays.copyOf(actual.vx, n));
+        assertArrayEquals(Arrays.copyOf(expected.vy, n), Arrays.copyOf(actual.vy, n));
+        assertArrayEquals(Arrays.copyOf(expected.mass, n), Arrays.copyOf(actual.mass, n));
+        assertArrayEquals(Arrays.copyOf(expected.radius, n), Arrays.copyOf(actual.radius, n));
+        for (int i = 0; i < n; ++i) {
+            assertEquals(expected.id(i), actual.id(i));
+        }
+    }
+
+    @Test
+    public void roundTripIsExact() throws IOException {
+        Simulation simulation = cluster(new BlockTimestepIntegrator());
+        for (int s = 0; s < 3; ++s) {
+            simulation.step();
+        }
+        Checkpoint saved = Checkpoint.of(simulation);
+        Path file = directory.resolve("run.ckpt");
+        saved.write(file);
+        Checkpoint read = Checkpoint.read(file);
+        assertSameBodies(simulation.getBodies(), read.getBodies());
+        assertEquals(simulation.getDays(), read.getDays(), 0);
+        assertEquals(3, read.getSteps());
+        assertEquals(DT, read.getTimeStep(), 0);
+        assertEquals(1, read.integratorState.length);
+        assertArrayEquals(saved.integratorState[0], read.integratorState[0]);
+        assertTrue(Files.notExists(directory.resolve("run.ckpt.tmp")));
+    }
+
+    /**
+     * Version 1 had no radius or id columns; the file is put together by hand.
+     */
+    @Test
+    public void readsVersionOne() throws IOException {
+        int n = 3;
+        ByteBuffer buffer = ByteBuffer.allocate(40 + 5 * 8 * n + 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(Checkpoint.MAGIC).putInt(1).putInt(n).putDouble(7.5).putLong(12).putDouble(0.25);
+        for (int c = 0; c < 5; ++c) {
+            for (int i = 0; i < n; ++i) {
+                buffer.putDouble(10 * c + i + 1);
+            }
+        }
+        buffer.putInt(0);
+        Path file = directory.resolve("v1.ckpt");
+        Files.write(file, buffer.array());
+
+        Checkpoint read = Checkpoint.read(file);
+        BodyStore bodies = read.getBodies();
+        assertEquals(n, bodies.size());
+        assertEquals(7.5, read.getDays(), 0);
+        assertEquals(12, read.getSteps());
+        assertEquals(0.25, read.getTimeStep(), 0);
+        for (int i = 0; i < n; ++i) {
+            assertEquals(i + 1, bodies.x[i], 0);
+            assertEquals(i + 11, bodies.y[i], 0);
+            assertEquals(i + 21, bodies.vx[i], 0);
+            assertEquals(i + 31, bodies.vy[i], 0);
+            assertEquals(i + 41, bodies.mass[i], 0);
+            assertEquals(0, bodies.radius[i], 0);
+            assertEquals(i, bodies.id(i));
+        }
+        assertEquals(0, read.integratorState.length);
+    }
+
+    private void assertRestoredRunMatches(Supplier<Integrator> integrators) throws IOException {
+        Simulation whole = cluster(integrators.get());
+        Simulation first = cluster(integrators.get());
+        for (long s = 0; s < SAVED_AT; ++s) {
+            first.step();
+        }
+        Path file = directory.resolve("restart.ckpt");
+        Checkpoint.of(first).write(file);
+        Simulation rest = Checkpoint.read(file).restore(new DirectForceSolver(SOFTENING), integrators.get());
+        assertEquals(SAVED_AT, rest.getSteps());
+        for (long s = SAVED_AT; s < STEPS; ++s) {
+            rest.step();
+        }
+        for (long s = 0; s < STEPS; ++s) {
+            whole.step();
+        }
+        assertSameBodies(whole.getBodies(), rest.getBodies());
+        assertEquals(whole.getDays(), rest.getDays(), 0);
+        assertEquals(whole.getSteps(), rest.getSteps());
+    }
+
+    @Test
+    public void restoredVerletRunIsExact() throws IOException {
+        assertRestoredRunMatches(VelocityVerlet::new);
+    }
+
+    @Test
+    public void restoredYoshidaRunIsExact() throws IOException {
+        assertRestoredRunMatches(Yoshida4::new);
+    }
+
+    /**
+     * The block integrator chooses each body's sub-step from the change of its
+     * acceleration over its previous step, so that estimate has to come back too.
+     */
+    @Test
+    public void restoredBlockTimestepRunIsExact() throws IOException {
+        BlockTimestepIntegrator check = new BlockTimestepIntegrator();
+        Simulation simulation = cluster(check);
+        simulation.step();
+        assertTrue(check.getLevelHistogram(simulation.getBodies()).length > 1, "the scene uses more than one level");
+        assertRestoredRunMatches(BlockTimestepIntegrator::new);
+    }
+
+    @Test
+    public void rejectsBrokenFiles() throws IOException {
+        Path file = directory.resolve("broken.ckpt");
+        Checkpoint.of(cluster(new VelocityVerlet())).write(file);
+        long size = Files.size(file);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 3), 8);
+        }
+        IOException version = assertThrows(IOException.class, () -> Checkpoint.read(file));
+        assertTrue(version.getMessage().contains("version 3"), version.getMessage());
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, Checkpoint.VERSION), 8);
+            channel.truncate(size - 100);
+        }
+        IOException truncated = assertThrows(IOException.class, () -> Checkpoint.read(file));
+        assertTrue(truncated.getMessage().contains("truncated"), truncated.getMessage());
+
+        Files.write(file, new byte[10]);
+        assertThrows(IOException.class, () -> Checkpoint.read(file));
+    }
+}
@@ -0,0 +1,113 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+public class CollisionHandlerTest {
+    private static BodyStore scattered(int n, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        BodyStore bodies = new BodyStore(n);
+        for (int i = 0; i < n; ++i) {
+            double radius = random.nextInt(4) == 0 ? 0 : random.nextDouble(0.5, 4);
+            bodies.add(random.nextDouble(-200, 200), random.nextDouble(-200, 200),
+                    random.nextDouble(-1, 1), random.nextDouble(-1, 1), random.nextDouble(0.1, 2), radius);
+        }
+        return bodies;
+    }
+
+    private static double[] momentum(BodyStore bodies) {
+        double px = 0, py = 0, m = 0;
+        for (int i = 0; i < bodies.size(); ++i) {
+            px += bodies.mass[i] * bodies.vx[i];
+            py += bodies.mass[i] * bodies.vy[i];
+            m += bodies.mass[i];
+        }
+        return new double[] {px, py, m};
+    }
+
+    @Test
+    public void broadPhaseFindsTheSamePairsAsBruteForce() {
+        BodyStore bodies = scattered(3000, 1);
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < bodies.size(); ++i) {
+            for (int j = i + 1; j < bodies.size(); ++j) {
+                if (bodies.radius[i] <= 0 || bodies.radius[j] <= 0) continue;
+                double dx = bodies.x[j] - bodies.x[i], dy = bodies.y[j] - bodies.y[i];
+                double reach = bodies.radius[i] + bodies.radius[j];
+                if (dx*dx + dy*dy < reach * reach) expected.add((long) i << 32 | j);
+            }
+        }
+        SpatialHash hash = new SpatialHash();
+        int found = hash.findPairs(bodies);
+        Set<Long> actual = new HashSet<>();
+        for (int k = 0; k < found; ++k) {
+            assertTrue(hash.getFirst()[k] < hash.getSecond()[k]);
+            actual.add((long) hash.getFirst()[k] << 32 | hash.getSecond()[k]);
+        }
+        assertTrue(expected.size() > 10);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void mergingConservesMassAndMomentum() {
+        BodyStore bodies = scattered(3000, 2);
+        double[] before = momentum(bodies);
+        int resolved = new CollisionHandler(CollisionHandler.Response.MERGE).resolve(bodies);
+        double[] after = momentum(bodies);
+        assertTrue(resolved > 0);
+        assertEquals(3000 - resolved, bodies.size());
+        assertEquals(before[0], after[0], 1e-12 * before[2]);
+        assertEquals(before[1], after[1], 1e-12 * before[2]);
+        assertEquals(before[2], after[2], 1e-12 * before[2]);
+    }
+
+    @Test
+    public void elasticBounceConservesMomentumAndEnergy() {
+        BodyStore bodies = new BodyStore(2);
+        bodies.add(0, 0, 1, 0.2, 2, 1);
+        bodies.add(1.5, 0.5, -1, 0, 1, 1);
+        double[] before = momentum(bodies);
+        double energy = 0.5 * (2 * (1 + 0.04) + 1 * 1);
+        assertEquals(1, new CollisionHandler(CollisionHandler.Response.BOUNCE, 1).resolve(bodies));
+        double[] after = momentum(bodies);
+        assertEquals(before[0], after[0], 1e-14);
+        assertEquals(before[1], after[1], 1e-14);
+        double e = 0;
+        for (int i = 0; i < 2; ++i) {
+            e += 0.5 * bodies.mass[i] * (bodies.vx[i] * bodies.vx[i] + bodies.vy[i] * bodies.vy[i]);
+        }
+        assertEquals(energy, e, 1e-14);
+        assertTrue(bodies.x[1] - bodies.x[0] > 0, "the bodies are pushed apart");
+    }
+
+    @Test
+    public void removalKeepsIds() {
+        BodyStore bodies = scattered(10, 3);
+        int lastId = bodies.id(9);
+        double lastX = bodies.x[9];
+        int removedId = bodies.id(4);
+        bodies.remove(4);
+        assertEquals(9, bodies.size());
+        assertEquals(-1, bodies.indexOf(removedId));
+        assertEquals(4, bodies.indexOf(lastId), "the last body takes the removed one's place");
+        assertEquals(lastX, bodies.x[4], 0);
+    }
+
+    @Test
+    public void softeningKeepsForcesFinite() {
+        BodyStore bodies = new BodyStore(2);
+        bodies.add(0, 0, 0, 0, 1, 0);
+        bodies.add(0, 0, 0, 0, 1, 0);
+        new DirectForceSolver(0.5).computeAccelerations(bodies);
+        assertEquals(0, bodies.ax[0], 0);
+        bodies.x[1] = 1e-9;
+        new DirectForceSolver(0.5).computeAccelerations(bodies);
+        assertTrue(Double.isFinite(bodies.ax[0]) && bodies.ax[0] > 0 && bodies.ax[0] < 1e-7);
+    }
+}
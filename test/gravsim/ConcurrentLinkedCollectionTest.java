@@ -0,0 +1,172 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Gradle runs tests with assertions enabled, so the invariant is checked now
+ * and then along the way.
+ */
+public class ConcurrentLinkedCollectionTest {
+    private static final int PRODUCERS = 2, CONSUMERS = 2;
+    private static final long STRESS_MILLIS = 1500;
+
+    private static int producer(long element) {
+        return (int) (element >>> 40);
+    }
+
+    private static long number(long element) {
+        return element & ((1L << 40) - 1);
+    }
+
+    @Test
+    public void evictsInOrder() {
+        ConcurrentLinkedCollection<Integer> c = new ConcurrentLinkedCollection<>();
+        assertNull(c.poll());
+        assertNull(c.peek());
+        for (int i = 0; i < 5; ++i) {
+            c.add(i);
+        }
+        assertEquals(5, c.size());
+        assertEquals(0, c.peek());
+        assertEquals(0, c.poll());
+        assertEquals(List.of(1, 2, 3, 4), new ArrayList<>(c));
+        c.clear();
+        assertTrue(c.isEmpty());
+        assertEquals(0, c.size());
+    }
+
+    /**
+     * An append links its node before it moves the tail, and another thread may
+     * create an iterator in between: the element is in the collection then, so the
+     * iterator must see it.  The lagging tail is set up by hand.
+     */
+    @Test
+    public void iteratorSeesPastALaggingTail() throws ReflectiveOperationException {
+        ConcurrentLinkedCollection<Integer> c = new ConcurrentLinkedCollection<>();
+        c.add(1);
+        c.add(2);
+        c.add(3);
+        Field head = ConcurrentLinkedCollection.class.getDeclaredField("head");
+        Field tail = ConcurrentLinkedCollection.class.getDeclaredField("tail");
+        head.setAccessible(true);
+        tail.setAccessible(true);
+        Object dummy = head.get(c);
+        Field next = dummy.getClass().getDeclaredField("next");
+        next.setAccessible(true);
+        tail.set(c, next.get(next.get(dummy))); // the node of 2, as if 3 had just been linked
+
+        assertEquals(List.of(1, 2, 3), new ArrayList<>(c));
+        c.add(4); // moves the tail on before it links
+        assertEquals(List.of(1, 2, 3, 4), new ArrayList<>(c));
+    }
+
+    @Test
+    public void iteratorSurvivesEviction() {
+        ConcurrentLinkedCollection<Integer> c = new ConcurrentLinkedCollection<>();
+        for (int i = 0; i < 4; ++i) {
+            c.add(i);
+        }
+        Iterator<Integer> it = c.iterator(); // has read 0 already, as the next element
+        c.poll();
+        c.poll();
+        c.poll();
+        c.add(4);
+        List<Integer> seen = new ArrayList<>();
+        it.forEachRemaining(seen::add);
+        assertEquals(List.of(0, 3), seen, "evicted elements are skipped and later ones not seen");
+    }
+
+    /**
+     * Producers append numbered elements, consumers evict them and a reader iterates
+     * all the while.  Every element must be evicted exactly once, in each producer's
+     * order, and iterators must see each producer's elements in order too.
+     */
+    @Test
+    public void producersConsumersAndAReader() throws InterruptedException {
+        ConcurrentLinkedCollection<Long> c = new ConcurrentLinkedCollection<>();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger producing = new AtomicInteger(PRODUCERS);
+        AtomicLong appended = new AtomicLong(), evicted = new AtomicLong(), sumIn = new AtomicLong(),
+                sumOut = new AtomicLong(), walks = new AtomicLong();
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; ++p) {
+            long tag = (long) p << 40;
+            threads.add(new Thread(() -> {
+                long n = 0;
+                while (!stop.get()) {
+                    c.add(tag | n);
+                    sumIn.addAndGet(tag | n);
+                    ++n;
+                }
+                appended.addAndGet(n);
+                producing.decrementAndGet();
+            }, "producer " + p));
+        }
+        for (int k = 0; k < CONSUMERS; ++k) {
+            threads.add(new Thread(() -> {
+                long[] seen = new long[PRODUCERS];
+                Arrays.fill(seen, -1);
+                while (true) {
+                    Long e = c.poll();
+                    if (e == null) {
+                        if (producing.get() == 0 && c.isEmpty()) break;
+                        Thread.yield();
+                        continue;
+                    }
+                    int p = producer(e);
+                    if (number(e) <= seen[p]) failures.add("consumer saw " + number(e) + " of producer " + p + " after " + seen[p]);
+                    seen[p] = number(e);
+                    sumOut.addAndGet(e);
+                    evicted.incrementAndGet();
+                }
+            }, "consumer " + k));
+        }
+        threads.add(new Thread(() -> {
+            while (!stop.get()) {
+                long[] seen = new long[PRODUCERS];
+                Arrays.fill(seen, -1);
+                for (Long e : c) {
+                    int p = producer(e);
+                    if (number(e) <= seen[p]) failures.add("iterator saw " + number(e) + " of producer " + p + " after " + seen[p]);
+                    seen[p] = number(e);
+                }
+                walks.incrementAndGet();
+            }
+        }, "reader"));
+
+        List<Throwable> thrown = Collections.synchronizedList(new ArrayList<>());
+        for (Thread t : threads) {
+            t.setUncaughtExceptionHandler((thread, e) -> thrown.add(e));
+            t.start();
+        }
+        Thread.sleep(STRESS_MILLIS);
+        stop.set(true);
+        for (Thread t : threads) {
+            t.join(10_000);
+            assertTrue(!t.isAlive(), t.getName() + " did not finish");
+        }
+
+        assertEquals(List.of(), thrown);
+        assertEquals(List.of(), failures.subList(0, Math.min(10, failures.size())));
+        assertTrue(appended.get() > 0 && walks.get() > 0);
+        assertEquals(appended.get(), evicted.get(), "every element evicted once");
+        assertEquals(sumIn.get(), sumOut.get(), "the elements evicted are those appended");
+        assertTrue(c.isEmpty());
+        assertEquals(0, c.size());
+    }
+}
@@ -0,0 +1,99 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * The coordinator in this thread, with its workers on threads of their own
+ * rather than in processes, over TCP and over a Unix-domain socket.
+ */
+@Timeout(120)
+public class DistributedRunTest {
+    private static final long STEPS = 10;
+    private static final double DT = 0.5;
+    private static final double SOFTENING = 1;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private final List<Throwable> thrown = Collections.synchronizedList(new ArrayList<>());
+
+    private void launch(String address, int workers) {
+        for (int w = 0; w < workers; ++w) {
+            Thread thread = new Thread(() -> {
+                try (SocketChannel channel = DomainWorker.connect(address)) {
+                    DomainWorker.run(channel);
+                } catch (IOException | RuntimeException e) {
+                    thrown.add(e);
+                }
+            }, "worker " + w);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    private BodyStore run(BodyStore bodies, int workers, double theta, boolean unix)
+            throws IOException, InterruptedException {
+        BodyStore result = DistributedRun.run(bodies, workers, STEPS, DT, SOFTENING, theta, "verlet", unix, 0, this::launch);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(), thrown);
+        assertEquals(bodies.size(), result.size());
+        return result;
+    }
+
+    private static boolean matchesDirect(BodyStore initial, BodyStore distributed, double tolerance) {
+        return DistributedRun.verify(initial, distributed, new VelocityVerlet(), DT, STEPS, SOFTENING, tolerance);
+    }
+
+    private static BodyStore cluster() {
+        BodyStore bodies = new BodyStore(400);
+        InitialConditions.plummer(bodies, 400, 8, 0, 0, 0, 0, 50, 100);
+        return bodies;
+    }
+
+    @Test
+    public void exactOverTcp() throws IOException, InterruptedException {
+        BodyStore bodies = cluster();
+        assertTrue(matchesDirect(bodies, run(bodies, 3, 0, false), 1e-12));
+    }
+
+    @Test
+    public void exactOverUnixSocket() throws IOException, InterruptedException {
+        BodyStore bodies = cluster();
+        assertTrue(matchesDirect(bodies, run(bodies, 2, 0, true), 1e-12));
+    }
+
+    @Test
+    public void monopolesAreClose() throws IOException, InterruptedException {
+        BodyStore bodies = cluster();
+        BodyStore result = run(bodies, 3, 0.5, false);
+        assertTrue(matchesDirect(bodies, result, 1e-4));
+    }
+
+    /**
+     * Most bodies share one x, so the middle worker's slab, from that x up to the
+     * same x, holds none and its box is empty.
+     */
+    @Test
+    public void workerWithNoBodies() throws IOException, InterruptedException {
+        BodyStore bodies = new BodyStore(70);
+        for (int i = 0; i < 10; ++i) {
+            bodies.add(-50 - i, 3 * i, 0, 0.1, 1, 0);
+        }
+        for (int i = 0; i < 60; ++i) {
+            bodies.add(0, 2 * i - 60, 0.05, 0, 1, 0);
+        }
+        assertTrue(matchesDirect(bodies, run(bodies, 3, 0, true), 1e-12));
+        threads.clear();
+        assertTrue(matchesDirect(bodies, run(bodies, 3, 0.5, false), 1e-3)); // cells near the column are coarse
+    }
+}
@@ -0,0 +1,76 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class EnsembleTest {
+    private static final int STEPS = 2000;
+
+    private static Ensemble solarSystem() {
+        return new Ensemble(SolarSystem.create(), DirectForceSolver::new, VelocityVerlet::new, 1, STEPS);
+    }
+
+    @Test
+    public void gridVariesSunMassSlowest() {
+        List<Ensemble.Variant> variants = Ensemble.grid(new double[] {10, 20}, new double[] {0.9, 1, 1.1}, new double[] {9.8});
+        assertEquals(6, variants.size());
+        assertEquals(10, variants.get(2).getSunMass(), 0);
+        assertEquals(20, variants.get(3).getSunMass(), 0);
+        assertEquals(1.1, variants.get(5).getVelocityScale(), 0);
+        assertEquals(4, variants.get(4).getIndex());
+    }
+
+    @Test
+    public void unchangedVariantMatchesASingleRun() throws InterruptedException {
+        Ensemble ensemble = solarSystem();
+        Ensemble.Variant same = new Ensemble.Variant(0, ensemble.getSunMass(), 1, Planet.G);
+        Ensemble.Result result = ensemble.run(List.of(same), 1)[0];
+
+        BodyStore bodies = SolarSystem.create();
+        Simulation simulation = new Simulation(bodies, new DirectForceSolver(), new VelocityVerlet(), 1);
+        ConservationReport report = new ConservationReport(bodies);
+        for (int s = 0; s < STEPS; ++s) {
+            simulation.step();
+        }
+        report.sample(bodies);
+        assertEquals(report.getEnergyDrift(), result.getEnergyDrift(), 0);
+        assertEquals(report.getMomentumDrift(), result.getMomentumDrift(), 0);
+        assertEquals(0, result.getEjected());
+    }
+
+    @Test
+    public void threadsDoNotChangeResults() throws InterruptedException {
+        List<Ensemble.Variant> variants = Ensemble.grid(new double[] {15, 20, 25}, new double[] {0.8, 1.3}, new double[] {5, 9.8});
+        Ensemble.Result[] one = solarSystem().run(variants, 1);
+        Ensemble.Result[] three = solarSystem().run(variants, 3);
+        for (int k = 0; k < variants.size(); ++k) {
+            assertSame(variants.get(k), three[k].getVariant());
+            assertEquals(one[k].getEnergyDrift(), three[k].getEnergyDrift(), 0);
+            assertEquals(one[k].getMaxEnergyDrift(), three[k].getMaxEnergyDrift(), 0);
+            assertEquals(one[k].getEjected(), three[k].getEjected());
+        }
+    }
+
+    @Test
+    public void fastPlanetsEscape() throws InterruptedException {
+        Ensemble ensemble = solarSystem();
+        Ensemble.Result result = ensemble.run(List.of(new Ensemble.Variant(0, ensemble.getSunMass(), 3, Planet.G)), 1)[0];
+        assertEquals(4, result.getEjected(), "every planet but not the sun");
+    }
+
+    @Test
+    public void scaledGravityScalesAccelerations() {
+        BodyStore scaled = SolarSystem.create();
+        BodyStore plain = SolarSystem.create();
+        new ScaledGravitySolver(new DirectForceSolver(), 2.5).computeAccelerations(scaled);
+        new DirectForceSolver().computeAccelerations(plain);
+        for (int i = 0; i < plain.size(); ++i) {
+            assertEquals(plain.ax[i] * 2.5 / Planet.G, scaled.ax[i], 1e-15 * Math.abs(plain.ax[i]));
+            assertEquals(plain.ay[i] * 2.5 / Planet.G, scaled.ay[i], 1e-15 * Math.abs(plain.ay[i]));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The generators are random, so their centres of mass are only near the requested
+ * centre: the bounds are several times the standard error of the mean for the
+ * number of bodies drawn.
+ */
+public class InitialConditionsTest {
+    private static final int N = 20_000;
+
+    /**
+     * @return total mass, centre of mass and mean velocity of bodies [from, size)
+     */
+    private static double[] moments(BodyStore bodies, int from) {
+        double m = 0, x = 0, y = 0, vx = 0, vy = 0;
+        for (int i = from; i < bodies.size(); ++i) {
+            m += bodies.mass[i];
+            x += bodies.mass[i] * bodies.x[i];
+            y += bodies.mass[i] * bodies.y[i];
+            vx += bodies.mass[i] * bodies.vx[i];
+            vy += bodies.mass[i] * bodies.vy[i];
+        }
+        return new double[] {m, x / m, y / m, vx / m, vy / m};
+    }
+
+    @Test
+    public void plummerMassAndCentre() {
+        BodyStore bodies = new BodyStore(1);
+        bodies.add(-1e6, -1e6, 0, 0, 1e9); // not part of the cluster
+        InitialConditions.plummer(bodies, N, 7, 300, -200, 0.5, -0.25, 40, 50);
+        assertEquals(N + 1, bodies.size());
+        double[] moments = moments(bodies, 1);
+        assertEquals(40, moments[0], 40 * 1e-12);
+        assertEquals(300, moments[1], 0.05 * 50);
+        assertEquals(-200, moments[2], 0.05 * 50);
+        double escape = Math.sqrt(2 * Planet.G * 40 / 50);
+        assertEquals(0.5, moments[3], 0.05 * escape);
+        assertEquals(-0.25, moments[4], 0.05 * escape);
+        for (int i = 1; i <= N; ++i) {
+            assertEquals(40.0 / N, bodies.mass[i], 0);
+            assertTrue(Math.hypot(bodies.x[i] - 300, bodies.y[i] + 200) <= 10 * 50);
+        }
+    }
+
+    @Test
+    public void diskMassAndCentre() {
+        BodyStore bodies = new BodyStore(0);
+        InitialConditions.exponentialDisk(bodies, N, 9, 100, 200, 1, 2, 30, 40, 10);
+        assertEquals(N + 1, bodies.size());
+        assertEquals(10, bodies.mass[0], 0);
+        assertEquals(100, bodies.x[0], 0);
+        assertEquals(200, bodies.y[0], 0);
+        double[] disk = moments(bodies, 1);
+        assertEquals(30, disk[0], 30 * 1e-12);
+        assertEquals(100, disk[1], 0.05 * 40);
+        assertEquals(200, disk[2], 0.05 * 40);
+        double[] all = moments(bodies, 0);
+        assertEquals(40, all[0], 40 * 1e-12);
+        double orbital = Math.sqrt(Planet.G * 40 / 40);
+        assertEquals(1, all[3], 0.05 * orbital);
+        assertEquals(2, all[4], 0.05 * orbital);
+        for (int i = 1; i <= N; ++i) {
+            double r = Math.hypot(bodies.x[i] - 100, bodies.y[i] - 200);
+            assertTrue(r >= 40.0 / 20 * (1 - 1e-12) && r <= 10 * 40 * (1 + 1e-12), "radius " + r);
+            double radial = (bodies.x[i] - 100) * (bodies.vx[i] - 1) + (bodies.y[i] - 200) * (bodies.vy[i] - 2);
+            assertEquals(0, radial / r, 1e-9, "circular orbits");
+        }
+    }
+
+    @Test
+    public void galaxiesSplitTheBodies() {
+        BodyStore bodies = new BodyStore(0);
+        InitialConditions.collidingGalaxies(bodies, 2001, 3, 0, 0, 10, 30, 5, 400, 100, 0.2);
+        assertEquals(2003, bodies.size());
+        assertEquals(-200, bodies.x[0], 0);
+        assertEquals(200, bodies.x[1001], 0);
+        assertEquals(5, bodies.mass[1001], 0);
+        assertEquals(2 * 15, moments(bodies, 0)[0], 30 * 1e-12);
+    }
+
+    @Test
+    public void sameSeedSameBodies() {
+        BodyStore a = new BodyStore(0), b = new BodyStore(0);
+        InitialConditions.plummer(a, 100, 11, 0, 0, 0, 0, 1, 1);
+        InitialConditions.plummer(b, 100, 11, 0, 0, 0, 0, 1, 1);
+        assertArrayEquals(Arrays.copyOf(a.x, 100), Arrays.copyOf(b.x, 100));
+        assertArrayEquals(Arrays.copyOf(a.vy, 100), Arrays.copyOf(b.vy, 100));
+        assertThrows(IllegalArgumentException.class, () -> InitialConditions.plummer(a, 0, 1, 0, 0, 0, 0, 1, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> InitialConditions.exponentialDisk(a, 10, 1, 0, 0, 0, 0, 1, 1, -1));
+    }
+}
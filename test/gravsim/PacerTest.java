@@ -0,0 +1,137 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pacing against the wall clock, with a step function that does nothing (or sleeps)
+ * in place of a simulation.  Rates are checked loosely, as the tests may share
+ * the machine with other work.
+ */
+public class PacerTest {
+    private static final double STEPS_PER_SECOND = 200;
+    private static final long FRAME_MILLIS = 17; // one frame at 60 per second
+
+    /**
+     * Run a pacer on its own thread for a while.
+     * @return the thread, already stopped
+     */
+    private static Thread runFor(Pacer pacer, long millis) throws InterruptedException {
+        Thread thread = new Thread(pacer, "pacer");
+        thread.start();
+        Thread.sleep(millis);
+        thread.interrupt();
+        thread.join(5000);
+        return thread;
+    }
+
+    private static long stepsIn(double warp, long millis) throws InterruptedException {
+        AtomicLong steps = new AtomicLong();
+        Pacer pacer = new Pacer(steps::addAndGet, 1, STEPS_PER_SECOND, null);
+        pacer.setWarp(warp);
+        assertTrue(!runFor(pacer, millis).isAlive());
+        return steps.get();
+    }
+
+    @Test
+    public void keepsTheTargetRate() throws InterruptedException {
+        long steps = stepsIn(1, 1000);
+        assertTrue(steps >= 0.6 * STEPS_PER_SECOND && steps <= 1.2 * STEPS_PER_SECOND, steps + " steps in 1 s");
+    }
+
+    @Test
+    public void warpScalesTheRate() throws InterruptedException {
+        long steps = stepsIn(4, 500);
+        assertTrue(steps >= 0.6 * 2 * STEPS_PER_SECOND && steps <= 1.2 * 2 * STEPS_PER_SECOND, steps + " steps in 0.5 s at 4x");
+    }
+
+    @Test
+    public void pausedTakesNoSteps() throws InterruptedException {
+        AtomicLong steps = new AtomicLong();
+        StepMetrics metrics = new StepMetrics();
+        Pacer pacer = new Pacer(steps::addAndGet, 1, STEPS_PER_SECOND, metrics);
+        pacer.setPaused(true);
+        runFor(pacer, 300);
+        assertEquals(0, steps.get());
+        assertEquals(0, pacer.getTicks());
+    }
+
+    /**
+     * At a rate of a step every 2 s the pacer is parked almost all the time; a new
+     * warp must not wait for the park to end.
+     */
+    @Test
+    public void warpTakesEffectAtOnce() throws InterruptedException {
+        AtomicLong firstStep = new AtomicLong();
+        Pacer pacer = new Pacer(steps -> firstStep.compareAndSet(0, System.nanoTime()), 1, 0.5, null);
+        Thread thread = new Thread(pacer, "pacer");
+        thread.start();
+        try {
+            Thread.sleep(200); // parked until the first step is due
+            assertEquals(0, firstStep.get());
+            long changed = System.nanoTime();
+            pacer.setWarp(2000); // a step a millisecond
+            Thread.sleep(500);
+            assertTrue(firstStep.get() != 0, "no step in 0.5 s at the new warp");
+            long millis = (firstStep.get() - changed) / 1_000_000;
+            assertTrue(millis < FRAME_MILLIS, "first step " + millis + " ms after the change");
+        } finally {
+            thread.interrupt();
+            thread.join(5000);
+        }
+    }
+
+    @Test
+    public void resumesAtOnce() throws InterruptedException {
+        AtomicLong firstStep = new AtomicLong();
+        Pacer pacer = new Pacer(steps -> firstStep.compareAndSet(0, System.nanoTime()), 1, 1000, null);
+        pacer.setPaused(true);
+        Thread thread = new Thread(pacer, "pacer");
+        thread.start();
+        try {
+            Thread.sleep(200);
+            assertEquals(0, firstStep.get());
+            long changed = System.nanoTime();
+            pacer.setPaused(false);
+            Thread.sleep(500);
+            assertTrue(firstStep.get() != 0, "no step in 0.5 s after resuming");
+            long millis = (firstStep.get() - changed) / 1_000_000;
+            assertTrue(millis < FRAME_MILLIS, "first step " + millis + " ms after resuming");
+        } finally {
+            thread.interrupt();
+            thread.join(5000);
+        }
+    }
+
+    @Test
+    public void recordsOvershoot() throws InterruptedException {
+        StepMetrics metrics = new StepMetrics();
+        Pacer pacer = new Pacer(steps -> {}, 1, STEPS_PER_SECOND, metrics);
+        runFor(pacer, 300);
+        assertTrue(metrics.getHistogram(StepMetrics.Phase.OVERSHOOT).getCount() > 0);
+    }
+
+    @Test
+    public void dropsWhatDoesNotFitInATick() throws InterruptedException {
+        AtomicInteger largest = new AtomicInteger();
+        IntConsumer slow = steps -> {
+            largest.accumulateAndGet(steps, Math::max);
+            try {
+                Thread.sleep(steps); // a millisecond a step, far slower than asked
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        Pacer pacer = new Pacer(slow, 1, 100_000, null);
+        runFor(pacer, 500);
+        assertTrue(pacer.getDropped() > 0);
+        assertTrue(pacer.getTicks() >= 5, pacer.getTicks() + " ticks");
+        assertTrue(largest.get() <= 2 * Pacer.MAX_TICK_MILLIS, "largest tick " + largest.get() + " steps");
+    }
+}
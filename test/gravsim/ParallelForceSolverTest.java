@@ -0,0 +1,75 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Each body's sum is done by one task in the wrapped solver's order, so the
+ * parallel results must be the serial ones to the last bit.
+ */
+public class ParallelForceSolverTest {
+    private static final int CHUNK = 64;
+    private static final int[] POOLS = {1, 2, 3, 4};
+    private static final int[] SIZES = {CHUNK / 2, CHUNK + 1, 1000};
+
+    private static BodyStore cluster(int n) {
+        BodyStore bodies = new BodyStore(n);
+        InitialConditions.plummer(bodies, n, 3, 0, 0, 0, 0, 20, 100);
+        return bodies;
+    }
+
+    /**
+     * @return every third body, last first, so that the list is neither a range nor sorted
+     */
+    private static int[] everyThird(int n) {
+        int[] targets = new int[(n + 2) / 3];
+        for (int k = 0; k < targets.length; ++k) {
+            targets[k] = n - 1 - 3 * k;
+        }
+        return targets;
+    }
+
+    private static void assertSameAsSerial(Supplier<ForceSolver> solvers) {
+        for (int n : SIZES) {
+            BodyStore serial = cluster(n);
+            solvers.get().computeAccelerations(serial);
+            BodyStore serialList = cluster(n);
+            int[] targets = everyThird(n);
+            ForceSolver one = solvers.get();
+            one.prepare(serialList);
+            one.accelerate(serialList, targets, targets.length);
+
+            for (int threads : POOLS) {
+                ParallelForceSolver parallel = new ParallelForceSolver(solvers.get(), threads, CHUNK);
+                try {
+                    BodyStore bodies = cluster(n);
+                    parallel.computeAccelerations(bodies);
+                    String what = n + " bodies on " + threads + " threads";
+                    assertArrayEquals(serial.ax, bodies.ax, what);
+                    assertArrayEquals(serial.ay, bodies.ay, what);
+
+                    BodyStore listed = cluster(n);
+                    parallel.prepare(listed);
+                    parallel.accelerate(listed, targets, targets.length);
+                    assertArrayEquals(serialList.ax, listed.ax, "listed, " + what);
+                    assertArrayEquals(serialList.ay, listed.ay, "listed, " + what);
+                } finally {
+                    parallel.shutdown();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void directSumMatchesSerial() {
+        assertSameAsSerial(() -> new DirectForceSolver(0.5));
+    }
+
+    @Test
+    public void barnesHutMatchesSerial() {
+        assertSameAsSerial(() -> new BarnesHutSolver(0.5, 0.5));
+    }
+}
@@ -0,0 +1,107 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+public class ParticleMeshSolverTest {
+    private static BodyStore disk(int n) {
+        BodyStore bodies = new BodyStore(n);
+        InitialConditions.exponentialDisk(bodies, n, 21, 0, 0, 0, 0, 20, 30, 0); // cells about as wide as the softening
+        return bodies;
+    }
+
+    /**
+     * @return RMS difference of the accelerations over the RMS acceleration of the reference
+     */
+    private static double rmsError(BodyStore bodies, BodyStore reference) {
+        double error = 0, norm = 0;
+        for (int i = 0; i < bodies.size(); ++i) {
+            double dx = bodies.ax[i] - reference.ax[i], dy = bodies.ay[i] - reference.ay[i];
+            error += dx*dx + dy*dy;
+            norm += reference.ax[i] * reference.ax[i] + reference.ay[i] * reference.ay[i];
+        }
+        return Math.sqrt(error / norm);
+    }
+
+    @Test
+    public void fftMatchesTheDefinition() {
+        int n = 64;
+        SplittableRandom random = new SplittableRandom(4);
+        double[] re = new double[n + 3], im = new double[n + 3];
+        for (int i = 0; i < re.length; ++i) {
+            re[i] = random.nextDouble(-1, 1);
+            im[i] = random.nextDouble(-1, 1);
+        }
+        double[] re0 = re.clone(), im0 = im.clone();
+        Fft fft = new Fft(n);
+        fft.transform(re, im, 3, false);
+        for (int k = 0; k < n; ++k) {
+            double sr = 0, si = 0;
+            for (int j = 0; j < n; ++j) {
+                double c = Math.cos(2 * Math.PI * j * k / n), s = Math.sin(2 * Math.PI * j * k / n);
+                sr += re0[3 + j] * c + im0[3 + j] * s;
+                si += im0[3 + j] * c - re0[3 + j] * s;
+            }
+            assertEquals(sr, re[3 + k], 1e-12);
+            assertEquals(si, im[3 + k], 1e-12);
+        }
+        fft.transform(re, im, 3, true);
+        for (int j = 0; j < n; ++j) {
+            assertEquals(n * re0[3 + j], re[3 + j], 1e-12);
+            assertEquals(n * im0[3 + j], im[3 + j], 1e-12);
+        }
+        assertEquals(re0[0], re[0], 0, "entries before the offset are left alone");
+        assertThrows(IllegalArgumentException.class, () -> new Fft(12));
+    }
+
+    @Test
+    public void isolatedMatchesTheDirectSum() {
+        BodyStore bodies = disk(5000);
+        BodyStore direct = new BodyStore(bodies.size());
+        direct.copyFrom(bodies);
+        new DirectForceSolver(5).computeAccelerations(direct);
+        new ParticleMeshSolver(256, 5, 1).computeAccelerations(bodies);
+        double error = rmsError(bodies, direct);
+        assertTrue(error < 0.04, "RMS error " + error);
+
+        double fx = 0, fy = 0, scale = 0;
+        for (int i = 0; i < bodies.size(); ++i) {
+            fx += bodies.mass[i] * bodies.ax[i];
+            fy += bodies.mass[i] * bodies.ay[i];
+            scale += bodies.mass[i] * Math.hypot(bodies.ax[i], bodies.ay[i]);
+        }
+        assertEquals(0, fx, 1e-12 * scale, "forces are equal and opposite");
+        assertEquals(0, fy, 1e-12 * scale, "forces are equal and opposite");
+    }
+
+    @Test
+    public void threadsAgreeWithOne() {
+        BodyStore one = disk(6000);
+        BodyStore three = new BodyStore(one.size());
+        three.copyFrom(one);
+        new ParticleMeshSolver(128, 5, 1).computeAccelerations(one);
+        ParticleMeshSolver parallel = new ParticleMeshSolver(128, 5, 3);
+        try {
+            parallel.computeAccelerations(three);
+        } finally {
+            parallel.shutdown();
+        }
+        assertTrue(rmsError(three, one) < 1e-12);
+    }
+
+    @Test
+    public void periodicPullsAcrossTheEdge() {
+        BodyStore bodies = new BodyStore(2);
+        bodies.add(10, 50, 0, 0, 1, 0);
+        bodies.add(90, 50, 0, 0, 1, 0);
+        new ParticleMeshSolver(64, 0, 0, 100, 2, 1).computeAccelerations(bodies);
+        assertTrue(bodies.ax[0] < 0, "the nearest image of the other body is to the left");
+        assertTrue(bodies.ax[1] > 0, "the nearest image of the other body is to the right");
+        assertEquals(0, bodies.ay[0], 1e-12 * Math.abs(bodies.ax[0]));
+    }
+}
@@ -0,0 +1,87 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SceneLoaderTest {
+    @TempDir
+    Path directory;
+
+    private static BodyStore read(String scene) throws IOException {
+        BodyStore bodies = new BodyStore(4);
+        SceneLoader.read(new StringReader(scene), bodies);
+        return bodies;
+    }
+
+    private static void assertRejected(String scene, String... expected) {
+        IOException e = assertThrows(IOException.class, () -> read(scene));
+        for (String part : expected) {
+            assertTrue(e.getMessage().contains(part), "'" + e.getMessage() + "' does not mention " + part);
+        }
+    }
+
+    @Test
+    public void readsBodiesAndGenerators() throws IOException {
+        BodyStore bodies = read("# a comment\n\n 450 500 0 -0.2214 1\n550 500 0 0.2214 1 2.5# no space\n"
+                + "plummer n=10 seed=4 x=0 y=0 size=0.5\n1e-3 -.5 +2 0.125 3e2");
+        assertEquals(13, bodies.size());
+        assertEquals(-0.2214, bodies.vy[0], 0);
+        assertEquals(0, bodies.radius[0], 0);
+        assertEquals(2.5, bodies.radius[1], 0);
+        for (int i = 2; i < 12; ++i) {
+            assertEquals(2, bodies.mass[i], 0);
+            assertEquals(0.5, bodies.radius[i], 0);
+        }
+        assertEquals(1e-3, bodies.x[12], 0);
+        assertEquals(-0.5, bodies.y[12], 0);
+        assertEquals(300, bodies.mass[12], 0);
+
+        BodyStore plummer = new BodyStore(10);
+        InitialConditions.plummer(plummer, 10, 4, 0, 0, 0, 0, 20, 100);
+        for (int i = 0; i < 10; ++i) {
+            assertEquals(plummer.x[i], bodies.x[i + 2], 0);
+            assertEquals(plummer.vy[i], bodies.vy[i + 2], 0);
+        }
+    }
+
+    @Test
+    public void parsesNumbersExactly() {
+        for (String text : new String[] {"0", "-0.0", "1", "0.1", "123456.789", "-2.5e-7", "1E22", "4.9e-324",
+                "1.7976931348623157e308", "0.30000000000000004", "12345678901234567890", "7e-30"}) {
+            char[] chars = (" " + text + " ").toCharArray();
+            assertEquals(Double.parseDouble(text), SceneLoader.parseNumber(chars, 1, chars.length - 1), 0, text);
+        }
+    }
+
+    @Test
+    public void errorsGiveTheLineNumber() {
+        assertRejected("1 2 3 4 5\n\n1 2 3 4\n", "line 3", "found 4 values");
+        assertRejected("# header\n1 2 3 x 5", "line 2", "not a number: x");
+        assertRejected("solar\nplummer seed=3", "line 2", "n is missing");
+        assertRejected("disk n=10 scale=-1", "line 1", "Length must be positive");
+        assertRejected("\n\n\nnebula n=5\n", "line 4", "unknown generator nebula");
+        assertRejected("disk n=10 radius=5", "line 1", "disk has no parameter radius");
+        assertRejected("plummer n=2.5", "n must be a whole number");
+        assertRejected("plummer n=5 size", "expected key=value, found size");
+        assertRejected("1 2 3 4 -5", "line 1", "Mass");
+    }
+
+    @Test
+    public void loadNamesTheFile() throws IOException {
+        Path file = directory.resolve("bad.scene");
+        Files.writeString(file, "solar\nsolar bright=1\n");
+        IOException e = assertThrows(IOException.class, () -> SceneLoader.load(file));
+        assertTrue(e.getMessage().startsWith(file + ": line 2"), e.getMessage());
+        Path good = Files.writeString(directory.resolve("good.scene"), "solar\n");
+        assertEquals(SolarSystem.create().size(), SceneLoader.load(good).size());
+    }
+}
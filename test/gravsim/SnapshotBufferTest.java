@@ -0,0 +1,38 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class SnapshotBufferTest {
+    @Test
+    public void stateBeforeTheFirstStepIsShown() {
+        BodyStore bodies = SolarSystem.create();
+        SnapshotBuffer snapshots = new SnapshotBuffer();
+        snapshots.publish(bodies, 0, 0);
+        assertTrue(snapshots.hasNewer());
+        Snapshot snapshot = snapshots.acquire();
+        assertEquals(bodies.size(), snapshot.size());
+        assertEquals(bodies.x[3], snapshot.x[3], 0);
+        assertFalse(snapshots.hasNewer());
+    }
+
+    @Test
+    public void readerSkipsToTheLatest() {
+        BodyStore bodies = SolarSystem.create();
+        SnapshotBuffer snapshots = new SnapshotBuffer();
+        snapshots.publish(bodies, 0, 0);
+        Snapshot first = snapshots.acquire();
+        for (long step = 1; step <= 3; ++step) {
+            bodies.x[0] = step;
+            snapshots.publish(bodies, step, step);
+        }
+        assertEquals(0, first.getDays(), 0, "the snapshot being read is left alone");
+        Snapshot latest = snapshots.acquire();
+        assertEquals(3, latest.getDays(), 0);
+        assertEquals(3, latest.x[0], 0);
+        assertFalse(snapshots.hasNewer());
+    }
+}
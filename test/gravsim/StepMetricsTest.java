@@ -0,0 +1,94 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+public class StepMetricsTest {
+    @Test
+    public void smallDurationsAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int v = 0; v < 32; ++v) {
+            histogram.record(v);
+        }
+        for (int v = 0; v < 32; ++v) {
+            assertEquals(v, histogram.getValueAtPercentile(100.0 * (v + 1) / 32));
+        }
+        assertEquals(0, histogram.getValueAtPercentile(0));
+        assertEquals(15.5, histogram.getMean(), 0);
+    }
+
+    /**
+     * A bucket spans 1/32 of its power of two, and a percentile is given as the
+     * middle of its bucket, so it is off by at most 1/64 of the value.
+     */
+    @Test
+    public void percentilesAreWithinTheBucketWidth() {
+        SplittableRandom random = new SplittableRandom(13);
+        for (int k = 0; k < 2000; ++k) {
+            long v = (long) Math.pow(2, random.nextDouble(5, 40));
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(v);
+            long p = histogram.getValueAtPercentile(50);
+            assertTrue(p <= v && v - p <= v / 64 + 1, v + " read back as " + p);
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = 1000 + random.nextLong(1_000_000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percentile : new double[] {1, 50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long p = histogram.getValueAtPercentile(percentile);
+            assertTrue(Math.abs(p - exact) <= exact / 32, percentile + "th percentile " + p + ", exactly " + exact);
+        }
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertTrue(histogram.getValueAtPercentile(100) <= histogram.getMax());
+    }
+
+    @Test
+    public void outOfRangeDurationsAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.getValueAtPercentile(100));
+        long huge = 1L << 50;
+        histogram.record(huge);
+        assertEquals(huge, histogram.getMax());
+        long p = histogram.getValueAtPercentile(100);
+        assertTrue(p > 1L << 39 && p <= huge, "beyond the last bucket: " + p);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMean(), 0);
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(100.5));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(Double.NaN));
+    }
+
+    @Test
+    public void stepsAndFramesAreCounted() {
+        StepMetrics metrics = new StepMetrics();
+        Simulation simulation = new Simulation(SolarSystem.create(), metrics.time(new DirectForceSolver()));
+        for (int s = 0; s < 10; ++s) {
+            metrics.stepStarted();
+            simulation.step();
+            metrics.stepFinished();
+        }
+        metrics.recordNanos(StepMetrics.Phase.PAINT, 1000);
+        metrics.recordNanos(StepMetrics.Phase.TRAILS, 500);
+        assertEquals(10, metrics.getSteps());
+        assertEquals(1, metrics.getFrames(), "only paints count as frames");
+        assertEquals(10, metrics.getHistogram(StepMetrics.Phase.FORCES).getCount());
+        assertEquals(10, metrics.getHistogram(StepMetrics.Phase.INTEGRATE).getCount());
+        assertTrue(metrics.getHistogram(StepMetrics.Phase.FORCES).getMax() > 0);
+        assertEquals(1, metrics.getHistogram(StepMetrics.Phase.TRAILS).getCount());
+    }
+}
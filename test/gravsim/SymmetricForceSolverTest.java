@@ -0,0 +1,76 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The symmetric solver adds the same terms as the direct sum in another order,
+ * so each acceleration must agree to within rounding.  Sizes cover a single
+ * partial tile and several tiles with a partial one at the end.
+ */
+public class SymmetricForceSolverTest {
+    private static final double TOLERANCE = 1e-12;
+    private static final int[] SIZES = {1, 2, 100, 2 * SymmetricForceSolver.TILE + 37};
+    private static final int[] THREADS = {1, 3};
+
+    private static BodyStore cluster(int n) {
+        BodyStore bodies = new BodyStore(n);
+        InitialConditions.plummer(bodies, n, 18, 0, 0, 0, 0, 20, 100);
+        for (int i = 0; i < n; ++i) {
+            bodies.mass[i] *= 1 + i % 5; // unequal masses, so the pulls of a pair differ
+        }
+        return bodies;
+    }
+
+    /**
+     * @param targets bodies to compare, or null for all
+     */
+    private static void assertClose(BodyStore expected, BodyStore actual, int[] targets, String what) {
+        int count = targets == null ? expected.size() : targets.length;
+        for (int k = 0; k < count; ++k) {
+            int i = targets == null ? k : targets[k];
+            double size = Math.hypot(expected.ax[i], expected.ay[i]);
+            double error = Math.hypot(expected.ax[i] - actual.ax[i], expected.ay[i] - actual.ay[i]);
+            assertTrue(error <= TOLERANCE * size, what + ", body " + i + ": error " + error + " of " + size);
+        }
+    }
+
+    private static void assertMatchesDirect(double softening) {
+        for (int n : SIZES) {
+            BodyStore direct = cluster(n);
+            new DirectForceSolver(softening).computeAccelerations(direct);
+            int[] targets = new int[(n + 1) / 2];
+            for (int k = 0; k < targets.length; ++k) {
+                targets[k] = n - 1 - 2 * k;
+            }
+
+            for (int threads : THREADS) {
+                SymmetricForceSolver solver = new SymmetricForceSolver(softening, threads);
+                try {
+                    String what = n + " bodies on " + threads + " threads";
+                    BodyStore bodies = cluster(n);
+                    solver.computeAccelerations(bodies);
+                    assertClose(direct, bodies, null, what);
+
+                    BodyStore listed = cluster(n);
+                    solver.prepare(listed);
+                    solver.accelerate(listed, targets, targets.length);
+                    assertClose(direct, listed, targets, "listed, " + what);
+                } finally {
+                    solver.shutdown();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void matchesDirectSum() {
+        assertMatchesDirect(0);
+    }
+
+    @Test
+    public void matchesSoftenedDirectSum() {
+        assertMatchesDirect(1);
+    }
+}
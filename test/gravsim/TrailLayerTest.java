@@ -0,0 +1,82 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class TrailLayerTest {
+    private static final int WIDTH = 402, HEIGHT = 62;
+
+    private static int alpha(TrailLayer layer, double sx, double sy) {
+        return layer.getPixels()[(int) sy * WIDTH + (int) sx] >>> 24;
+    }
+
+    @Test
+    public void preparesAgainOnlyWhenSomethingChanged() {
+        TrailLayer layer = new TrailLayer(0xFFFFFF);
+        Viewport viewport = new Viewport();
+        assertTrue(layer.prepare(WIDTH, HEIGHT, viewport));
+        layer.plot(10, 10);
+        assertFalse(layer.prepare(WIDTH, HEIGHT, viewport));
+        assertEquals(255, alpha(layer, 10, 10));
+
+        viewport.pan(1, 0);
+        assertTrue(layer.prepare(WIDTH, HEIGHT, viewport));
+        assertEquals(0, alpha(layer, 10, 10), "cleared for the new mapping");
+        assertFalse(layer.prepare(WIDTH, HEIGHT, viewport));
+        assertTrue(layer.prepare(WIDTH + 1, HEIGHT, viewport));
+        layer.invalidate();
+        assertTrue(layer.prepare(WIDTH + 1, HEIGHT, viewport));
+    }
+
+    @Test
+    public void pointsFadeAfterTheirLifetime() {
+        TrailLayer layer = new TrailLayer(0x123456);
+        layer.prepare(WIDTH, HEIGHT, new Viewport());
+        layer.plot(20, 30);
+        for (int f = 0; f < TrailLayer.LIFETIME - 1; ++f) {
+            layer.advance();
+        }
+        assertEquals(1, alpha(layer, 20, 30));
+        assertEquals(0x123456, layer.getPixels()[30 * WIDTH + 20] & 0xFFFFFF);
+        layer.advance();
+        assertTrue(Arrays.stream(layer.getPixels()).allMatch(p -> p == 0));
+    }
+
+    /**
+     * A trail longer than the lifetime, one point per frame on pixels of its own,
+     * drawn as the renderer does and then drawn again after a clear: each point
+     * must be as opaque as fading left it, to within the one step that depends on
+     * where in the fading interval the frames fell.
+     */
+    @Test
+    public void redrawMatchesFading() {
+        Viewport viewport = new Viewport();
+        TrailLayer layer = new TrailLayer(0xFFFFFF);
+        TrailBuffer trail = new TrailBuffer(TrailBuffer.DEFAULT_CAPACITY, 0);
+        int frames = TrailLayer.LIFETIME + 500;
+        layer.prepare(WIDTH, HEIGHT, viewport);
+        for (int f = 0; f < frames; ++f) {
+            layer.advance();
+            trail.add(2 * (f % 200), 2 * (f / 200));
+            layer.plot(viewport.screenX(trail.x(f)), viewport.screenY(trail.y(f)));
+        }
+        int[] faded = layer.getPixels().clone();
+
+        layer.invalidate();
+        assertTrue(layer.prepare(WIDTH, HEIGHT, viewport));
+        layer.redraw(trail, viewport);
+        int drawn = 0;
+        for (int t = 0; t < frames; ++t) {
+            int i = (int) trail.y(t) * WIDTH + (int) trail.x(t);
+            int expected = faded[i] >>> 24, actual = layer.getPixels()[i] >>> 24;
+            assertTrue(Math.abs(expected - actual) <= 1, "point " + t + ": " + actual + " redrawn, " + expected + " faded");
+            if (actual > 0) ++drawn;
+        }
+        assertEquals(TrailLayer.LIFETIME, drawn, "only the newest points are drawn again");
+    }
+}
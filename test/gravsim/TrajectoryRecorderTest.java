@@ -0,0 +1,128 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TrajectoryRecorderTest {
+    private static final int STEPS = 300;
+    private static final int EVERY = 3;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Record a run, keeping a copy of every sampled state.
+     */
+    private List<TrajectoryFrame> record(Path file) throws IOException {
+        BodyStore bodies = new BodyStore(200);
+        InitialConditions.plummer(bodies, 200, 5, 500, 500, 0.1, 0, 20, 50);
+        Simulation simulation = new Simulation(bodies, new DirectForceSolver(1));
+        List<TrajectoryFrame> expected = new ArrayList<>();
+        // a queue of two frames makes the step loop wait for the writer now and then
+        try (TrajectoryRecorder recorder = new TrajectoryRecorder(file, EVERY, 8, 2)) {
+            recorder.afterStep(simulation);
+            for (int s = 0; s < STEPS; ++s) {
+                simulation.step();
+                recorder.afterStep(simulation);
+                if (simulation.getSteps() % EVERY == 0) {
+                    TrajectoryFrame frame = new TrajectoryFrame();
+                    frame.copyFrom(simulation);
+                    expected.add(frame);
+                }
+            }
+        }
+        return expected;
+    }
+
+    private static void assertFrame(TrajectoryFrame expected, TrajectoryFrame actual) {
+        assertEquals(expected.steps, actual.steps);
+        assertEquals(expected.days, actual.days, 0);
+        int n = expected.count;
+        assertEquals(n, actual.count);
+        assertArrayEquals(Arrays.copyOf(expected.x, n), Arrays.copyOf(actual.x, n));
+        assertArrayEquals(Arrays.copyOf(expected.y, n), Arrays.copyOf(actual.y, n));
+        assertArrayEquals(Arrays.copyOf(expected.vx, n), Arrays.copyOf(actual.vx, n));
+        assertArrayEquals(Arrays.copyOf(expected.vy, n), Arrays.copyOf(actual.vy, n));
+        assertArrayEquals(Arrays.copyOf(expected.mass, n), Arrays.copyOf(actual.mass, n));
+        assertArrayEquals(Arrays.copyOf(expected.id, n), Arrays.copyOf(actual.id, n));
+    }
+
+    @Test
+    public void roundTripIsExact() throws IOException {
+        Path file = directory.resolve("run.traj");
+        List<TrajectoryFrame> expected = record(file);
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            assertEquals(expected.size() + 1, reader.getFrameCount());
+            assertEquals(EVERY, reader.getSampleInterval());
+            assertTrue(reader.next());
+            assertEquals(0, reader.getFrame().getSteps());
+            for (TrajectoryFrame frame : expected) {
+                assertTrue(reader.next());
+                assertFrame(frame, reader.getFrame());
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void seekFindsTheLastFrameAtOrBefore() throws IOException {
+        Path file = directory.resolve("seek.traj");
+        List<TrajectoryFrame> expected = record(file);
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            for (int k : new int[] {57, 3, 99, 58, 20}) {
+                TrajectoryFrame frame = expected.get(k);
+                assertTrue(reader.seek(frame.days + 0.1));
+                assertFrame(frame, reader.getFrame());
+            }
+            assertTrue(reader.seek(-1));
+            assertEquals(0, reader.getFrame().getSteps());
+        }
+    }
+
+    /**
+     * Removing a body moves the last one into its place, so the ids must travel
+     * with the frames for a replay to tell the bodies apart.
+     */
+    @Test
+    public void idsFollowRemovals() throws IOException {
+        Path file = directory.resolve("merge.traj");
+        BodyStore bodies = SolarSystem.create();
+        Simulation simulation = new Simulation(bodies, new DirectForceSolver());
+        List<TrajectoryFrame> expected = new ArrayList<>();
+        try (TrajectoryRecorder recorder = new TrajectoryRecorder(file, 1, 100, 4)) {
+            for (int s = 0; s < 30; ++s) {
+                if (s == 10) bodies.remove(1); // the last planet takes the first one's place
+                if (s == 20) bodies.remove(0);
+                simulation.step();
+                recorder.afterStep(simulation);
+                TrajectoryFrame frame = new TrajectoryFrame();
+                frame.copyFrom(simulation);
+                expected.add(frame);
+            }
+        }
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            assertEquals(3, reader.getChunkCount(), "a new chunk at each removal");
+            for (TrajectoryFrame frame : expected) {
+                assertTrue(reader.next());
+                assertFrame(frame, reader.getFrame());
+            }
+            assertTrue(reader.seek(expected.get(15).days));
+            assertEquals(4, reader.getFrame().id(1));
+            BodyStore copy = new BodyStore(0);
+            reader.getFrame().copyTo(copy);
+            assertEquals(1, copy.indexOf(4));
+            assertEquals(-1, copy.indexOf(1));
+        }
+    }
+}
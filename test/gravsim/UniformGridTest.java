@@ -0,0 +1,136 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A query must return every point inside its rectangle, edges included, once
+ * each; it may add others only from the cells the rectangle overlaps.
+ */
+public class UniformGridTest {
+    private final SplittableRandom random = new SplittableRandom(15);
+
+    /**
+     * Query the grid and compare with a scan of all the points.
+     * @param slack how far outside the rectangle a returned point may lie, a cell's size
+     */
+    private static void assertQuery(UniformGrid grid, double[] x, double[] y, int n, double slack,
+            double x0, double y0, double x1, double y1) {
+        int found = grid.query(x0, y0, x1, y1);
+        int[] results = grid.getResults();
+        boolean[] seen = new boolean[n];
+        String what = "[" + x0 + ", " + x1 + "] x [" + y0 + ", " + y1 + "]";
+        for (int k = 0; k < found; ++k) {
+            int i = results[k];
+            assertFalse(seen[i], "point " + i + " found twice in " + what);
+            seen[i] = true;
+            assertTrue(x[i] >= x0 - slack && x[i] <= x1 + slack && y[i] >= y0 - slack && y[i] <= y1 + slack,
+                    "point " + i + " is not near " + what);
+        }
+        for (int i = 0; i < n; ++i) {
+            if (x[i] >= x0 && x[i] <= x1 && y[i] >= y0 && y[i] <= y1) {
+                assertTrue(seen[i], "point " + i + " at (" + x[i] + ", " + y[i] + ") missed by " + what);
+            }
+        }
+        if (grid.within(x0, y0, x1, y1)) assertEquals(n, found);
+    }
+
+    @Test
+    public void matchesScanOfRandomPoints() {
+        int n = 5000;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; ++i) {
+            x[i] = random.nextGaussian() * 100 + 0.3;
+            y[i] = random.nextDouble(-50, 250);
+        }
+        UniformGrid grid = new UniformGrid();
+        grid.build(x, y, n);
+        double width = Arrays.stream(x, 0, n).max().getAsDouble() - Arrays.stream(x, 0, n).min().getAsDouble();
+        double slack = Math.max(width, 300) / 25; // 25 cells across
+        for (int q = 0; q < 2000; ++q) {
+            double xa = random.nextDouble(-500, 500), xb = random.nextDouble(-500, 500);
+            double ya = random.nextDouble(-100, 300), yb = random.nextDouble(-100, 300);
+            assertQuery(grid, x, y, n, slack, Math.min(xa, xb), Math.min(ya, yb), Math.max(xa, xb), Math.max(ya, yb));
+        }
+        assertQuery(grid, x, y, n, slack, -1e9, -1e9, 1e9, 1e9);
+        assertTrue(grid.within(-1e9, -1e9, 1e9, 1e9));
+        assertEquals(0, grid.query(-1e9, -1e9, -1e8, -1e8));
+    }
+
+    /**
+     * Points on a lattice whose spacing does not divide exactly in binary, so that
+     * many of them fall on cell boundaries up to rounding, and rectangles whose
+     * edges pass through them, the outermost ones included.
+     */
+    @Test
+    public void pointsOnCellEdges() {
+        int side = 41;
+        int n = side * side;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double spacing = 0.1;
+        for (int i = 0; i < n; ++i) {
+            x[i] = 3 + (i % side) * spacing;
+            y[i] = -7 + (i / side) * spacing;
+        }
+        UniformGrid grid = new UniformGrid();
+        grid.build(x, y, n);
+        double slack = 4 * spacing * side / 14; // 14 cells across
+        for (int a = 0; a < side; ++a) {
+            for (int b = a; b < side; b += 3) {
+                assertQuery(grid, x, y, n, slack, x[a], y[a * side], x[b], y[b * side]);
+                assertQuery(grid, x, y, n, slack, x[a], y[b * side], x[b], y[b * side]);
+            }
+            assertQuery(grid, x, y, n, slack, x[a], y[a * side], x[a], y[a * side]); // a single point
+            assertQuery(grid, x, y, n, slack, x[side - 1], y[a * side], x[side - 1] + 1, y[a * side]);
+        }
+        assertQuery(grid, x, y, n, slack, x[n - 1], y[n - 1], x[n - 1], y[n - 1]);
+        assertQuery(grid, x, y, n, slack, x[0], y[0], x[n - 1], y[n - 1]);
+    }
+
+    /**
+     * Here (max - min) / 22 * 22 rounds below max - min, so the cells end just short
+     * of the last point.
+     */
+    @Test
+    public void pointOnTheFarEdge() {
+        int n = 8 * 22 * 22;
+        double min = -45.483383418475114, max = 171.35867396574614;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; ++i) {
+            x[i] = min + (max - min) * i / (n - 1);
+            y[i] = x[i];
+        }
+        x[n - 1] = max;
+        y[n - 1] = max;
+        UniformGrid grid = new UniformGrid();
+        grid.build(x, y, n);
+        assertQuery(grid, x, y, n, (max - min) / 10, max, max, max, max);
+        assertQuery(grid, x, y, n, (max - min) / 10, max, min, max + 1, max);
+        assertFalse(grid.within(min, min, Math.nextDown(max), max));
+    }
+
+    @Test
+    public void degenerateSets() {
+        UniformGrid grid = new UniformGrid();
+        double[] x = {2, 2, 2};
+        double[] y = {5, 5, 5};
+        grid.build(x, y, 3);
+        assertQuery(grid, x, y, 3, 0, 2, 5, 2, 5);
+        assertQuery(grid, x, y, 3, 0, 1, 4, 3, 6);
+        assertEquals(0, grid.query(2.5, 4, 3, 6));
+
+        grid.build(x, y, 0);
+        assertEquals(0, grid.query(-1e9, -1e9, 1e9, 1e9));
+        grid.build(x, y, 1);
+        assertQuery(grid, x, y, 1, 0, 2, 5, 2, 5);
+    }
+}
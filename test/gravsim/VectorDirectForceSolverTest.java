@@ -0,0 +1,66 @@
+package gravsim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The vector kernel adds the same terms in the same order as the scalar one, so
+ * the accelerations must agree to the last bit, including in the scalar tail
+ * after the last full vector.
+ */
+public class VectorDirectForceSolverTest {
+    private static BodyStore cluster(int n) {
+        BodyStore bodies = new BodyStore(n); // no spare capacity past the last body
+        InitialConditions.plummer(bodies, n, n, 500, 500, 0, 0, 20, 100);
+        return bodies;
+    }
+
+    private static void assertSameAsScalar(int n, double softening) {
+        BodyStore vector = cluster(n);
+        BodyStore scalar = cluster(n);
+        new VectorDirectForceSolver(softening).computeAccelerations(vector);
+        new DirectForceSolver(softening).computeAccelerations(scalar);
+        for (int i = 0; i < n; ++i) {
+            assertEquals(scalar.ax[i], vector.ax[i], 0, "ax of body " + i + " of " + n + ", softening " + softening);
+            assertEquals(scalar.ay[i], vector.ay[i], 0, "ay of body " + i + " of " + n + ", softening " + softening);
+        }
+    }
+
+    @Test
+    public void vectorizedUsesTheVectorKernel() {
+        assertTrue(DirectForceSolver.isVectorAvailable(), "run the tests with --add-modules jdk.incubator.vector");
+        assertTrue(DirectForceSolver.vectorized(0) instanceof VectorDirectForceSolver);
+    }
+
+    @Test
+    public void matchesScalarAtAwkwardSizes() {
+        int lanes = VectorDirectForceSolver.lanes();
+        int[] sizes = {1, 2, lanes - 1, lanes, lanes + 1, 2 * lanes + 3, 1000, 1001};
+        for (int n : Arrays.stream(sizes).filter(n -> n > 0).distinct().toArray()) {
+            assertSameAsScalar(n, 0);
+            assertSameAsScalar(n, 0.7);
+        }
+    }
+
+    @Test
+    public void matchesScalarOnUnalignedRanges() {
+        int lanes = VectorDirectForceSolver.lanes();
+        int n = 10 * lanes + 5;
+        BodyStore vector = cluster(n);
+        BodyStore scalar = cluster(n);
+        VectorDirectForceSolver solver = new VectorDirectForceSolver(0.3);
+        solver.prepare(vector);
+        solver.accelerate(vector, 1, lanes + 2);
+        solver.accelerate(vector, lanes + 2, n);
+        solver.accelerate(vector, 0, 1);
+        new DirectForceSolver(0.3).computeAccelerations(scalar);
+        for (int i = 0; i < n; ++i) {
+            assertEquals(scalar.ax[i], vector.ax[i], 0);
+            assertEquals(scalar.ay[i], vector.ay[i], 0);
+        }
+    }
+}